@@ -66,3 +66,23 @@ create table chat_history
     INDEX idx_appId_createTime (appId, createTime) -- 游标查询核心索引
 ) comment '对话历史' collate = utf8mb4_unicode_ci;
 
+
+-- 生成任务表
+create table generation_job
+(
+    id           bigint                             not null comment 'id（与生成会话 ID 一致）' primary key,
+    appId        bigint                             not null comment '应用id',
+    userId       bigint                             not null comment '创建用户id',
+    message      text                               not null comment '触发生成的用户消息',
+    status       varchar(32)                        not null comment '状态：queued/running/completed/failed',
+    errorMessage varchar(1024)                      null comment '失败原因',
+    nodeId       varchar(128)                       null comment '执行节点',
+    startTime    datetime                           null comment '开始执行时间',
+    endTime      datetime                           null comment '结束时间',
+    createTime   datetime default CURRENT_TIMESTAMP not null comment '创建时间',
+    updateTime   datetime default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP comment '更新时间',
+    isDelete     tinyint  default 0                 not null comment '是否删除',
+    INDEX idx_appId_createTime (appId, createTime), -- 查询应用最近一次生成
+    INDEX idx_nodeId_status (nodeId, status),       -- 重启时清理本节点未完成的任务
+    INDEX idx_status_updateTime (status, updateTime) -- 清理心跳超时的任务
+) comment '生成任务' collate = utf8mb4_unicode_ci;
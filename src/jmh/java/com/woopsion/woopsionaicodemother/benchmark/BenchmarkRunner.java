@@ -0,0 +1,28 @@
+package com.woopsion.woopsionaicodemother.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 基准测试入口
+ * 接受 JMH 的命令行参数（如只运行的基准名称、-f、-wi），并总是附加 GC 分析器，
+ * 结果中的 gc.alloc.rate.norm 即每次操作分配的字节数
+ *
+ * @author <a href="https://github.com/Woopsion">woopsion</a>
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder()
+                .parent(commandLineOptions)
+                .addProfiler(GCProfiler.class)
+                .jvmArgsAppend("--enable-preview")
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,74 @@
+package com.woopsion.woopsionaicodemother.benchmark;
+
+/**
+ * 合成的 AI 输出，用于基准测试
+ * 内容由重复的 HTML / CSS / JS 片段拼成，大小按字符数控制
+ *
+ * @author <a href="https://github.com/Woopsion">woopsion</a>
+ */
+public class SyntheticOutputs {
+
+    private static final String HTML_LINE = "    <div class=\"card\"><h2>标题</h2><p>这是一段用于测试的说明文字。</p></div>\n";
+
+    private static final String CSS_LINE = ".card { margin: 8px; padding: 16px; border-radius: 8px; color: #333; }\n";
+
+    private static final String JS_LINE = "document.querySelectorAll('.card').forEach(card => card.classList.add(`ready`));\n";
+
+    private SyntheticOutputs() {
+    }
+
+    /**
+     * 单文件 HTML 模式的输出
+     *
+     * @param size       总字符数
+     * @param terminated 代码块是否闭合，false 模拟输出被截断
+     */
+    public static String html(int size, boolean terminated) {
+        StringBuilder builder = new StringBuilder(size + 64);
+        builder.append("好的，下面是生成的页面：\n```html\n<!DOCTYPE html>\n<html>\n<body>\n");
+        repeat(builder, HTML_LINE, size - 32);
+        if (terminated) {
+            builder.append("</body>\n</html>\n```\n页面已生成。");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 多文件模式的输出，HTML 占一半，CSS、JS 各占四分之一
+     *
+     * @param size       总字符数
+     * @param terminated 最后一个（JS）代码块是否闭合
+     */
+    public static String multiFile(int size, boolean terminated) {
+        StringBuilder builder = new StringBuilder(size + 64);
+        builder.append("好的，下面是生成的文件：\n```html\n<!DOCTYPE html>\n<html>\n<body>\n");
+        repeat(builder, HTML_LINE, size / 2);
+        builder.append("</body>\n</html>\n```\n```css\n");
+        repeat(builder, CSS_LINE, size * 3 / 4);
+        builder.append("```\n```javascript\n");
+        repeat(builder, JS_LINE, size);
+        if (terminated) {
+            builder.append("```\n文件已生成。");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Vue 文件内容
+     *
+     * @param size 字符数
+     */
+    public static String vueFile(int size) {
+        StringBuilder builder = new StringBuilder(size + 64);
+        builder.append("<template>\n");
+        repeat(builder, HTML_LINE, size - 16);
+        builder.append("</template>\n");
+        return builder.toString();
+    }
+
+    private static void repeat(StringBuilder builder, String line, int untilLength) {
+        while (builder.length() < untilLength) {
+            builder.append(line);
+        }
+    }
+}
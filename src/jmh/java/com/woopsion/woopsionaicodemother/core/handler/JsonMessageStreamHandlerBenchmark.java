@@ -0,0 +1,98 @@
+package com.woopsion.woopsionaicodemother.core.handler;
+
+import cn.hutool.json.JSONUtil;
+import com.woopsion.woopsionaicodemother.benchmark.SyntheticOutputs;
+import com.woopsion.woopsionaicodemother.model.message.AiResponseMessage;
+import com.woopsion.woopsionaicodemother.model.message.ToolExecutedMessage;
+import com.woopsion.woopsionaicodemother.model.message.ToolRequestMessage;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vue 项目流式消息的逐条处理开销
+ * 对话历史的拼接缓冲在每次调用后清空（保留容量），测量的是单条消息的处理开销，而不是缓冲区扩容和复制；
+ * 工具请求分别测量首次出现和已出现过两种情况
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonMessageStreamHandlerBenchmark {
+
+    /**
+     * 工具写入的文件大小（字符数）
+     */
+    @Param({"2048", "32768"})
+    private int fileSize;
+
+    private final JsonMessageStreamHandler handler = new JsonMessageStreamHandler();
+
+    private final StringBuilder chatHistoryStringBuilder = new StringBuilder();
+
+    private final Set<String> seenToolIds = new HashSet<>();
+
+    private AiResponseMessage aiResponseMessage;
+
+    private ToolRequestMessage toolRequestMessage;
+
+    private ToolExecutedMessage toolExecutedMessage;
+
+    @Setup
+    public void setUp() {
+        aiResponseMessage = new AiResponseMessage("好的，我来修改页面的标题");
+        toolRequestMessage = new ToolRequestMessage();
+        toolRequestMessage.setId("call_1");
+        toolRequestMessage.setName("writeFile");
+        toolRequestMessage.setArguments("{\"relativeFilePath\":\"src/App.vue\"}");
+        toolExecutedMessage = new ToolExecutedMessage();
+        toolExecutedMessage.setId("call_1");
+        toolExecutedMessage.setName("writeFile");
+        toolExecutedMessage.setArguments(JSONUtil.toJsonStr(Map.of(
+                "relativeFilePath", "src/App.vue",
+                "content", SyntheticOutputs.vueFile(fileSize))));
+        toolExecutedMessage.setResult("文件写入成功: src/App.vue");
+    }
+
+    @Setup(Level.Iteration)
+    public void resetHistory() {
+        chatHistoryStringBuilder.setLength(0);
+        seenToolIds.clear();
+    }
+
+    @Benchmark
+    public String aiResponseChunk() {
+        String output = handler.handleJsonMessageChunk(aiResponseMessage, chatHistoryStringBuilder, seenToolIds);
+        chatHistoryStringBuilder.setLength(0);
+        return output;
+    }
+
+    @Benchmark
+    public String toolRequestFirstSeen() {
+        String output = handler.handleJsonMessageChunk(toolRequestMessage, chatHistoryStringBuilder, seenToolIds);
+        // 每次调用都按首次出现的工具处理
+        seenToolIds.clear();
+        chatHistoryStringBuilder.setLength(0);
+        return output;
+    }
+
+    @Benchmark
+    public String toolRequestAlreadySeen() {
+        // 工具 ID 在迭代开始后的第一次调用中登记，之后都是已出现过的分支
+        String output = handler.handleJsonMessageChunk(toolRequestMessage, chatHistoryStringBuilder, seenToolIds);
+        chatHistoryStringBuilder.setLength(0);
+        return output;
+    }
+
+    @Benchmark
+    public String toolExecutedChunk() {
+        String output = handler.handleJsonMessageChunk(toolExecutedMessage, chatHistoryStringBuilder, seenToolIds);
+        chatHistoryStringBuilder.setLength(0);
+        return output;
+    }
+}
@@ -0,0 +1,51 @@
+package com.woopsion.woopsionaicodemother.core.parser;
+
+import com.woopsion.woopsionaicodemother.ai.model.HtmlCodeResult;
+import com.woopsion.woopsionaicodemother.ai.model.MultiFileCodeResult;
+import com.woopsion.woopsionaicodemother.benchmark.SyntheticOutputs;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 完整响应的代码解析
+ * 覆盖 10KB 到 2MB 的输出，以及代码块未闭合（输出被截断）的情况
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodeParserBenchmark {
+
+    @Param({"10240", "262144", "2097152"})
+    private int size;
+
+    @Param({"true", "false"})
+    private boolean terminated;
+
+    private final HtmlCodeParser htmlCodeParser = new HtmlCodeParser();
+
+    private final MultiFileCodeParser multiFileCodeParser = new MultiFileCodeParser();
+
+    private String htmlOutput;
+
+    private String multiFileOutput;
+
+    @Setup
+    public void setUp() {
+        htmlOutput = SyntheticOutputs.html(size, terminated);
+        multiFileOutput = SyntheticOutputs.multiFile(size, terminated);
+    }
+
+    @Benchmark
+    public HtmlCodeResult parseHtml() {
+        return htmlCodeParser.parseCode(htmlOutput);
+    }
+
+    @Benchmark
+    public MultiFileCodeResult parseMultiFile() {
+        return multiFileCodeParser.parseCode(multiFileOutput);
+    }
+}
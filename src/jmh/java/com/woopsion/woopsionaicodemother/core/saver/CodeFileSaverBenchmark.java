@@ -0,0 +1,61 @@
+package com.woopsion.woopsionaicodemother.core.saver;
+
+import cn.hutool.core.io.FileUtil;
+import com.woopsion.woopsionaicodemother.ai.model.HtmlCodeResult;
+import com.woopsion.woopsionaicodemother.ai.model.MultiFileCodeResult;
+import com.woopsion.woopsionaicodemother.benchmark.SyntheticOutputs;
+import com.woopsion.woopsionaicodemother.constant.AppConstant;
+import com.woopsion.woopsionaicodemother.core.parser.HtmlCodeParser;
+import com.woopsion.woopsionaicodemother.core.parser.MultiFileCodeParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 解析结果写入工作目录的开销（含创建目录和写文件）
+ * 使用固定的测试应用 ID，结束后删除生成的目录
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodeFileSaverBenchmark {
+
+    private static final long APP_ID = 9_000_000_022L;
+
+    @Param({"10240", "262144", "2097152"})
+    private int size;
+
+    private final HtmlCodeFileSaverTemplate htmlCodeFileSaver = new HtmlCodeFileSaverTemplate();
+
+    private final MultiFileCodeFileSaverTemplate multiFileCodeFileSaver = new MultiFileCodeFileSaverTemplate();
+
+    private HtmlCodeResult htmlCodeResult;
+
+    private MultiFileCodeResult multiFileCodeResult;
+
+    @Setup
+    public void setUp() {
+        htmlCodeResult = new HtmlCodeParser().parseCode(SyntheticOutputs.html(size, true));
+        multiFileCodeResult = new MultiFileCodeParser().parseCode(SyntheticOutputs.multiFile(size, true));
+    }
+
+    @TearDown
+    public void tearDown() {
+        FileUtil.del(AppConstant.CODE_OUTPUT_ROOT_DIR + "/html_" + APP_ID);
+        FileUtil.del(AppConstant.CODE_OUTPUT_ROOT_DIR + "/multi_files_" + APP_ID);
+    }
+
+    @Benchmark
+    public File saveHtml() {
+        return htmlCodeFileSaver.saveCode(htmlCodeResult, APP_ID);
+    }
+
+    @Benchmark
+    public File saveMultiFile() {
+        return multiFileCodeFileSaver.saveCode(multiFileCodeResult, APP_ID);
+    }
+}
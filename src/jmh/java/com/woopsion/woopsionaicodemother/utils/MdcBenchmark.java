@@ -0,0 +1,59 @@
+package com.woopsion.woopsionaicodemother.utils;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.MDC;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MDC 传递的开销：包装任务（捕获当前 MDC）并执行一次（恢复、清理 MDC）
+ * 与不包装直接执行对比，MDC 中放入与请求日志相同数量的键
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MdcBenchmark {
+
+    private VirtualThreadExecutor executor;
+
+    private Runnable task;
+
+    private int counter;
+
+    @Setup
+    public void setUp() {
+        executor = VirtualThreadExecutor.create("benchmark");
+        MDC.put("traceId", "5f0c9e1d2b7a4c3e8f6a1b2c3d4e5f60");
+        MDC.put("userId", "1000001");
+        MDC.put("appId", "9000000022");
+        task = () -> counter++;
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+        MDC.clear();
+    }
+
+    @Benchmark
+    public void baseline(Blackhole blackhole) {
+        task.run();
+        blackhole.consume(counter);
+    }
+
+    @Benchmark
+    public void virtualThreadExecutorWrapWithMdc(Blackhole blackhole) {
+        executor.wrapWithMdc(task).run();
+        blackhole.consume(counter);
+    }
+
+    @Benchmark
+    public void reactorMdcUtilsWithMdc(Blackhole blackhole) {
+        ReactorMdcUtils.withMdc(task).run();
+        blackhole.consume(counter);
+    }
+}
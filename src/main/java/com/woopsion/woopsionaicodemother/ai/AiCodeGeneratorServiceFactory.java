@@ -1,24 +1,52 @@
 package com.woopsion.woopsionaicodemother.ai;
 
+import cn.hutool.core.collection.CollUtil;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.woopsion.woopsionaicodemother.ai.memory.PromptAssembler;
+import com.woopsion.woopsionaicodemother.ai.memory.TokenBudgetChatMemory;
 import com.woopsion.woopsionaicodemother.ai.tools.FileWriteTool;
+import com.woopsion.woopsionaicodemother.config.ChatMemoryConfig;
+import com.woopsion.woopsionaicodemother.core.generation.GenerationCancellation;
+import com.woopsion.woopsionaicodemother.core.generation.GenerationMetrics;
+import com.woopsion.woopsionaicodemother.core.snapshot.FileHashIndex;
 import com.woopsion.woopsionaicodemother.exception.BusinessException;
 import com.woopsion.woopsionaicodemother.exception.ErrorCode;
 import com.woopsion.woopsionaicodemother.model.enums.CodeGenTypeEnum;
 import com.woopsion.woopsionaicodemother.service.ChatHistoryService;
-import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
+import com.woopsion.woopsionaicodemother.utils.CacheMetricsUtils;
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.agent.tool.ToolSpecifications;
+import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.ToolExecutionResultMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.openai.OpenAiChatModelName;
+import dev.langchain4j.model.openai.OpenAiTokenCountEstimator;
 import dev.langchain4j.service.AiServices;
+import dev.langchain4j.service.tool.DefaultToolExecutor;
+import dev.langchain4j.service.tool.ToolProviderRequest;
+import dev.langchain4j.service.tool.ToolProviderResult;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.lang.reflect.Method;
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static com.woopsion.woopsionaicodemother.model.enums.CodeGenTypeEnum.*;
 
@@ -35,105 +63,228 @@ public class AiCodeGeneratorServiceFactory {
     @Resource
     private ChatModel chatModel;
 
+    /**
+     * 流式模型，配置了备用端点时带对冲和故障转移，见 ModelFallbackConfig
+     */
     @Resource
-    private StreamingChatModel openAiStreamingChatModel;
+    private StreamingChatModel hedgedOpenAiStreamingChatModel;
 
     @Resource
-    private StreamingChatModel reasoningStreamingChatModel;
+    private StreamingChatModel hedgedReasoningStreamingChatModel;
 
     @Resource
-    private RedisChatMemoryStore redisChatMemoryStore;
+    private ChatMemoryStore redisChatMemoryStore;
 
     @Resource
     private ChatHistoryService chatHistoryService;
 
-//    /**
-//     * AI 服务实例缓存
-//     * 缓存策略：
-//     * - 最大缓存 1000 个实例
-//     * - 写入后 30 分钟过期
-//     * - 访问后 10 分钟过期
-//     */
-//    private final Cache<Long, AiCodeGeneratorService> serviceCache = Caffeine.newBuilder()
-//            .maximumSize(1000)
-//            .expireAfterWrite(Duration.ofMinutes(30))
-//            .expireAfterAccess(Duration.ofMinutes(10))
-//            .removalListener((key, value, cause) -> {
-//                log.debug("AI 服务实例被移除，appId: {}, 原因: {}", key, cause);
-//            })
-//            .build();
+    @Resource
+    private GenerationCancellation generationCancellation;
+
+    @Resource
+    private FileHashIndex fileHashIndex;
+
+    @Resource
+    private ChatMemoryConfig chatMemoryConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private GenerationMetrics generationMetrics;
+
     /**
-     * AI 服务实例缓存
+     * token 数估算，只用于控制记忆大小，不要求与实际模型的分词完全一致
      */
-    private final Cache<String, AiCodeGeneratorService> serviceCache = Caffeine.newBuilder()
-            .maximumSize(1000)
-            .expireAfterWrite(Duration.ofMinutes(30))
-            .expireAfterAccess(Duration.ofMinutes(10))
-            .removalListener((key, value, cause) -> {
-                log.debug("AI 服务实例被移除，缓存键: {}, 原因: {}", key, cause);
-            })
-            .build();
+    private final TokenCountEstimator tokenCountEstimator = new OpenAiTokenCountEstimator(OpenAiChatModelName.GPT_4_O_MINI);
 
+    /**
+     * 文件写入工具的 @Tool 方法及其工具描述，只解析一次，每次生成只创建新的工具实例
+     */
+    private static final Map<Method, ToolSpecification> FILE_WRITE_TOOL_SPECIFICATIONS = Arrays.stream(FileWriteTool.class.getDeclaredMethods())
+            .filter(method -> method.isAnnotationPresent(Tool.class))
+            .collect(Collectors.toUnmodifiableMap(Function.identity(), ToolSpecifications::toolSpecificationFrom));
 
+    /**
+     * 每种生成类型共享一个 AI 服务代理，对话记忆按 appId（MemoryId）区分
+     */
+    private final Map<CodeGenTypeEnum, AiCodeGeneratorService> serviceMap = new ConcurrentHashMap<>();
 
     /**
-     * 构建缓存键
+     * 对话记忆缓存，不同生成类型的 token 预算不同，按 appId 和生成类型区分
+     * 缓存策略：
+     * - 最多缓存 app.chat-memory.memory-cache-max-size 个应用的记忆（默认 1000）
+     * - 访问后 10 分钟过期
+     * 缓存是记忆实例的唯一持有者：代理内部的记忆表只保存 CachedChatMemory，每次读写记忆都经过缓存，
+     * 因此命中率、按访问过期和最近访问的缓存键（关闭时记录，用于下次启动预热）都与实际使用一致。
+     * 记忆内容保存在 Redis 中，移出缓存只是让下次访问重新加载，不会删除 Redis 中的记忆；
+     * 同时从各个代理内部的记忆表中移除，避免代理持有的记忆无限增长。
+     * 条目本身不持有消息，大小固定，按条目数限制；随对话长度增长的消息窗口
+     * 在 AppendOnlyRedisChatMemoryStore 中按字节数限制（app.chat-memory.window-cache-max-bytes）。
+     * 命中率、加载耗时和按原因统计的淘汰数导出为监控指标（cache=chat_memory）
      */
-    private String buildCacheKey(long appId, CodeGenTypeEnum codeGenType) {
-        return appId + "_" + codeGenType.getValue();
+    private Cache<ChatMemoryKey, ChatMemory> chatMemoryCache;
+
+    @PostConstruct
+    public void init() {
+        chatMemoryCache = CacheMetricsUtils.buildWithMetrics(Caffeine.newBuilder()
+                .maximumSize(chatMemoryConfig.getMemoryCacheMaxSize())
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .removalListener((ChatMemoryKey key, ChatMemory chatMemory, RemovalCause cause) -> {
+                    log.debug("对话记忆被移除，缓存键: {}, 原因: {}", key, cause);
+                    AiCodeGeneratorService service = serviceMap.get(key.codeGenType());
+                    if (service != null) {
+                        // 监听器异步执行，此时同一个键可能已重新加载；代理移除记忆时调用的 clear() 不触碰缓存，
+                        // 只丢弃代理持有的 CachedChatMemory，不会移除重新加载的记忆
+                        service.evictChatMemory(key.appId());
+                    }
+                }), meterRegistry, "chat_memory");
     }
 
     /**
-     * 根据 appId 获取服务（带缓存）
+     * 对话记忆缓存键
      */
-    public AiCodeGeneratorService getAiCodeGeneratorService(long appId,CodeGenTypeEnum codeGenTypeEnum) {
-        String cacheKey = buildCacheKey(appId, codeGenTypeEnum);
-        return serviceCache.get(cacheKey, key -> createAiCodeGeneratorService(appId, codeGenTypeEnum));
+    public record ChatMemoryKey(long appId, CodeGenTypeEnum codeGenType) {
     }
-    public AiCodeGeneratorService getAiCodeGeneratorService(long appId){
-        return getAiCodeGeneratorService(appId,HTML);
+
+    /**
+     * 获取为指定生成类型提供服务的流式模型 Bean 名称，用作监控指标的标签
+     */
+    public String getStreamingModelName(CodeGenTypeEnum codeGenType) {
+        return codeGenType == VUE_PROJECT ? "reasoningStreamingChatModel" : "openAiStreamingChatModel";
     }
+
     /**
-     * 创建新的 AI 服务实例
+     * 获取为指定生成类型提供服务的流式模型，用于不经过对话记忆的直接调用（如截断后的续写）
+     */
+    public StreamingChatModel getStreamingChatModel(CodeGenTypeEnum codeGenType) {
+        return codeGenType == VUE_PROJECT ? hedgedReasoningStreamingChatModel : hedgedOpenAiStreamingChatModel;
+    }
+
+    /**
+     * 获取指定生成类型的 AI 服务
+     */
+    public AiCodeGeneratorService getAiCodeGeneratorService(CodeGenTypeEnum codeGenType) {
+        return serviceMap.computeIfAbsent(codeGenType, this::createAiCodeGeneratorService);
+    }
+
+    /**
+     * 获取最近访问的对话记忆缓存键，最近访问的在前
+     *
+     * @param limit 最多返回的数量
+     */
+    public List<ChatMemoryKey> getRecentChatMemoryKeys(int limit) {
+        return chatMemoryCache.policy().expireAfterAccess()
+                .map(expiration -> List.copyOf(expiration.youngest(limit).keySet()))
+                .orElse(List.of());
+    }
+
+    /**
+     * 预热：创建 AI 服务并恢复应用的对话记忆，已在缓存中时不重复恢复
+     */
+    public void warmUp(long appId, CodeGenTypeEnum codeGenType) {
+        getAiCodeGeneratorService(codeGenType);
+        getChatMemory(appId, codeGenType);
+    }
+
+    /**
+     * 获取应用的对话记忆，缓存未命中时按需恢复
      */
-    private AiCodeGeneratorService createAiCodeGeneratorService(long appId) {
-        log.info("为 appId: {} 创建新的 AI 服务实例", appId);
-        // 根据 appId 构建独立的对话记忆
-        MessageWindowChatMemory chatMemory = MessageWindowChatMemory
-                .builder()
-                .id(appId)
-                .chatMemoryStore(redisChatMemoryStore)
-                .maxMessages(20)
-                .build();
-        // 从数据库加载历史对话到记忆中
-        chatHistoryService.loadChatHistoryToMemory(appId, chatMemory, 20);
-        return AiServices.builder(AiCodeGeneratorService.class)
-                .chatModel(chatModel)
-                .streamingChatModel(openAiStreamingChatModel)
-                .chatMemory(chatMemory)
-                .build();
+    private ChatMemory getChatMemory(Object memoryId, CodeGenTypeEnum codeGenType) {
+        long appId = ((Number) memoryId).longValue();
+        return chatMemoryCache.get(new ChatMemoryKey(appId, codeGenType), key -> {
+            log.info("为 appId: {} 创建对话记忆", appId);
+            hydrateChatMemory(appId);
+            // 按 token 预算限制记忆大小，超出时较早的轮次压缩为摘要；
+            // 读取时按固定顺序组装并附加当前文件，保持请求前缀稳定
+            return new TokenBudgetChatMemory(appId, chatMemoryConfig.getMaxTokens(codeGenType),
+                    chatMemoryConfig.getSummaryMaxChars(), redisChatMemoryStore, tokenCountEstimator,
+                    new PromptAssembler(appId, codeGenType, generationMetrics));
+        });
     }
+
+    /**
+     * 交给 AI 服务代理的对话记忆，本身不持有消息，每次访问都从对话记忆缓存中获取，
+     * 记忆实例只由缓存持有；clear() 只在代理丢弃这个包装时调用，不移出缓存，也不删除 Redis 中的记忆，
+     * 记忆只在删除应用的对话历史时删除，见 ChatHistoryService#deleteByAppId
+     */
+    private final class CachedChatMemory implements ChatMemory {
+
+        private final ChatMemoryKey key;
+
+        private CachedChatMemory(ChatMemoryKey key) {
+            this.key = key;
+        }
+
+        @Override
+        public Object id() {
+            return key.appId();
+        }
+
+        @Override
+        public void add(ChatMessage message) {
+            getChatMemory(key.appId(), key.codeGenType()).add(message);
+        }
+
+        @Override
+        public List<ChatMessage> messages() {
+            return getChatMemory(key.appId(), key.codeGenType()).messages();
+        }
+
+        /**
+         * 代理移除记忆时调用（见缓存的移除监听器），此时缓存中的同一个键可能已经重新加载并正在使用，
+         * 按键移出会丢弃进行中的轮次上下文，因此这里什么也不做
+         */
+        @Override
+        public void clear() {
+        }
+    }
+
+    /**
+     * 为 AI 服务代理提供对话记忆
+     */
+    private ChatMemory provideChatMemory(Object memoryId, CodeGenTypeEnum codeGenType) {
+        return new CachedChatMemory(new ChatMemoryKey(((Number) memoryId).longValue(), codeGenType));
+    }
+
+    /**
+     * 恢复对话记忆：Redis 中已有记忆（未过期）时直接使用，
+     * 只有 Redis 中没有时才从数据库加载，并一次性写入 Redis
+     */
+    private void hydrateChatMemory(long appId) {
+        if (CollUtil.isNotEmpty(redisChatMemoryStore.getMessages(appId))) {
+            log.debug("appId: {} 的对话记忆已在 Redis 中，无需从数据库加载", appId);
+            return;
+        }
+        chatHistoryService.loadChatHistoryToMemory(appId, redisChatMemoryStore, 20);
+    }
+
+    /**
+     * 为一次生成提供文件写入工具
+     * 每次调用 AI 服务时执行，工具持有该应用当前生成的取消令牌，
+     * 生成被取消后，本次生成遗留的工具调用不再写文件，且不受之后新生成的影响
+     */
+    private ToolProviderResult provideFileWriteTool(ToolProviderRequest request) {
+        long appId = ((Number) request.chatMemoryId()).longValue();
+        FileWriteTool fileWriteTool = new FileWriteTool(generationCancellation.current(appId), fileHashIndex);
+        ToolProviderResult.Builder builder = ToolProviderResult.builder();
+        FILE_WRITE_TOOL_SPECIFICATIONS.forEach((method, toolSpecification) ->
+                builder.add(toolSpecification, new DefaultToolExecutor(fileWriteTool, method)));
+        return builder.build();
+    }
+
     /**
      * 创建新的 AI 服务实例
      */
-    private AiCodeGeneratorService createAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenType) {
-        // 根据 appId 构建独立的对话记忆
-        MessageWindowChatMemory chatMemory = MessageWindowChatMemory
-                .builder()
-                .id(appId)
-                .chatMemoryStore(redisChatMemoryStore)
-                .maxMessages(20)
-                .build();
-        // 从数据库加载历史对话到记忆中
-        chatHistoryService.loadChatHistoryToMemory(appId, chatMemory, 20);
+    private AiCodeGeneratorService createAiCodeGeneratorService(CodeGenTypeEnum codeGenType) {
+        log.info("为生成类型 {} 创建 AI 服务实例", codeGenType.getValue());
         // 根据代码生成类型选择不同的模型配置
         return switch (codeGenType) {
-            // Vue 项目生成使用推理模型
+            // Vue 项目生成使用推理模型，文件写入工具通过 @ToolMemoryId 获取 appId
             case VUE_PROJECT -> AiServices.builder(AiCodeGeneratorService.class)
-                    .streamingChatModel(reasoningStreamingChatModel)
-//                    定义了一个函数，这个函数总是返回上面创建的 chatMemory
-                    .chatMemoryProvider(memoryId -> chatMemory)
-                    .tools(new FileWriteTool())
+                    .streamingChatModel(hedgedReasoningStreamingChatModel)
+                    .chatMemoryProvider(memoryId -> provideChatMemory(memoryId, codeGenType))
+                    .toolProvider(this::provideFileWriteTool)
                     .hallucinatedToolNameStrategy(toolExecutionRequest -> ToolExecutionResultMessage.from(
                             toolExecutionRequest, "Error: there is no tool called " + toolExecutionRequest.name()
                     ))
@@ -141,8 +292,8 @@ public class AiCodeGeneratorServiceFactory {
             // HTML 和多文件生成使用默认模型
             case HTML, MULTI_FILE -> AiServices.builder(AiCodeGeneratorService.class)
                     .chatModel(chatModel)
-                    .streamingChatModel(openAiStreamingChatModel)
-                    .chatMemory(chatMemory)
+                    .streamingChatModel(hedgedOpenAiStreamingChatModel)
+                    .chatMemoryProvider(memoryId -> provideChatMemory(memoryId, codeGenType))
                     .build();
             default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR,
                     "不支持的代码生成类型: " + codeGenType.getValue());
@@ -150,4 +301,3 @@ public class AiCodeGeneratorServiceFactory {
     }
 
 }
-
@@ -0,0 +1,229 @@
+package com.woopsion.woopsionaicodemother.ai;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/16
+ * @time 23:55
+ * @description
+ */
+
+import cn.hutool.core.collection.CollUtil;
+import com.woopsion.woopsionaicodemother.ai.AiCodeGeneratorServiceFactory.ChatMemoryKey;
+import com.woopsion.woopsionaicodemother.config.WarmUpConfig;
+import com.woopsion.woopsionaicodemother.entity.App;
+import com.woopsion.woopsionaicodemother.model.enums.CodeGenTypeEnum;
+import com.woopsion.woopsionaicodemother.service.AppService;
+import com.woopsion.woopsionaicodemother.service.ChatHistoryService;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.JedisPooled;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AI 服务启动预热
+ * 重启后每个活跃应用的第一条消息都要创建 AI 服务代理并恢复对话记忆，这里提前完成：
+ * <ul>
+ *   <li>服务关闭时，把最近访问的对话记忆缓存键（appId_codeGenType）记录到 Redis，多个节点的记录合并保存</li>
+ *   <li>启动后在后台按限速预热：先预热关闭前记录的缓存键，再预热对话历史中最近活跃的应用</li>
+ *   <li>预热完成（或超时）前，作为就绪检查的一部分返回 OUT_OF_SERVICE</li>
+ * </ul>
+ * 预热失败只记录日志，不影响服务启动
+ */
+@Slf4j
+@Component
+public class AiServiceWarmUp implements HealthIndicator {
+
+    private static final String SNAPSHOT_KEY = "warm_up:chat_memory_keys";
+
+    /**
+     * 记录的保留时间，超过后视为过时
+     */
+    private static final long SNAPSHOT_TTL_SECONDS = TimeUnit.DAYS.toSeconds(7);
+
+    @Resource
+    private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
+
+    @Resource
+    private ChatHistoryService chatHistoryService;
+
+    @Resource
+    private AppService appService;
+
+    @Resource
+    private JedisPooled chatMemoryJedis;
+
+    @Resource
+    private WarmUpConfig warmUpConfig;
+
+    private final AtomicInteger warmedCount = new AtomicInteger();
+
+    private volatile int totalCount;
+
+    private volatile boolean done;
+
+    private volatile Thread warmUpThread;
+
+    /**
+     * 服务启动完成后开始后台预热
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!warmUpConfig.isEnabled()) {
+            done = true;
+            return;
+        }
+        warmUpThread = Thread.ofVirtual().name("ai-service-warm-up").start(this::warmUp);
+    }
+
+    @Override
+    public Health health() {
+        if (!warmUpConfig.isEnabled()) {
+            return Health.up().build();
+        }
+        Health.Builder builder = done ? Health.up() : Health.outOfService();
+        return builder.withDetail("warmed", warmedCount.get())
+                .withDetail("total", totalCount)
+                .build();
+    }
+
+    /**
+     * 服务关闭时记录最近访问的对话记忆缓存键
+     */
+    @PreDestroy
+    public void snapshot() {
+        Thread thread = warmUpThread;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        if (!warmUpConfig.isEnabled()) {
+            return;
+        }
+        try {
+            List<ChatMemoryKey> keys = aiCodeGeneratorServiceFactory.getRecentChatMemoryKeys(warmUpConfig.getSnapshotSize());
+            if (keys.isEmpty()) {
+                return;
+            }
+            // 分数为记录时间减去排名：越新记录、越近访问的越靠前，与其他节点的记录合并后取前 snapshotSize 个
+            long now = System.currentTimeMillis();
+            Map<String, Double> members = new HashMap<>(keys.size() * 2);
+            for (int i = 0; i < keys.size(); i++) {
+                members.put(keys.get(i).appId() + "_" + keys.get(i).codeGenType().getValue(), (double) (now - i));
+            }
+            chatMemoryJedis.zadd(SNAPSHOT_KEY, members);
+            chatMemoryJedis.zremrangeByRank(SNAPSHOT_KEY, 0, -warmUpConfig.getSnapshotSize() - 1L);
+            chatMemoryJedis.expire(SNAPSHOT_KEY, SNAPSHOT_TTL_SECONDS);
+            log.info("已记录 {} 个最近使用的对话记忆，下次启动时预热", keys.size());
+        } catch (Exception e) {
+            log.warn("记录最近使用的对话记忆失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 按限速依次预热，超时或被中断时停止
+     */
+    private void warmUp() {
+        long startTime = System.nanoTime();
+        long deadline = startTime + TimeUnit.SECONDS.toNanos(warmUpConfig.getTimeoutSeconds());
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, warmUpConfig.getRatePerSecond());
+        try {
+            List<ChatMemoryKey> keys = collectKeys();
+            totalCount = keys.size();
+            log.info("开始预热 {} 个对话记忆", keys.size());
+            long next = System.nanoTime();
+            for (ChatMemoryKey key : keys) {
+                long now = System.nanoTime();
+                if (now >= deadline) {
+                    log.warn("预热超时，已预热 {}/{} 个对话记忆", warmedCount.get(), keys.size());
+                    break;
+                }
+                if (next > now) {
+                    TimeUnit.NANOSECONDS.sleep(next - now);
+                }
+                next = Math.max(next, now) + intervalNanos;
+                try {
+                    aiCodeGeneratorServiceFactory.warmUp(key.appId(), key.codeGenType());
+                    warmedCount.incrementAndGet();
+                } catch (Exception e) {
+                    log.warn("预热对话记忆失败，appId: {}, error: {}", key.appId(), e.getMessage());
+                }
+            }
+            log.info("预热完成，预热 {} 个对话记忆，耗时 {} ms", warmedCount.get(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.info("服务关闭，预热已停止");
+        } catch (Exception e) {
+            log.error("预热失败: {}", e.getMessage(), e);
+        } finally {
+            done = true;
+        }
+    }
+
+    /**
+     * 收集需要预热的缓存键：先是关闭前记录的，再是最近活跃的应用，去重后不超过两者上限之和
+     */
+    private List<ChatMemoryKey> collectKeys() {
+        Set<ChatMemoryKey> keys = new LinkedHashSet<>();
+        try {
+            for (String member : chatMemoryJedis.zrevrange(SNAPSHOT_KEY, 0, warmUpConfig.getSnapshotSize() - 1L)) {
+                ChatMemoryKey key = parseKey(member);
+                if (key != null) {
+                    keys.add(key);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("读取最近使用的对话记忆失败: {}", e.getMessage());
+        }
+        if (warmUpConfig.getRecentApps() > 0) {
+            LocalDateTime since = LocalDateTime.now().minusHours(warmUpConfig.getRecentHours());
+            List<Long> appIds = chatHistoryService.listRecentlyActiveAppIds(since, warmUpConfig.getRecentApps());
+            if (CollUtil.isNotEmpty(appIds)) {
+                Map<Long, App> appMap = new HashMap<>();
+                for (App app : appService.listByIds(appIds)) {
+                    appMap.put(app.getId(), app);
+                }
+                // 保持最近活跃的顺序，已删除的应用跳过
+                for (Long appId : appIds) {
+                    App app = appMap.get(appId);
+                    CodeGenTypeEnum codeGenType = app != null ? CodeGenTypeEnum.getEnumByValue(app.getCodeGenType()) : null;
+                    if (codeGenType != null) {
+                        keys.add(new ChatMemoryKey(appId, codeGenType));
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(keys);
+    }
+
+    /**
+     * 解析 appId_codeGenType 形式的缓存键，生成类型的值本身可能包含下划线
+     */
+    private static ChatMemoryKey parseKey(String member) {
+        int index = member.indexOf('_');
+        if (index <= 0) {
+            return null;
+        }
+        try {
+            long appId = Long.parseLong(member.substring(0, index));
+            CodeGenTypeEnum codeGenType = CodeGenTypeEnum.getEnumByValue(member.substring(index + 1));
+            return codeGenType != null ? new ChatMemoryKey(appId, codeGenType) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.woopsion.woopsionaicodemother.ai.memory;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/16
+ * @time 23:20
+ * @description
+ */
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.ZipUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.woopsion.woopsionaicodemother.utils.CacheMetricsUtils;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageDeserializer;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.AbstractTransaction;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.UnifiedJedis;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 追加写入的 Redis 对话记忆存储
+ * langchain4j 的 RedisChatMemoryStore 把整个消息列表序列化为一个字符串，每次更新都重写全部内容；
+ * 这里每条消息是 Redis 列表中的一个元素，更新时与上次读写的内容比较：
+ * <ul>
+ *   <li>只在末尾新增消息时，只追加新消息</li>
+ *   <li>淘汰了开头的消息时，先裁剪再追加</li>
+ *   <li>内容发生其他变化（如压缩为摘要）或本地没有上次的状态时，整体重写</li>
+ * </ul>
+ * 追加通过 Lua 脚本按版本号条件执行，其他节点修改过记忆时版本号不一致，改为整体重写，不会写乱。
+ * 版本号由随机的纪元和计数组成（纪元.计数），每次整体重写换一个纪元：
+ * 键过期后其他节点从头写入时计数会重新开始，纪元不同，基于过期前状态的追加不会误判为一致。
+ * 超过阈值的消息用 gzip 压缩；过期时间语义与原存储一致：每次更新后重新设置，ttl 不大于 0 时不过期。
+ * 上次读写的消息（记忆窗口）保留在本地，读取时只查询版本号，版本号未变化时直接返回，
+ * 不再读取和反序列化全部消息；本地缓存按估算的占用字节数限制大小，长对话占用的预算更多
+ */
+@Slf4j
+public class AppendOnlyRedisChatMemoryStore implements ChatMemoryStore {
+
+    private static final String KEY_PREFIX = "chat_memory:";
+
+    private static final String VERSION_SUFFIX = ":ver";
+
+    private static final byte FORMAT_JSON = 0;
+
+    private static final byte FORMAT_GZIP = 1;
+
+    /**
+     * 条件追加：版本号与 ARGV[1] 一致时裁剪开头的 ARGV[3] 条消息、追加 ARGV[5..]，版本号设为 ARGV[2]，返回 1；
+     * 版本号不一致时返回 0。版本号不存在时按空字符串比较
+     */
+    private static final byte[] APPEND_SCRIPT = """
+            local version = redis.call('GET', KEYS[2]) or ''
+            if version ~= ARGV[1] then
+                return 0
+            end
+            local trim = tonumber(ARGV[3])
+            if trim > 0 then
+                redis.call('LTRIM', KEYS[1], trim, -1)
+            end
+            if #ARGV > 4 then
+                redis.call('RPUSH', KEYS[1], unpack(ARGV, 5))
+            end
+            redis.call('SET', KEYS[2], ARGV[2])
+            local ttl = tonumber(ARGV[4])
+            if ttl > 0 then
+                redis.call('EXPIRE', KEYS[1], ttl)
+                redis.call('EXPIRE', KEYS[2], ttl)
+            end
+            return 1
+            """.getBytes(StandardCharsets.UTF_8);
+
+    private final UnifiedJedis jedis;
+
+    /**
+     * 过期时间（秒），不大于 0 时不过期
+     */
+    private final long ttlSeconds;
+
+    /**
+     * 压缩阈值（字节），序列化后超过该大小的消息压缩存储
+     */
+    private final int compressThreshold;
+
+    /**
+     * 每个记忆上次读写时的版本号、消息摘要和消息，用于判断本次更新是否只是追加，以及跳过未变化的读取
+     */
+    private final Cache<String, Snapshot> snapshots;
+
+    /**
+     * @param jedis              Redis 客户端
+     * @param ttlSeconds         过期时间（秒），不大于 0 时不过期
+     * @param compressThreshold  压缩阈值（字节）
+     * @param windowCacheMaxBytes 本地保留的记忆窗口的总字节数上限（估算值）
+     * @param meterRegistry      指标注册表
+     */
+    public AppendOnlyRedisChatMemoryStore(UnifiedJedis jedis, long ttlSeconds, int compressThreshold,
+                                          long windowCacheMaxBytes, MeterRegistry meterRegistry) {
+        this.jedis = jedis;
+        this.ttlSeconds = ttlSeconds;
+        this.compressThreshold = compressThreshold;
+        this.snapshots = CacheMetricsUtils.buildWithMetrics(Caffeine.newBuilder()
+                .maximumWeight(windowCacheMaxBytes)
+                .weigher((String key, Snapshot snapshot) -> snapshot.weight())
+                .expireAfterAccess(Duration.ofMinutes(30)), meterRegistry, "chat_memory_window");
+    }
+
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        String key = toKey(memoryId);
+        Snapshot snapshot = snapshots.getIfPresent(key);
+        if (snapshot != null) {
+            byte[] currentVersion = jedis.get(toVersionKey(key));
+            if (currentVersion != null && string(currentVersion).equals(snapshot.version())) {
+                return new ArrayList<>(snapshot.messages());
+            }
+        }
+        List<byte[]> entries;
+        byte[] versionBytes;
+        // 在同一个事务中读取版本号和消息，保证两者一致
+        try (AbstractTransaction transaction = jedis.multi()) {
+            Response<byte[]> version = transaction.get(toVersionKey(key));
+            Response<List<byte[]>> range = transaction.lrange(bytes(key), 0, -1);
+            transaction.exec();
+            versionBytes = version.get();
+            entries = range.get();
+        }
+        List<ChatMessage> messages = new ArrayList<>(entries.size());
+        String[] jsons = new String[entries.size()];
+        long[] hashes = new long[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            jsons[i] = decode(entries.get(i));
+            messages.add(ChatMessageDeserializer.messageFromJson(jsons[i]));
+            hashes[i] = MurmurHash.hash64(jsons[i]);
+        }
+        String version = versionBytes == null ? null : string(versionBytes);
+        snapshots.put(key, new Snapshot(version, hashes, List.copyOf(messages), estimateWeight(jsons)));
+        return messages;
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        String key = toKey(memoryId);
+        String[] jsons = new String[messages.size()];
+        long[] hashes = new long[messages.size()];
+        for (int i = 0; i < messages.size(); i++) {
+            jsons[i] = ChatMessageSerializer.messageToJson(messages.get(i));
+            hashes[i] = MurmurHash.hash64(jsons[i]);
+        }
+        Snapshot snapshot = snapshots.getIfPresent(key);
+        if (snapshot != null) {
+            int trim = findTrim(snapshot.hashes(), hashes);
+            String version = append(key, snapshot, trim, jsons);
+            if (version != null) {
+                snapshots.put(key, new Snapshot(version, hashes, List.copyOf(messages), estimateWeight(jsons)));
+                return;
+            }
+            log.debug("对话记忆 {} 已被其他节点修改，整体重写", key);
+        }
+        String version = rewrite(key, jsons);
+        snapshots.put(key, new Snapshot(version, hashes, List.copyOf(messages), estimateWeight(jsons)));
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        String key = toKey(memoryId);
+        jedis.del(bytes(key), toVersionKey(key));
+        snapshots.invalidate(key);
+    }
+
+    /**
+     * 条件追加
+     *
+     * @return 新版本号；版本号不一致时返回 null
+     */
+    private String append(String key, Snapshot snapshot, int trim, String[] jsons) {
+        int kept = snapshot.hashes().length - trim;
+        String newVersion = nextVersion(snapshot.version());
+        List<byte[]> args = new ArrayList<>(4 + jsons.length - kept);
+        args.add(bytes(snapshot.version() == null ? "" : snapshot.version()));
+        args.add(bytes(newVersion));
+        args.add(bytes(String.valueOf(trim)));
+        args.add(bytes(String.valueOf(ttlSeconds)));
+        for (int i = kept; i < jsons.length; i++) {
+            args.add(encode(jsons[i]));
+        }
+        Object result = jedis.eval(APPEND_SCRIPT, List.of(bytes(key), toVersionKey(key)), args);
+        return ((Number) result).longValue() == 1 ? newVersion : null;
+    }
+
+    /**
+     * 整体重写，使用新的纪元
+     *
+     * @return 新版本号
+     */
+    private String rewrite(String key, String[] jsons) {
+        byte[] listKey = bytes(key);
+        byte[] versionKey = toVersionKey(key);
+        try (AbstractTransaction transaction = jedis.multi()) {
+            transaction.del(listKey);
+            if (jsons.length > 0) {
+                byte[][] entries = new byte[jsons.length][];
+                for (int i = 0; i < jsons.length; i++) {
+                    entries[i] = encode(jsons[i]);
+                }
+                transaction.rpush(listKey, entries);
+            }
+            String version = nextVersion(null);
+            transaction.set(versionKey, bytes(version));
+            if (ttlSeconds > 0) {
+                transaction.expire(listKey, ttlSeconds);
+                transaction.expire(versionKey, ttlSeconds);
+            }
+            transaction.exec();
+            return version;
+        }
+    }
+
+    /**
+     * 下一个版本号：同一纪元内计数加一；没有版本号时使用新的随机纪元
+     */
+    static String nextVersion(String version) {
+        if (version == null) {
+            return IdUtil.fastSimpleUUID() + ".1";
+        }
+        int dot = version.lastIndexOf('.');
+        return version.substring(0, dot + 1) + (Long.parseLong(version.substring(dot + 1)) + 1);
+    }
+
+    /**
+     * 查找新列表相对于上次状态需要从开头裁剪的消息数：
+     * 上次状态去掉开头 trim 条后，剩余部分是新列表的前缀。没有公共部分时等于上次的消息数（全部裁剪）
+     */
+    static int findTrim(long[] previous, long[] current) {
+        for (int trim = 0; trim < previous.length; trim++) {
+            int kept = previous.length - trim;
+            if (kept <= current.length
+                    && Arrays.equals(previous, trim, previous.length, current, 0, kept)) {
+                return trim;
+            }
+        }
+        return previous.length;
+    }
+
+    /**
+     * 估算本地保留一个记忆窗口占用的字节数：反序列化后的消息大致保留 JSON 中的文本，
+     * 内容以中文为主，按每个字符 2 字节计算，另加每条消息的对象开销
+     */
+    static int estimateWeight(String[] jsons) {
+        long bytes = 64;
+        for (String json : jsons) {
+            bytes += 2L * json.length() + 96;
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    private byte[] encode(String json) {
+        byte[] raw = bytes(json);
+        byte format = FORMAT_JSON;
+        if (raw.length > compressThreshold) {
+            raw = ZipUtil.gzip(raw);
+            format = FORMAT_GZIP;
+        }
+        byte[] entry = new byte[raw.length + 1];
+        entry[0] = format;
+        System.arraycopy(raw, 0, entry, 1, raw.length);
+        return entry;
+    }
+
+    private static String decode(byte[] entry) {
+        byte[] raw = Arrays.copyOfRange(entry, 1, entry.length);
+        if (entry[0] == FORMAT_GZIP) {
+            raw = ZipUtil.unGzip(raw);
+        }
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 使用 hash tag，集群模式下消息列表和版本号位于同一个 slot
+     */
+    private static String toKey(Object memoryId) {
+        if (memoryId == null || memoryId.toString().isBlank()) {
+            throw new IllegalArgumentException("memoryId cannot be null or empty");
+        }
+        return KEY_PREFIX + "{" + memoryId + "}";
+    }
+
+    private static byte[] toVersionKey(String key) {
+        return bytes(key + VERSION_SUFFIX);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 上次读写时的状态
+     *
+     * @param version  版本号（纪元.计数），读取时记忆不存在为 null
+     * @param hashes   各条消息序列化结果的摘要
+     * @param messages 消息
+     * @param weight   估算的占用字节数
+     */
+    private record Snapshot(String version, long[] hashes, List<ChatMessage> messages, int weight) {
+    }
+}
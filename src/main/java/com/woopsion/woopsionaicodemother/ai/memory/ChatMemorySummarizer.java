@@ -0,0 +1,185 @@
+package com.woopsion.woopsionaicodemother.ai.memory;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/16
+ * @time 21:50
+ * @description
+ */
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.woopsion.woopsionaicodemother.core.parser.FencedCodeScanner;
+import com.woopsion.woopsionaicodemother.core.parser.FencedCodeScanner.CodeBlock;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 对话摘要
+ * 将较早的轮次压缩为一段文本：保留用户需求和 AI 回复的说明文字，代码块只保留语言标记，
+ * 写入过的文件只保留路径，代码的最新内容以项目中的当前文件为准。
+ * 摘要是滚动的，新压缩的轮次追加到已有摘要之后，超出长度时丢弃最早的内容。
+ * 摘要按规则提取，不额外调用模型，压缩不会增加生成的等待时间
+ */
+public final class ChatMemorySummarizer {
+
+    /**
+     * 摘要消息的前缀，用于识别记忆中已有的摘要
+     */
+    public static final String SUMMARY_PREFIX = "【历史对话摘要】";
+
+    private static final String SUMMARY_HEADER = SUMMARY_PREFIX + "以下是较早对话的摘要，代码文件的最新内容以项目中的当前文件为准。";
+
+    private static final String FILES_PREFIX = "涉及文件：";
+
+    private static final String FILES_SEPARATOR = ", ";
+
+    /**
+     * 单条消息在摘要中保留的最大字符数
+     */
+    private static final int MAX_LINE_CHARS = 200;
+
+    /**
+     * 工具调用说明的标记，如「[工具调用] 写入文件 src/App.vue」
+     */
+    private static final String WRITE_FILE_MARKER = "写入文件";
+
+    private ChatMemorySummarizer() {
+    }
+
+    /**
+     * 生成滚动摘要
+     *
+     * @param previousSummary 已有的摘要，没有时为 null
+     * @param messages        需要压缩的消息
+     * @param maxChars        摘要的最大字符数
+     * @return 新的摘要
+     */
+    public static String summarize(String previousSummary, List<ChatMessage> messages, int maxChars) {
+        List<String> lines = new ArrayList<>();
+        Set<String> files = new LinkedHashSet<>();
+        if (StrUtil.isNotBlank(previousSummary)) {
+            for (String line : StrUtil.splitTrim(previousSummary, '\n')) {
+                if (line.startsWith(SUMMARY_PREFIX)) {
+                    continue;
+                }
+                if (line.startsWith(FILES_PREFIX)) {
+                    files.addAll(StrUtil.split(line.substring(FILES_PREFIX.length()), FILES_SEPARATOR, true, true));
+                    continue;
+                }
+                lines.add(line);
+            }
+        }
+        for (ChatMessage message : messages) {
+            if (message instanceof UserMessage userMessage && userMessage.hasSingleText()) {
+                lines.add("- 用户：" + compact(userMessage.singleText(), files));
+            } else if (message instanceof AiMessage aiMessage) {
+                if (aiMessage.hasToolExecutionRequests()) {
+                    for (ToolExecutionRequest request : aiMessage.toolExecutionRequests()) {
+                        collectToolFile(request, files);
+                    }
+                }
+                if (StrUtil.isNotBlank(aiMessage.text())) {
+                    lines.add("- AI：" + compact(aiMessage.text(), files));
+                }
+            }
+            // 工具执行结果只是写入成功的提示，不进入摘要
+        }
+        String filesLine = files.isEmpty() ? "" : "\n" + FILES_PREFIX + String.join(FILES_SEPARATOR, files);
+        // 超出长度时丢弃最早的轮次，至少保留最近一行
+        int length = SUMMARY_HEADER.length() + filesLine.length();
+        for (String line : lines) {
+            length += line.length() + 1;
+        }
+        while (length > maxChars && lines.size() > 1) {
+            length -= lines.removeFirst().length() + 1;
+        }
+        return SUMMARY_HEADER + "\n" + String.join("\n", lines) + filesLine;
+    }
+
+    /**
+     * 是否为摘要消息
+     */
+    public static boolean isSummary(ChatMessage message) {
+        return message instanceof UserMessage userMessage
+                && userMessage.hasSingleText()
+                && userMessage.singleText().startsWith(SUMMARY_PREFIX);
+    }
+
+    /**
+     * 压缩单条消息：代码块替换为语言标记，记录说明文字中写入的文件，合并空白并截断
+     */
+    private static String compact(String text, Set<String> files) {
+        StringBuilder sb = new StringBuilder();
+        int position = 0;
+        for (CodeBlock block : FencedCodeScanner.scan(text)) {
+            appendProse(text, position, block.fenceStart(), sb, files);
+            String placeholder = "[" + StrUtil.blankToDefault(block.language(), "text") + " 代码]";
+            appendCollapsed(placeholder, 0, placeholder.length(), sb);
+            position = block.end();
+        }
+        appendProse(text, position, text.length(), sb, files);
+        if (!sb.isEmpty() && sb.charAt(sb.length() - 1) == ' ') {
+            sb.setLength(sb.length() - 1);
+        }
+        return StrUtil.maxLength(sb, MAX_LINE_CHARS);
+    }
+
+    /**
+     * 追加代码块之间的说明文字，同时记录其中「写入文件」之后的文件路径
+     */
+    private static void appendProse(String text, int start, int end, StringBuilder sb, Set<String> files) {
+        int marker = text.indexOf(WRITE_FILE_MARKER, start);
+        while (marker >= 0 && marker < end) {
+            int markerEnd = marker + WRITE_FILE_MARKER.length();
+            int pathStart = markerEnd;
+            while (pathStart < end && Character.isWhitespace(text.charAt(pathStart))) {
+                pathStart++;
+            }
+            int pathEnd = pathStart;
+            while (pathEnd < end && !Character.isWhitespace(text.charAt(pathEnd))) {
+                pathEnd++;
+            }
+            // 标记和路径之间至少有一个空白
+            if (pathStart > markerEnd && pathEnd > pathStart) {
+                files.add(text.substring(pathStart, pathEnd));
+            }
+            marker = text.indexOf(WRITE_FILE_MARKER, pathEnd);
+        }
+        appendCollapsed(text, start, end, sb);
+    }
+
+    /**
+     * 追加文本，连续空白合并为一个空格，并去掉开头的空白
+     */
+    private static void appendCollapsed(String text, int start, int end, StringBuilder sb) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                sb.append(c);
+            } else if (!sb.isEmpty() && sb.charAt(sb.length() - 1) != ' ') {
+                sb.append(' ');
+            }
+        }
+    }
+
+    /**
+     * 记录文件写入工具调用的文件路径
+     */
+    private static void collectToolFile(ToolExecutionRequest request, Set<String> files) {
+        if (!JSONUtil.isTypeJSONObject(request.arguments())) {
+            return;
+        }
+        String relativeFilePath = JSONUtil.parseObj(request.arguments()).getStr("relativeFilePath");
+        if (StrUtil.isNotBlank(relativeFilePath)) {
+            files.add(relativeFilePath);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.woopsion.woopsionaicodemother.ai.memory;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/16
+ * @time 22:40
+ * @description
+ */
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.woopsion.woopsionaicodemother.core.parser.FencedCodeScanner;
+import com.woopsion.woopsionaicodemother.core.parser.FencedCodeScanner.CodeBlock;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 代码引用
+ * 对话记忆中不保存生成的代码，代码块和文件写入工具的内容都替换为「文件路径 + 内容哈希」的引用，
+ * 代码的当前内容在请求时由 {@link CurrentFilesInjector} 按需注入
+ */
+public final class CodeReferences {
+
+    /**
+     * 哈希保留的十六进制位数
+     */
+    private static final int HASH_LENGTH = 12;
+
+    private static final String REFERENCE_PREFIX = "[代码已写入 ";
+
+    /**
+     * 工具调用说明的标记，如「[工具调用] 写入文件 src/App.vue」
+     */
+    private static final String WRITE_FILE_MARKER = "写入文件";
+
+    private CodeReferences() {
+    }
+
+    /**
+     * 计算内容哈希（SHA-256 前 12 位）
+     */
+    public static String hash(String content) {
+        return DigestUtil.sha256Hex(content).substring(0, HASH_LENGTH);
+    }
+
+    /**
+     * 生成文件引用文本
+     */
+    public static String reference(String path, String content) {
+        return StrUtil.format("{}{}，sha256:{}]", REFERENCE_PREFIX, path, hash(content));
+    }
+
+    /**
+     * 将 AI 消息中的代码替换为引用，其他消息原样返回
+     */
+    public static ChatMessage strip(ChatMessage message) {
+        if (!(message instanceof AiMessage aiMessage)) {
+            return message;
+        }
+        List<ToolExecutionRequest> requests = aiMessage.toolExecutionRequests();
+        if (aiMessage.hasToolExecutionRequests()) {
+            requests = new ArrayList<>(requests.size());
+            for (ToolExecutionRequest request : aiMessage.toolExecutionRequests()) {
+                requests.add(stripToolRequest(request));
+            }
+        }
+        return AiMessage.builder()
+                .text(aiMessage.text() != null ? stripText(aiMessage.text()) : null)
+                .thinking(aiMessage.thinking())
+                .toolExecutionRequests(requests)
+                .attributes(aiMessage.attributes())
+                .build();
+    }
+
+    /**
+     * 将文本中的代码块替换为引用
+     * 文件名优先取代码块前的「写入文件」说明，其次是围栏中的文件名提示，否则按语言推断；
+     * 无法确定文件时只保留语言和哈希
+     */
+    public static String stripText(String text) {
+        List<CodeBlock> blocks = FencedCodeScanner.scan(text);
+        if (blocks.isEmpty()) {
+            return text;
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        int position = 0;
+        for (CodeBlock block : blocks) {
+            String code = block.trimmedCode();
+            String path = findWrittenFile(text, block.fenceStart());
+            if (path == null) {
+                path = block.fileName() != null ? block.fileName() : getFileName(block.language());
+            }
+            sb.append(text, position, block.fenceStart())
+                    .append(path != null
+                            ? reference(path, code)
+                            : StrUtil.format("[{} 代码已省略，sha256:{}]", StrUtil.blankToDefault(block.language(), "text"), hash(code)));
+            position = block.end();
+        }
+        return sb.append(text, position, text.length()).toString();
+    }
+
+    /**
+     * 代码块语言对应的文件名，与代码保存器的约定一致
+     */
+    private static String getFileName(String language) {
+        return switch (StrUtil.nullToEmpty(language)) {
+            case "html" -> "index.html";
+            case "css" -> "style.css";
+            case "js" -> "script.js";
+            default -> null;
+        };
+    }
+
+    /**
+     * 查找代码块前一行的「写入文件」说明，说明必须以文件路径结尾
+     */
+    private static String findWrittenFile(String text, int blockStart) {
+        int lineEnd = blockStart;
+        while (lineEnd > 0 && Character.isWhitespace(text.charAt(lineEnd - 1))) {
+            lineEnd--;
+        }
+        String line = text.substring(text.lastIndexOf('\n', lineEnd - 1) + 1, lineEnd);
+        int marker = line.lastIndexOf(WRITE_FILE_MARKER);
+        if (marker < 0) {
+            return null;
+        }
+        String path = line.substring(marker + WRITE_FILE_MARKER.length());
+        // 标记和路径之间至少有一个空白，路径之后没有其他内容
+        if (path.isEmpty() || !Character.isWhitespace(path.charAt(0))) {
+            return null;
+        }
+        path = path.trim();
+        return path.isEmpty() || StrUtil.containsBlank(path) ? null : path;
+    }
+
+    /**
+     * 将文件写入工具参数中的内容替换为引用，保留调用 ID 以便与执行结果对应
+     */
+    private static ToolExecutionRequest stripToolRequest(ToolExecutionRequest request) {
+        if (!JSONUtil.isTypeJSONObject(request.arguments())) {
+            return request;
+        }
+        JSONObject arguments = JSONUtil.parseObj(request.arguments());
+        String content = arguments.getStr("content");
+        String relativeFilePath = arguments.getStr("relativeFilePath");
+        if (content == null || relativeFilePath == null || content.startsWith(REFERENCE_PREFIX)) {
+            return request;
+        }
+        arguments.set("content", reference(relativeFilePath, content));
+        return request.toBuilder().arguments(arguments.toString()).build();
+    }
+}
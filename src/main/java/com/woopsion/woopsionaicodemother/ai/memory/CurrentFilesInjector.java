@@ -0,0 +1,133 @@
+package com.woopsion.woopsionaicodemother.ai.memory;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/16
+ * @time 22:55
+ * @description
+ */
+
+import cn.hutool.core.io.FileUtil;
+import com.woopsion.woopsionaicodemother.constant.AppConstant;
+import com.woopsion.woopsionaicodemother.model.enums.CodeGenTypeEnum;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 当前文件注入
+ * 对话记忆中的代码只是引用，发送请求时把项目文件的当前内容附加到最新的用户消息之后；
+ * 注入只作用于本次请求，不写入记忆。项目还没有文件（首次生成）时不注入。
+ * 注入的位置和时机由 {@link PromptAssembler} 决定
+ */
+@Slf4j
+public final class CurrentFilesInjector {
+
+    /**
+     * 注入内容的最大字符数，超出后的文件只列出路径和哈希
+     */
+    private static final int MAX_INJECT_CHARS = 60_000;
+
+    /**
+     * 只注入源代码文件
+     */
+    private static final Set<String> SOURCE_SUFFIXES = Set.of("html", "css", "js", "ts", "vue", "json", "md");
+
+    /**
+     * 构建产物、依赖等目录不注入，工作目录快照也不保存
+     */
+    public static final Set<String> IGNORED_DIRS = Set.of("node_modules", "dist", ".git", ".vite");
+
+    private static final Set<String> IGNORED_FILES = Set.of("package-lock.json", "pnpm-lock.yaml", "yarn.lock");
+
+    private static final String FILES_HEADER = "【当前项目文件】以下是项目文件的当前内容，历史对话中的代码引用以此为准：";
+
+    private CurrentFilesInjector() {
+    }
+
+    /**
+     * 获取项目目录，与代码保存器和文件写入工具的约定一致
+     */
+    public static Path getWorkspaceDir(long appId, CodeGenTypeEnum codeGenType) {
+        return Path.of(AppConstant.CODE_OUTPUT_ROOT_DIR, codeGenType.getValue() + "_" + appId);
+    }
+
+    /**
+     * 生成当前文件的描述
+     *
+     * @return 描述文本；项目没有文件时返回 null
+     */
+    public static String describeCurrentFiles(long appId, CodeGenTypeEnum codeGenType) {
+        Path workspaceDir = getWorkspaceDir(appId, codeGenType);
+        List<Path> files = listSourceFiles(workspaceDir);
+        if (files.isEmpty()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(FILES_HEADER);
+        int remaining = MAX_INJECT_CHARS;
+        for (Path file : files) {
+            String relativePath = FileUtil.normalize(workspaceDir.relativize(file).toString());
+            String content;
+            try {
+                content = Files.readString(file, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                log.warn("读取项目文件失败: {}, {}", file, e.getMessage());
+                continue;
+            }
+            String hash = CodeReferences.hash(content.trim());
+            if (content.length() <= remaining) {
+                remaining -= content.length();
+                sb.append("\n\n").append(relativePath).append("（sha256:").append(hash).append("）\n```")
+                        .append(FileUtil.getSuffix(relativePath)).append('\n')
+                        .append(content).append("\n```");
+            } else {
+                sb.append("\n\n").append(relativePath).append("（sha256:").append(hash).append("，内容过长未附带）");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 列出项目中的源代码文件，跳过依赖和构建产物目录
+     */
+    private static List<Path> listSourceFiles(Path workspaceDir) {
+        if (!Files.isDirectory(workspaceDir)) {
+            return List.of();
+        }
+        List<Path> files = new ArrayList<>();
+        try {
+            Files.walkFileTree(workspaceDir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return IGNORED_DIRS.contains(dir.getFileName().toString()) && !dir.equals(workspaceDir)
+                            ? FileVisitResult.SKIP_SUBTREE
+                            : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    String fileName = file.getFileName().toString();
+                    if (attrs.isRegularFile() && !IGNORED_FILES.contains(fileName)
+                            && SOURCE_SUFFIXES.contains(FileUtil.getSuffix(fileName))) {
+                        files.add(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            log.warn("遍历项目目录失败: {}, {}", workspaceDir, e.getMessage());
+            return List.of();
+        }
+        files.sort(null);
+        return files;
+    }
+}
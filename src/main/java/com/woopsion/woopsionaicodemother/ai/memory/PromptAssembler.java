@@ -0,0 +1,138 @@
+package com.woopsion.woopsionaicodemother.ai.memory;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/17
+ * @time 00:30
+ * @description
+ */
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import com.woopsion.woopsionaicodemother.core.generation.GenerationMetrics;
+import com.woopsion.woopsionaicodemother.model.enums.CodeGenTypeEnum;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 提示词组装
+ * 模型服务（如 DeepSeek）会缓存重复的请求前缀，命中部分计费更低、首 token 更快，前提是前缀逐字节不变。
+ * 每次请求的消息按固定顺序组装：系统提示词、（压缩后的）历史、最新的用户消息，当前文件附加在最新的用户消息之后：
+ * <ul>
+ *   <li>当前文件在一轮对话开始时读取一次，本轮内工具调用后的续写请求使用同一份内容，
+ *   续写请求由记忆直接构建、不经过请求转换，因此注入放在记忆的消息视图中完成</li>
+ *   <li>注入只作用于最新的用户消息，不写入记忆，下一轮的历史仍以上一轮发送的前缀开头</li>
+ *   <li>每轮开始时检查历史是否以上一轮发送的前缀开头，压缩摘要或重新加载历史会使前缀变化，记录到监控指标</li>
+ * </ul>
+ * 每个对话记忆一个实例
+ */
+public class PromptAssembler {
+
+    private final long appId;
+
+    private final CodeGenTypeEnum codeGenType;
+
+    private final GenerationMetrics generationMetrics;
+
+    /**
+     * 本轮的当前文件描述，新一轮开始前为 null
+     */
+    private TurnContext turnContext;
+
+    /**
+     * 上一轮发送的历史（最新用户消息之前的消息）的摘要
+     */
+    private long[] previousPrefixHashes;
+
+    public PromptAssembler(long appId, CodeGenTypeEnum codeGenType, GenerationMetrics generationMetrics) {
+        this.appId = appId;
+        this.codeGenType = codeGenType;
+        this.generationMetrics = generationMetrics;
+    }
+
+    /**
+     * 新一轮对话开始（收到新的用户消息），下次组装时重新读取当前文件
+     */
+    public synchronized void startTurn() {
+        turnContext = null;
+    }
+
+    /**
+     * 组装发送给模型的消息
+     *
+     * @param window 记忆中的消息
+     * @return 组装后的消息，不影响记忆本身
+     */
+    public synchronized List<ChatMessage> assemble(List<ChatMessage> window) {
+        List<ChatMessage> messages = order(window);
+        int index = lastUserMessageIndex(messages);
+        if (index < 0) {
+            return messages;
+        }
+        if (turnContext == null) {
+            long[] prefixHashes = hashes(messages, index);
+            if (previousPrefixHashes != null && generationMetrics != null) {
+                generationMetrics.recordPromptPrefix(codeGenType, startsWith(prefixHashes, previousPrefixHashes));
+            }
+            previousPrefixHashes = prefixHashes;
+            turnContext = new TurnContext(CurrentFilesInjector.describeCurrentFiles(appId, codeGenType));
+        }
+        UserMessage userMessage = (UserMessage) messages.get(index);
+        if (turnContext.currentFiles() != null && userMessage.hasSingleText()) {
+            messages.set(index, UserMessage.from(userMessage.singleText() + "\n\n" + turnContext.currentFiles()));
+        }
+        return messages;
+    }
+
+    /**
+     * 系统消息放在最前面，其余消息保持原有顺序
+     */
+    static List<ChatMessage> order(List<ChatMessage> window) {
+        List<ChatMessage> messages = new ArrayList<>(window.size());
+        for (ChatMessage message : window) {
+            if (message instanceof SystemMessage) {
+                messages.add(message);
+            }
+        }
+        for (ChatMessage message : window) {
+            if (!(message instanceof SystemMessage)) {
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+    private static long[] hashes(List<ChatMessage> messages, int count) {
+        long[] hashes = new long[count];
+        for (int i = 0; i < count; i++) {
+            hashes[i] = MurmurHash.hash64(ChatMessageSerializer.messageToJson(messages.get(i)));
+        }
+        return hashes;
+    }
+
+    private static boolean startsWith(long[] hashes, long[] prefix) {
+        return hashes.length >= prefix.length && Arrays.equals(hashes, 0, prefix.length, prefix, 0, prefix.length);
+    }
+
+    private static int lastUserMessageIndex(List<ChatMessage> messages) {
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i) instanceof UserMessage) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 一轮对话内不变的内容
+     *
+     * @param currentFiles 当前文件描述，项目没有文件时为 null
+     */
+    private record TurnContext(String currentFiles) {
+    }
+}
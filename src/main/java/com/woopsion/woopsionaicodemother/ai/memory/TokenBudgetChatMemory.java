@@ -0,0 +1,220 @@
+package com.woopsion.woopsionaicodemother.ai.memory;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/16
+ * @time 22:05
+ * @description
+ */
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按 token 预算限制的对话记忆
+ * 消息保存在 ChatMemoryStore 中；总 token 数超出预算时，按轮次（从用户消息开始）
+ * 将较早的轮次压缩为摘要，保留最近的轮次：
+ * <ul>
+ *   <li>系统消息始终保留在最前面</li>
+ *   <li>摘要以一问一答的形式放在系统消息之后，保持用户和 AI 消息交替</li>
+ *   <li>不拆分一轮对话，工具调用和执行结果总是一起保留或一起压缩</li>
+ *   <li>最近一轮对话总是保留，即使它本身已超出预算</li>
+ * </ul>
+ * AI 消息中的代码在写入前替换为文件引用，见 {@link CodeReferences}；
+ * 读取时由 {@link PromptAssembler} 按固定顺序组装并附加当前文件
+ */
+@Slf4j
+public class TokenBudgetChatMemory implements ChatMemory {
+
+    private static final String SUMMARY_ACK = "好的，我已了解之前的对话内容。";
+
+    private final Object id;
+
+    private final int maxTokens;
+
+    private final int summaryMaxChars;
+
+    private final ChatMemoryStore store;
+
+    private final TokenCountEstimator tokenCountEstimator;
+
+    /**
+     * 提示词组装，为 null 时直接返回记忆中的消息
+     */
+    private final PromptAssembler promptAssembler;
+
+    public TokenBudgetChatMemory(Object id, int maxTokens, int summaryMaxChars,
+                                 ChatMemoryStore store, TokenCountEstimator tokenCountEstimator) {
+        this(id, maxTokens, summaryMaxChars, store, tokenCountEstimator, null);
+    }
+
+    public TokenBudgetChatMemory(Object id, int maxTokens, int summaryMaxChars, ChatMemoryStore store,
+                                 TokenCountEstimator tokenCountEstimator, PromptAssembler promptAssembler) {
+        this.id = id;
+        this.maxTokens = maxTokens;
+        this.summaryMaxChars = summaryMaxChars;
+        this.store = store;
+        this.tokenCountEstimator = tokenCountEstimator;
+        this.promptAssembler = promptAssembler;
+    }
+
+    @Override
+    public Object id() {
+        return id;
+    }
+
+    @Override
+    public void add(ChatMessage message) {
+        List<ChatMessage> messages = new ArrayList<>(store.getMessages(id));
+        if (message instanceof SystemMessage) {
+            int index = indexOfSystemMessage(messages);
+            if (index >= 0) {
+                if (messages.get(index).equals(message)) {
+                    // 系统消息未变化，无需重复添加
+                    return;
+                }
+                messages.remove(index);
+            }
+            messages.addFirst(message);
+        } else {
+            messages.add(CodeReferences.strip(message));
+        }
+        compact(messages);
+        store.updateMessages(id, messages);
+        if (message instanceof UserMessage && promptAssembler != null) {
+            promptAssembler.startTurn();
+        }
+    }
+
+    @Override
+    public List<ChatMessage> messages() {
+        List<ChatMessage> messages = new ArrayList<>(store.getMessages(id));
+        // 预算调小后，已有的记忆也要压缩
+        if (compact(messages)) {
+            store.updateMessages(id, messages);
+        }
+        return promptAssembler != null ? promptAssembler.assemble(messages) : messages;
+    }
+
+    /**
+     * 删除存储中的记忆，只应在删除对话历史时调用，本地缓存淘汰不会调用
+     */
+    @Override
+    public void clear() {
+        store.deleteMessages(id);
+    }
+
+    /**
+     * 超出预算时压缩较早的轮次
+     *
+     * @param messages 全部消息，原地修改
+     * @return 是否发生了压缩
+     */
+    boolean compact(List<ChatMessage> messages) {
+        int totalTokens = tokenCountEstimator.estimateTokenCountInMessages(messages);
+        if (totalTokens <= maxTokens) {
+            return false;
+        }
+        SystemMessage systemMessage = null;
+        String previousSummary = null;
+        List<ChatMessage> turns = new ArrayList<>();
+        for (ChatMessage message : messages) {
+            if (message instanceof SystemMessage system) {
+                systemMessage = system;
+            } else if (ChatMemorySummarizer.isSummary(message)) {
+                previousSummary = ((UserMessage) message).singleText();
+            } else if (message instanceof AiMessage aiMessage && SUMMARY_ACK.equals(aiMessage.text())) {
+                // 摘要的应答，和摘要一起重建
+            } else {
+                turns.add(message);
+            }
+        }
+        // 从后往前保留完整的轮次，给摘要预留四分之一的预算
+        int systemTokens = systemMessage != null ? tokenCountEstimator.estimateTokenCountInMessage(systemMessage) : 0;
+        int keepBudget = maxTokens * 3 / 4 - systemTokens;
+        int keptTokens = 0;
+        int cut = turns.size();
+        int lastTurnStart = turns.size();
+        for (int i = turns.size() - 1; i >= 0; i--) {
+            keptTokens += tokenCountEstimator.estimateTokenCountInMessage(turns.get(i));
+            if (turns.get(i) instanceof UserMessage) {
+                if (lastTurnStart == turns.size()) {
+                    lastTurnStart = i;
+                }
+                if (keptTokens > keepBudget && cut < turns.size()) {
+                    break;
+                }
+                cut = i;
+            }
+        }
+        if (lastTurnStart == 0 || lastTurnStart == turns.size()) {
+            // 只有一轮对话，无法压缩
+            return false;
+        }
+        if (cut == 0) {
+            // 各轮对话本身未超出预算，超出的是摘要，压缩最早的一轮
+            cut = nextTurnStart(turns, 0);
+        }
+        // 摘要较长时仍可能超出预算，继续压缩更多轮次，直到满足预算或只剩最近一轮，
+        // 保证压缩后的记忆再次读取时不会重复压缩
+        List<ChatMessage> compacted;
+        while (true) {
+            compacted = buildCompacted(systemMessage, previousSummary, turns, cut);
+            if (cut >= lastTurnStart || tokenCountEstimator.estimateTokenCountInMessages(compacted) <= maxTokens) {
+                break;
+            }
+            cut = nextTurnStart(turns, cut);
+        }
+        messages.clear();
+        messages.addAll(compacted);
+        log.info("对话记忆 {} 超出 token 预算（{} > {}），已将 {} 条较早的消息压缩为摘要",
+                id, totalTokens, maxTokens, cut);
+        return true;
+    }
+
+    /**
+     * 构建压缩后的消息：系统消息、摘要及应答、保留的轮次
+     */
+    private List<ChatMessage> buildCompacted(SystemMessage systemMessage, String previousSummary,
+                                             List<ChatMessage> turns, int cut) {
+        String summary = ChatMemorySummarizer.summarize(previousSummary, turns.subList(0, cut), summaryMaxChars);
+        List<ChatMessage> compacted = new ArrayList<>(turns.size() - cut + 3);
+        if (systemMessage != null) {
+            compacted.add(systemMessage);
+        }
+        compacted.add(UserMessage.from(summary));
+        compacted.add(AiMessage.from(SUMMARY_ACK));
+        compacted.addAll(turns.subList(cut, turns.size()));
+        return compacted;
+    }
+
+    /**
+     * 下一轮对话的起始位置
+     */
+    private static int nextTurnStart(List<ChatMessage> turns, int from) {
+        for (int i = from + 1; i < turns.size(); i++) {
+            if (turns.get(i) instanceof UserMessage) {
+                return i;
+            }
+        }
+        return turns.size();
+    }
+
+    private static int indexOfSystemMessage(List<ChatMessage> messages) {
+        for (int i = 0; i < messages.size(); i++) {
+            if (messages.get(i) instanceof SystemMessage) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,86 @@
+package com.woopsion.woopsionaicodemother.ai.streaming;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/17
+ * @time 01:10
+ * @description
+ */
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * 熔断器
+ * <ul>
+ *   <li>关闭：正常放行，连续失败达到阈值后打开</li>
+ *   <li>打开：拒绝请求，经过 openDuration 后进入半开</li>
+ *   <li>半开：放行一个探测请求，成功则关闭，失败则重新打开；探测请求长时间无结果时再放行一个</li>
+ * </ul>
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+
+    private final long openNanos;
+
+    private final LongSupplier nanoClock;
+
+    private State state = State.CLOSED;
+
+    private int consecutiveFailures;
+
+    /**
+     * 打开或放行探测请求的时间
+     */
+    private long stateSince;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this(failureThreshold, openDuration, System::nanoTime);
+    }
+
+    CircuitBreaker(int failureThreshold, Duration openDuration, LongSupplier nanoClock) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = openDuration.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * 申请发起一次请求
+     *
+     * @return 是否放行
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        long now = nanoClock.getAsLong();
+        if (now - stateSince >= openNanos) {
+            state = State.HALF_OPEN;
+            stateSince = now;
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            stateSince = nanoClock.getAsLong();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,532 @@
+package com.woopsion.woopsionaicodemother.ai.streaming;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/17
+ * @time 01:20
+ * @description
+ */
+
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.CompleteToolCall;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.PartialThinking;
+import dev.langchain4j.model.chat.response.PartialThinkingContext;
+import dev.langchain4j.model.chat.response.PartialToolCall;
+import dev.langchain4j.model.chat.response.PartialToolCallContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.chat.response.StreamingHandle;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 对冲和故障转移的流式模型
+ * 按顺序配置多个 OpenAI 兼容的端点，第一个为主端点：
+ * <ul>
+ *   <li>对冲：超过 TTFT 阈值仍未收到首个 token 时，向下一个端点发起同样的请求，
+ *   先开始输出的流胜出，其他流立即标记为落选并取消；还没有事件的流要到首个事件才拿到取消句柄，
+ *   落选后的首个事件即取消，不会转发</li>
+ *   <li>故障转移：还没有流开始输出时出错，立即改用下一个端点；已开始输出后出错直接返回错误，避免重复输出</li>
+ *   <li>熔断：每个端点一个熔断器，连续失败的端点暂时跳过，所有端点都熔断时仍尝试主端点</li>
+ * </ul>
+ * 工具调用的续写请求同样经过本模型，每次请求独立对冲。
+ * 转发给调用方的上下文中的句柄是 {@link EndpointStreamingHandle}，可通过 {@link #endpointOf(StreamingHandle)} 取得胜出的端点。
+ * 作为 Bean 使用时由容器在关闭时调用 {@link #close()} 停止对冲定时器
+ */
+@Slf4j
+public class HedgingStreamingChatModel implements StreamingChatModel, AutoCloseable {
+
+    /**
+     * 主端点的名称，未对冲的模型只有主端点
+     */
+    public static final String PRIMARY_ENDPOINT = "primary";
+
+    private final String name;
+
+    private final List<Endpoint> endpoints;
+
+    private final Duration ttftThreshold;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 对冲定时器，只有一个端点时不需要
+     */
+    private final ScheduledExecutorService hedgeTimer;
+
+    /**
+     * @param name          模型名称，用作日志和监控指标的标签
+     * @param endpoints     端点，按优先级排列，至少一个
+     * @param ttftThreshold 发起对冲请求前等待首个 token 的时间
+     * @param meterRegistry 指标注册表，可为 null
+     */
+    public HedgingStreamingChatModel(String name, List<Endpoint> endpoints, Duration ttftThreshold, MeterRegistry meterRegistry) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("endpoints cannot be empty");
+        }
+        this.name = name;
+        this.endpoints = List.copyOf(endpoints);
+        this.ttftThreshold = ttftThreshold;
+        this.meterRegistry = meterRegistry;
+        this.hedgeTimer = this.endpoints.size() > 1
+                ? Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("model-hedge-timer-" + name).daemon().factory())
+                : null;
+        if (meterRegistry != null) {
+            for (Endpoint endpoint : this.endpoints) {
+                Gauge.builder("ai.model.circuit.open", endpoint.circuitBreaker(),
+                                breaker -> breaker.getState() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                        .description("端点熔断器是否打开")
+                        .tag("model", name)
+                        .tag("endpoint", endpoint.name())
+                        .register(meterRegistry);
+            }
+        }
+    }
+
+    /**
+     * 端点
+     *
+     * @param name           端点名称
+     * @param model          端点的流式模型，使用自身的默认参数（模型名称等）
+     * @param circuitBreaker 端点的熔断器
+     */
+    public record Endpoint(String name, StreamingChatModel model, CircuitBreaker circuitBreaker) {
+    }
+
+    /**
+     * 转发给调用方的流式句柄，记录提供服务的端点
+     */
+    public static final class EndpointStreamingHandle implements StreamingHandle {
+
+        private final StreamingHandle delegate;
+
+        private final String endpoint;
+
+        private EndpointStreamingHandle(StreamingHandle delegate, String endpoint) {
+            this.delegate = delegate;
+            this.endpoint = endpoint;
+        }
+
+        /**
+         * 提供服务的端点名称
+         */
+        public String endpoint() {
+            return endpoint;
+        }
+
+        @Override
+        public void cancel() {
+            delegate.cancel();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return delegate.isCancelled();
+        }
+    }
+
+    /**
+     * 获取流式句柄对应的端点
+     *
+     * @param streamingHandle 回调上下文中的句柄
+     * @return 端点名称，不是经过对冲的模型时返回 null
+     */
+    public static String endpointOf(StreamingHandle streamingHandle) {
+        return streamingHandle instanceof EndpointStreamingHandle handle ? handle.endpoint() : null;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        new HedgedCall(chatRequest, handler).start();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return endpoints.getFirst().model().supportedCapabilities();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return endpoints.getFirst().model().provider();
+    }
+
+    @Override
+    public void close() {
+        if (hedgeTimer != null) {
+            hedgeTimer.shutdownNow();
+        }
+    }
+
+    private void count(String metric, String endpoint, String result) {
+        if (meterRegistry == null) {
+            return;
+        }
+        Counter.Builder builder = Counter.builder(metric).tag("model", name);
+        if (endpoint != null) {
+            builder.tag("endpoint", endpoint);
+        }
+        if (result != null) {
+            builder.tag("result", result);
+        }
+        builder.register(meterRegistry).increment();
+    }
+
+    /**
+     * 一次请求的调度状态
+     */
+    private class HedgedCall {
+
+        private final ChatRequest chatRequest;
+
+        private final StreamingChatResponseHandler handler;
+
+        private final Object lock = new Object();
+
+        /**
+         * 已发起的请求
+         */
+        private final List<Attempt> attempts = new ArrayList<>();
+
+        /**
+         * 下一个尝试的端点
+         */
+        private int nextEndpoint;
+
+        /**
+         * 进行中的请求数
+         */
+        private int running;
+
+        private Attempt winner;
+
+        private boolean finished;
+
+        private Throwable lastError;
+
+        private ScheduledFuture<?> hedgeTask;
+
+        private HedgedCall(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+            this.chatRequest = chatRequest;
+            this.handler = handler;
+        }
+
+        private void start() {
+            launchNext();
+            if (endpoints.size() > 1) {
+                synchronized (lock) {
+                    if (winner == null && !finished) {
+                        hedgeTask = hedgeTimer.schedule(this::hedge, ttftThreshold.toNanos(), TimeUnit.NANOSECONDS);
+                    }
+                }
+            }
+        }
+
+        /**
+         * 超过 TTFT 阈值仍没有流开始输出，发起对冲请求
+         */
+        private void hedge() {
+            synchronized (lock) {
+                if (winner != null || finished) {
+                    return;
+                }
+            }
+            if (launchNext()) {
+                log.info("模型 {} 超过 {} ms 未收到首个 token，发起对冲请求", name, ttftThreshold.toMillis());
+                count("ai.model.hedge", null, null);
+            }
+        }
+
+        /**
+         * 向下一个可用的端点发起请求
+         *
+         * @return 是否发起了请求
+         */
+        private boolean launchNext() {
+            Attempt attempt;
+            synchronized (lock) {
+                Endpoint endpoint = null;
+                while (nextEndpoint < endpoints.size()) {
+                    Endpoint candidate = endpoints.get(nextEndpoint++);
+                    if (candidate.circuitBreaker().tryAcquire()) {
+                        endpoint = candidate;
+                        break;
+                    }
+                    log.debug("模型 {} 的端点 {} 已熔断，跳过", name, candidate.name());
+                }
+                if (endpoint == null && attempts.isEmpty()) {
+                    // 所有端点都已熔断，仍尝试主端点
+                    log.warn("模型 {} 的所有端点都已熔断，尝试主端点", name);
+                    endpoint = endpoints.getFirst();
+                }
+                if (endpoint == null) {
+                    return false;
+                }
+                attempt = new Attempt(this, endpoint);
+                attempts.add(attempt);
+                running++;
+            }
+            try {
+                attempt.endpoint.model().chat(chatRequest, attempt);
+            } catch (Exception e) {
+                attempt.onError(e);
+            }
+            return true;
+        }
+
+        /**
+         * 流开始输出，第一个开始的流胜出，其他流落选
+         *
+         * @return 该流是否胜出
+         */
+        private boolean claim(Attempt attempt) {
+            List<Attempt> losers;
+            synchronized (lock) {
+                if (winner != null || finished) {
+                    return winner == attempt;
+                }
+                winner = attempt;
+                if (hedgeTask != null) {
+                    hedgeTask.cancel(false);
+                }
+                count("ai.model.attempt", attempt.endpoint.name(), "won");
+                if (attempts.size() > 1) {
+                    log.info("模型 {} 由端点 {} 响应", name, attempt.endpoint.name());
+                }
+                losers = new ArrayList<>(attempts);
+                losers.remove(attempt);
+            }
+            // 在锁外取消，取消可能同步触发落选流的回调
+            losers.forEach(Attempt::lose);
+            return true;
+        }
+
+        private void onAttemptComplete(Attempt attempt, ChatResponse response) {
+            synchronized (lock) {
+                running--;
+                if (finished || winner != attempt) {
+                    return;
+                }
+                finished = true;
+            }
+            handler.onCompleteResponse(response);
+        }
+
+        private void onAttemptError(Attempt attempt, Throwable error) {
+            boolean failover = false;
+            Throwable forward = null;
+            synchronized (lock) {
+                running--;
+                if (finished || (winner != null && winner != attempt)) {
+                    return;
+                }
+                if (winner == attempt) {
+                    // 已开始输出，不能再转移
+                    finished = true;
+                    forward = error;
+                } else {
+                    lastError = error;
+                    if (nextEndpoint < endpoints.size()) {
+                        failover = true;
+                    } else if (running == 0) {
+                        finished = true;
+                        forward = lastError;
+                    }
+                }
+            }
+            if (failover) {
+                log.warn("模型 {} 的端点 {} 请求失败，转移到下一个端点: {}", name, attempt.endpoint.name(), error.getMessage());
+                count("ai.model.failover", attempt.endpoint.name(), null);
+                if (!launchNext()) {
+                    synchronized (lock) {
+                        if (running > 0 || finished) {
+                            return;
+                        }
+                        finished = true;
+                    }
+                    handler.onError(lastError);
+                }
+                return;
+            }
+            if (forward != null) {
+                synchronized (lock) {
+                    if (hedgeTask != null) {
+                        hedgeTask.cancel(false);
+                    }
+                }
+                handler.onError(forward);
+            }
+        }
+    }
+
+    /**
+     * 对一个端点的请求，只有胜出的流的事件转发给调用方
+     */
+    private class Attempt implements StreamingChatResponseHandler {
+
+        private final HedgedCall call;
+
+        private final Endpoint endpoint;
+
+        private final AtomicBoolean lost = new AtomicBoolean(false);
+
+        private volatile boolean started;
+
+        /**
+         * 端点的流式句柄，收到首个带上下文的事件时才拿到
+         */
+        private volatile StreamingHandle streamingHandle;
+
+        /**
+         * 转发给调用方的上下文，句柄替换为 {@link EndpointStreamingHandle}
+         */
+        private PartialResponseContext responseContext;
+
+        private PartialThinkingContext thinkingContext;
+
+        private PartialToolCallContext toolCallContext;
+
+        private Attempt(HedgedCall call, Endpoint endpoint) {
+            this.call = call;
+            this.endpoint = endpoint;
+        }
+
+        /**
+         * 收到事件：首个事件时记录端点可用并参与胜出判断，落选的流取消
+         *
+         * @return 是否转发该事件
+         */
+        private boolean accept(StreamingHandle handle) {
+            // 先记录句柄再检查是否落选，与 lose() 的顺序相反，两边至少有一方能取消
+            if (handle != null && streamingHandle == null) {
+                streamingHandle = handle;
+            }
+            if (!started) {
+                started = true;
+                endpoint.circuitBreaker().recordSuccess();
+                if (!call.claim(this)) {
+                    lose();
+                }
+            }
+            if (lost.get()) {
+                cancel();
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * 落选：已有句柄时立即取消，否则在收到首个事件时取消
+         */
+        private void lose() {
+            if (lost.compareAndSet(false, true)) {
+                count("ai.model.attempt", endpoint.name(), "lost");
+                cancel();
+            }
+        }
+
+        private void cancel() {
+            StreamingHandle handle = streamingHandle;
+            if (handle != null && !handle.isCancelled()) {
+                handle.cancel();
+            }
+        }
+
+        private EndpointStreamingHandle forwardHandle() {
+            return new EndpointStreamingHandle(streamingHandle, endpoint.name());
+        }
+
+        @Override
+        public void onPartialResponse(String partialResponse) {
+            if (accept(null)) {
+                call.handler.onPartialResponse(partialResponse);
+            }
+        }
+
+        @Override
+        public void onPartialResponse(PartialResponse partialResponse, PartialResponseContext context) {
+            if (accept(context.streamingHandle())) {
+                if (responseContext == null) {
+                    responseContext = new PartialResponseContext(forwardHandle());
+                }
+                call.handler.onPartialResponse(partialResponse, responseContext);
+            }
+        }
+
+        @Override
+        public void onPartialThinking(PartialThinking partialThinking) {
+            if (accept(null)) {
+                call.handler.onPartialThinking(partialThinking);
+            }
+        }
+
+        @Override
+        public void onPartialThinking(PartialThinking partialThinking, PartialThinkingContext context) {
+            if (accept(context.streamingHandle())) {
+                if (thinkingContext == null) {
+                    thinkingContext = new PartialThinkingContext(forwardHandle());
+                }
+                call.handler.onPartialThinking(partialThinking, thinkingContext);
+            }
+        }
+
+        @Override
+        public void onPartialToolCall(PartialToolCall partialToolCall) {
+            if (accept(null)) {
+                call.handler.onPartialToolCall(partialToolCall);
+            }
+        }
+
+        @Override
+        public void onPartialToolCall(PartialToolCall partialToolCall, PartialToolCallContext context) {
+            if (accept(context.streamingHandle())) {
+                if (toolCallContext == null) {
+                    toolCallContext = new PartialToolCallContext(forwardHandle());
+                }
+                call.handler.onPartialToolCall(partialToolCall, toolCallContext);
+            }
+        }
+
+        @Override
+        public void onCompleteToolCall(CompleteToolCall completeToolCall) {
+            if (accept(null)) {
+                call.handler.onCompleteToolCall(completeToolCall);
+            }
+        }
+
+        @Override
+        public void onCompleteResponse(ChatResponse completeResponse) {
+            if (accept(null)) {
+                call.onAttemptComplete(this, completeResponse);
+            } else {
+                call.onAttemptComplete(this, null);
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            // 落选后被取消的流不计为端点失败，还没有事件就出错的流仍计入
+            if (!started || !lost.get()) {
+                endpoint.circuitBreaker().recordFailure();
+                count("ai.model.attempt", endpoint.name(), "failed");
+            }
+            call.onAttemptError(this, error);
+        }
+    }
+}
@@ -8,24 +8,40 @@ package com.woopsion.woopsionaicodemother.ai.tools;
  */
 
 import com.woopsion.woopsionaicodemother.constant.AppConstant;
+import com.woopsion.woopsionaicodemother.core.generation.GenerationCancellation;
+import com.woopsion.woopsionaicodemother.core.snapshot.FileHashIndex;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.ToolMemoryId;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardCopyOption;
 
 /**
  * 文件写入工具
  * 支持 AI 通过工具调用的方式写入文件
+ * 内容与现有文件相同时不写入，文件修改时间不变，Vite 的增量构建缓存不会因此失效；
+ * 是否相同通过 {@link FileHashIndex} 比较哈希，未修改的文件不必重新读取。
+ * 每次生成使用自己的实例，持有该次生成的取消令牌
  */
 @Slf4j
 public class FileWriteTool {
 
+    private final GenerationCancellation.Token cancellationToken;
+
+    private final FileHashIndex fileHashIndex;
+
+    public FileWriteTool(GenerationCancellation.Token cancellationToken, FileHashIndex fileHashIndex) {
+        this.cancellationToken = cancellationToken;
+        this.fileHashIndex = fileHashIndex;
+    }
+
     @Tool("写入文件到指定路径")
     public String writeFile(
             @P("文件的相对路径")
@@ -34,23 +50,36 @@ public class FileWriteTool {
             String content,
             @ToolMemoryId Long appId
     ) {
+        // 生成已取消时不再写入文件
+        if (cancellationToken.isCancelled()) {
+            log.info("应用 {} 的生成已取消，跳过写入文件: {}", appId, relativeFilePath);
+            return "生成已取消，未写入文件: " + relativeFilePath;
+        }
         try {
             Path path = Paths.get(relativeFilePath);
+            // 相对路径处理，创建基于 appId 的项目目录
+            String projectDirName = "vue_project_" + appId;
+            Path projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, projectDirName);
             if (!path.isAbsolute()) {
-                // 相对路径处理，创建基于 appId 的项目目录
-                String projectDirName = "vue_project_" + appId;
-                Path projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, projectDirName);
                 path = projectRoot.resolve(relativeFilePath);
             }
+            Path workspaceDir = path.toAbsolutePath().normalize().startsWith(projectRoot.toAbsolutePath().normalize())
+                    ? projectRoot : path.toAbsolutePath().getParent();
             // 创建父目录（如果不存在）
             Path parentDir = path.getParent();
             if (parentDir != null) {
                 Files.createDirectories(parentDir);
             }
+            byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+            String hash = FileHashIndex.hash(bytes);
+            // 内容未变化时不写入，告知 AI 文件未变化
+            if (Files.isRegularFile(path) && Files.size(path) == bytes.length && hash.equals(fileHashIndex.hash(workspaceDir, path))) {
+                log.info("文件内容未变化，跳过写入: {}", path.toAbsolutePath());
+                return "文件内容未变化，无需写入: " + relativeFilePath;
+            }
             // 写入文件内容
-            Files.write(path, content.getBytes(),
-                    StandardOpenOption.CREATE,
-                    StandardOpenOption.TRUNCATE_EXISTING);
+            writeAtomically(path, bytes);
+            fileHashIndex.update(workspaceDir, path, hash);
             log.info("成功写入文件: {}", path.toAbsolutePath());
             // 注意要返回相对路径，不能让 AI 把文件绝对路径返回给用户
             return "文件写入成功: " + relativeFilePath;
@@ -60,4 +89,22 @@ public class FileWriteTool {
             return errorMessage;
         }
     }
+
+    /**
+     * 先写入同目录下的临时文件再重命名，构建和预览不会读到写了一半的文件
+     */
+    private static void writeAtomically(Path path, byte[] bytes) throws IOException {
+        Path dir = path.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(dir, "." + path.getFileName(), ".tmp");
+        try {
+            Files.write(temp, bytes);
+            try {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
 }
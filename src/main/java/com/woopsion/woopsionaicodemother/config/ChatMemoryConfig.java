@@ -0,0 +1,66 @@
+package com.woopsion.woopsionaicodemother.config;
+
+import com.woopsion.woopsionaicodemother.model.enums.CodeGenTypeEnum;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/16
+ * @time 21:40
+ * @description
+ */
+
+/**
+ * 对话记忆配置
+ * 记忆按 token 数而不是消息数限制大小，超出预算时较早的轮次压缩为摘要，
+ * 每次请求的输入 token 数不会随对话轮数持续增长
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.chat-memory")
+@Data
+public class ChatMemoryConfig {
+
+    /**
+     * HTML 模式的 token 预算
+     */
+    private int htmlMaxTokens = 16000;
+
+    /**
+     * 多文件模式的 token 预算
+     */
+    private int multiFileMaxTokens = 24000;
+
+    /**
+     * Vue 项目模式的 token 预算，工具调用参数中包含完整的文件内容
+     */
+    private int vueProjectMaxTokens = 48000;
+
+    /**
+     * 摘要的最大字符数，超出时丢弃最早的内容
+     */
+    private int summaryMaxChars = 4000;
+
+    /**
+     * 本地保留的记忆窗口的总字节数上限（估算值），按每个窗口的大小计入，默认 256 MB
+     */
+    private long windowCacheMaxBytes = 256L * 1024 * 1024;
+
+    /**
+     * 本地缓存的对话记忆个数上限。记忆实例不持有消息，占用的内存固定，按个数而不是字节数限制；
+     * 随对话长度增长的记忆窗口由 windowCacheMaxBytes 按字节数限制
+     */
+    private int memoryCacheMaxSize = 1000;
+
+    /**
+     * 获取指定生成类型的 token 预算
+     */
+    public int getMaxTokens(CodeGenTypeEnum codeGenType) {
+        return switch (codeGenType) {
+            case HTML -> htmlMaxTokens;
+            case MULTI_FILE -> multiFileMaxTokens;
+            case VUE_PROJECT -> vueProjectMaxTokens;
+        };
+    }
+}
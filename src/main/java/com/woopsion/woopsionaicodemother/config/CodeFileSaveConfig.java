@@ -0,0 +1,27 @@
+package com.woopsion.woopsionaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/16
+ * @time 14:05
+ * @description
+ */
+
+/**
+ * 代码文件保存配置
+ * 生成代码由 CodeFileSaveQueue 在保存虚拟线程池中落盘，同一应用目录串行写入
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.code-save")
+@Data
+public class CodeFileSaveConfig {
+
+    /**
+     * 全局最大并发写入数，超出的写入在各自的应用目录通道中排队
+     */
+    private int maxConcurrentSaves = 16;
+}
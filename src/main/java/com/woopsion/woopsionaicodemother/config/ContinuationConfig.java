@@ -0,0 +1,38 @@
+package com.woopsion.woopsionaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/17
+ * @time 02:10
+ * @description
+ */
+
+/**
+ * 输出截断自动续写配置
+ * 模型因达到 max-tokens 停止输出（finish_reason=length）时，只携带已输出内容的末尾发起续写请求，
+ * 续写内容接在同一个流和同一个代码块之后
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.generation.continuation")
+@Data
+public class ContinuationConfig {
+
+    /**
+     * 是否启用自动续写
+     */
+    private boolean enabled = true;
+
+    /**
+     * 一次生成最多续写的次数
+     */
+    private int maxContinuations = 2;
+
+    /**
+     * 续写请求携带的已输出内容末尾的字符数
+     */
+    private int tailChars = 2000;
+}
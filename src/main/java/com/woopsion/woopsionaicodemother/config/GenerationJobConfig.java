@@ -0,0 +1,26 @@
+package com.woopsion.woopsionaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 生成任务配置
+ * 任务记录执行节点，节点重启后把自己遗留的未完成任务标记为失败；
+ * 节点标识变化（如容器重新部署）或节点不再启动时，由心跳超时兜底
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.generation.job")
+@Data
+public class GenerationJobConfig {
+
+    /**
+     * 当前节点标识，重新部署后应保持不变；为空时使用主机名
+     */
+    private String nodeId;
+
+    /**
+     * 未完成任务的心跳超时（分钟），所属节点超过该时间未更新的排队中、执行中任务标记为失败
+     */
+    private long staleMinutes = 5;
+}
@@ -0,0 +1,52 @@
+package com.woopsion.woopsionaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/16
+ * @time 20:40
+ * @description
+ */
+
+/**
+ * 生成调度配置
+ * 限制同时调用模型的生成数量，超出的请求排队，排队也有上限
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.generation.scheduler")
+@Data
+public class GenerationSchedulerConfig {
+
+    /**
+     * 单节点同时进行的生成数上限
+     */
+    private int maxRunning = 16;
+
+    /**
+     * 单个用户同时进行的生成数上限
+     */
+    private int maxRunningPerUser = 2;
+
+    /**
+     * 单节点最大排队数
+     */
+    private int maxQueued = 200;
+
+    /**
+     * 单个用户最大排队数
+     */
+    private int maxQueuedPerUser = 3;
+
+    /**
+     * 应用优先级每提升 1 点，相当于提前排队的毫秒数
+     */
+    private long priorityWeightMs = 300;
+
+    /**
+     * 所有客户端断开后等待重连的宽限期（秒），超过后取消生成
+     */
+    private long abandonGraceSeconds = 60;
+}
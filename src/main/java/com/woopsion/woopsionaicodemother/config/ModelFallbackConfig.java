@@ -0,0 +1,113 @@
+package com.woopsion.woopsionaicodemother.config;
+
+import cn.hutool.core.util.StrUtil;
+import com.woopsion.woopsionaicodemother.ai.streaming.CircuitBreaker;
+import com.woopsion.woopsionaicodemother.ai.streaming.HedgingStreamingChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/17
+ * @time 01:40
+ * @description
+ */
+
+/**
+ * 流式模型对冲和故障转移配置
+ * 为默认流式模型和推理流式模型分别配置备用端点（OpenAI 兼容），没有配置备用端点时直接使用原模型
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.model-fallback")
+@Data
+public class ModelFallbackConfig {
+
+    /**
+     * 等待首个 token 的时间（毫秒），超过后向备用端点发起对冲请求
+     */
+    private long ttftThresholdMs = 4000;
+
+    /**
+     * 连续失败多少次后熔断
+     */
+    private int failureThreshold = 3;
+
+    /**
+     * 熔断后多久（秒）放行探测请求
+     */
+    private long openDurationSeconds = 30;
+
+    /**
+     * 默认流式模型（HTML、多文件生成）的备用端点
+     */
+    private List<Endpoint> openAi = new ArrayList<>();
+
+    /**
+     * 推理流式模型（Vue 项目生成，带工具调用）的备用端点，需支持工具调用
+     */
+    private List<Endpoint> reasoning = new ArrayList<>();
+
+    @Data
+    public static class Endpoint {
+
+        /**
+         * 端点名称，用于日志和监控指标，默认取模型名称
+         */
+        private String name;
+
+        private String baseUrl;
+
+        private String apiKey;
+
+        private String modelName;
+
+        private int maxTokens = 8192;
+    }
+
+    @Bean
+    public StreamingChatModel hedgedOpenAiStreamingChatModel(
+            @Qualifier("openAiStreamingChatModel") StreamingChatModel openAiStreamingChatModel,
+            MeterRegistry meterRegistry) {
+        return hedge("openAiStreamingChatModel", openAiStreamingChatModel, openAi, meterRegistry);
+    }
+
+    @Bean
+    public StreamingChatModel hedgedReasoningStreamingChatModel(
+            @Qualifier("reasoningStreamingChatModel") StreamingChatModel reasoningStreamingChatModel,
+            MeterRegistry meterRegistry) {
+        return hedge("reasoningStreamingChatModel", reasoningStreamingChatModel, reasoning, meterRegistry);
+    }
+
+    private StreamingChatModel hedge(String name, StreamingChatModel primary, List<Endpoint> secondaries,
+                                     MeterRegistry meterRegistry) {
+        if (secondaries.isEmpty()) {
+            return primary;
+        }
+        Duration openDuration = Duration.ofSeconds(openDurationSeconds);
+        List<HedgingStreamingChatModel.Endpoint> endpoints = new ArrayList<>();
+        endpoints.add(new HedgingStreamingChatModel.Endpoint(HedgingStreamingChatModel.PRIMARY_ENDPOINT, primary,
+                new CircuitBreaker(failureThreshold, openDuration)));
+        for (Endpoint secondary : secondaries) {
+            StreamingChatModel model = OpenAiStreamingChatModel.builder()
+                    .baseUrl(secondary.getBaseUrl())
+                    .apiKey(secondary.getApiKey())
+                    .modelName(secondary.getModelName())
+                    .maxTokens(secondary.getMaxTokens())
+                    .build();
+            endpoints.add(new HedgingStreamingChatModel.Endpoint(
+                    StrUtil.blankToDefault(secondary.getName(), secondary.getModelName()), model,
+                    new CircuitBreaker(failureThreshold, openDuration)));
+        }
+        return new HedgingStreamingChatModel(name, endpoints, Duration.ofMillis(ttftThresholdMs), meterRegistry);
+    }
+}
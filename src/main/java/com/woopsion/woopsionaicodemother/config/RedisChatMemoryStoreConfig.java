@@ -1,10 +1,16 @@
 package com.woopsion.woopsionaicodemother.config;
 
-import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
+import cn.hutool.core.util.StrUtil;
+import com.woopsion.woopsionaicodemother.ai.memory.AppendOnlyRedisChatMemoryStore;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.JedisPooled;
 
 /**
  * @author wangpengcan
@@ -25,13 +31,22 @@ public class RedisChatMemoryStoreConfig {
 
     private long ttl;
 
+    /**
+     * 超过该大小（字节）的消息压缩存储
+     */
+    private int compressThreshold = 1024;
+
+    @Bean(destroyMethod = "close")
+    public JedisPooled chatMemoryJedis() {
+        return new JedisPooled(new HostAndPort(host, port), DefaultJedisClientConfig.builder()
+                .password(StrUtil.emptyToNull(password))
+                .build());
+    }
+
     @Bean
-    public RedisChatMemoryStore redisChatMemoryStore() {
-        return RedisChatMemoryStore.builder()
-                .host(host)
-                .port(port)
-                .password(password)
-                .ttl(ttl)
-                .build();
+    public ChatMemoryStore redisChatMemoryStore(JedisPooled chatMemoryJedis, ChatMemoryConfig chatMemoryConfig,
+                                                MeterRegistry meterRegistry) {
+        return new AppendOnlyRedisChatMemoryStore(chatMemoryJedis, ttl, compressThreshold,
+                chatMemoryConfig.getWindowCacheMaxBytes(), meterRegistry);
     }
 }
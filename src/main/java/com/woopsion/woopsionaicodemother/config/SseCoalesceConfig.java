@@ -0,0 +1,37 @@
+package com.woopsion.woopsionaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/16
+ * @time 20:05
+ * @description
+ */
+
+/**
+ * SSE 输出合并配置
+ * 模型逐 token 输出，合并后每个 SSE 帧携带多个 token，减少序列化、写入和 flush 次数
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.sse.coalesce")
+@Data
+public class SseCoalesceConfig {
+
+    /**
+     * 是否开启合并
+     */
+    private boolean enabled = true;
+
+    /**
+     * 最长合并间隔（毫秒），首个 token 不等待
+     */
+    private long intervalMs = 50;
+
+    /**
+     * 单帧最大字符数，超过后立即发送
+     */
+    private int maxChars = 4096;
+}
@@ -92,6 +92,19 @@ public class VirtualThreadPoolConfig {
         return executor;
     }
 
+    /**
+     * 代码保存虚拟线程池
+     * 用于生成代码落盘，并发度由 CodeFileSaveQueue 控制，上限见 CodeFileSaveConfig
+     *
+     * @return 代码保存虚拟线程池
+     */
+    @Bean("saveVirtualThreadPool")
+    public VirtualThreadExecutor saveVirtualThreadPool() {
+        VirtualThreadExecutor executor = VirtualThreadExecutor.create("save-vt");
+        registerExecutor("saveVirtualThreadPool", executor);
+        return executor;
+    }
+
     /**
      * 注册执行器到注册表
      *
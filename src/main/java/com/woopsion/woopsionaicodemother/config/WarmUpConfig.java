@@ -0,0 +1,53 @@
+package com.woopsion.woopsionaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/16
+ * @time 23:50
+ * @description
+ */
+
+/**
+ * 启动预热配置
+ * 服务关闭时记录最近使用的对话记忆，启动后在后台按限速预先创建 AI 服务和恢复对话记忆，
+ * 预热完成前就绪检查（readiness）返回 OUT_OF_SERVICE，负载均衡逐步把流量切到新节点
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.warm-up")
+@Data
+public class WarmUpConfig {
+
+    /**
+     * 是否启用预热
+     */
+    private boolean enabled = true;
+
+    /**
+     * 关闭时记录的最近使用的对话记忆数
+     */
+    private int snapshotSize = 200;
+
+    /**
+     * 启动时从对话历史中额外预热的最近活跃应用数
+     */
+    private int recentApps = 200;
+
+    /**
+     * 最近活跃的时间范围（小时）
+     */
+    private int recentHours = 24;
+
+    /**
+     * 每秒最多预热的对话记忆数，避免启动时集中访问数据库和 Redis
+     */
+    private int ratePerSecond = 10;
+
+    /**
+     * 预热的最长时间（秒），超时后停止预热，就绪检查不再等待
+     */
+    private int timeoutSeconds = 120;
+}
@@ -0,0 +1,37 @@
+package com.woopsion.woopsionaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/17
+ * @time 05:00
+ * @description
+ */
+
+/**
+ * 工作目录快照配置
+ * 每轮生成前为工作目录创建快照，文件内容按哈希去重保存，清单记录每个文件的哈希
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.workspace-snapshot")
+@Data
+public class WorkspaceSnapshotConfig {
+
+    /**
+     * 是否启用快照
+     */
+    private boolean enabled = true;
+
+    /**
+     * 每个工作目录保留的快照数，超出时删除最早的快照
+     */
+    private int maxSnapshots = 30;
+
+    /**
+     * 回收未被引用的内容时，最近这段时间（分钟）内写入的内容不回收
+     */
+    private int gcGraceMinutes = 60;
+}
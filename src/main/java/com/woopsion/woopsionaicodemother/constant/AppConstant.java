@@ -23,6 +23,11 @@ public interface AppConstant {
      */
     String CODE_OUTPUT_ROOT_DIR = System.getProperty("user.dir") + "/tmp/code_output";
 
+    /**
+     * 工作目录快照存储（按内容寻址的文件和每轮的清单）
+     */
+    String CODE_STORE_ROOT_DIR = System.getProperty("user.dir") + "/tmp/code_store";
+
     /**
      * 应用部署目录
      */
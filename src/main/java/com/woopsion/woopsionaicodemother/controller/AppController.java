@@ -2,7 +2,8 @@ package com.woopsion.woopsionaicodemother.controller;
 
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mybatisflex.core.paginate.Page;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.woopsion.woopsionaicodemother.annotation.AuthCheck;
@@ -11,6 +12,7 @@ import com.woopsion.woopsionaicodemother.common.DeleteRequest;
 import com.woopsion.woopsionaicodemother.common.ResultUtils;
 import com.woopsion.woopsionaicodemother.constant.AppConstant;
 import com.woopsion.woopsionaicodemother.constant.UserConstant;
+import com.woopsion.woopsionaicodemother.core.generation.GenerationEvent;
 import com.woopsion.woopsionaicodemother.entity.App;
 import com.woopsion.woopsionaicodemother.entity.User;
 import com.woopsion.woopsionaicodemother.exception.BusinessException;
@@ -19,8 +21,12 @@ import com.woopsion.woopsionaicodemother.exception.ThrowUtils;
 import com.woopsion.woopsionaicodemother.model.dto.app.*;
 import com.woopsion.woopsionaicodemother.model.enums.CodeGenTypeEnum;
 import com.woopsion.woopsionaicodemother.model.vo.AppVO;
+import com.woopsion.woopsionaicodemother.model.vo.GenerationJobVO;
+import com.woopsion.woopsionaicodemother.model.vo.WorkspaceFileChangeVO;
+import com.woopsion.woopsionaicodemother.model.vo.WorkspaceSnapshotVO;
 import com.woopsion.woopsionaicodemother.service.AppService;
 import com.woopsion.woopsionaicodemother.service.ChatHistoryService;
+import com.woopsion.woopsionaicodemother.service.GenerationJobService;
 import com.woopsion.woopsionaicodemother.service.ProjectDownloadService;
 import com.woopsion.woopsionaicodemother.service.UserService;
 import jakarta.annotation.Resource;
@@ -63,6 +69,14 @@ public class AppController {
     @Resource
     private ProjectDownloadService projectDownloadService;
 
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Resource
+    private GenerationJobService generationJobService;
+
+    private static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
     /**
      * 下载应用代码
      *
@@ -119,33 +133,152 @@ public class AppController {
 
     /**
      * SSE 流式输出代码到前端
+     * 浏览器 EventSource 自动重连时会携带 Last-Event-ID 请求头，此时从断点恢复而不是重新生成
      *
-     * @param appId   应用ID
-     * @param message 用户消息
-     * @param request HTTP请求
+     * @param appId       应用ID
+     * @param message     用户消息
+     * @param lastEventId 客户端最后收到的事件 ID（可选）
+     * @param request     HTTP请求
      * @return SSE 事件流
      */
     @GetMapping(value = "/chat/gen/code", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<ServerSentEvent<String>> chatToGenCode(@RequestParam Long appId,
                                                        @RequestParam String message,
+                                                       @RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) String lastEventId,
                                                        HttpServletRequest request) {
         // 参数校验
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
         ThrowUtils.throwIf(StrUtil.isBlank(message), ErrorCode.PARAMS_ERROR, "用户消息不能为空");
         // 获取当前登录用户
         User loginUser = userService.getLoginUser(request);
-        // 调用服务生成代码（流式）
-        Flux<String> contentFlux = appService.chatToGenCode(appId, message, loginUser);
+        // 调用服务生成代码（流式），重连时从断点恢复
+        Flux<GenerationEvent> eventFlux = StrUtil.isNotBlank(lastEventId)
+                ? appService.resumeGenCode(appId, lastEventId, loginUser)
+                : appService.chatToGenCode(appId, message, loginUser);
+        return toSseStream(eventFlux);
+    }
+
+    /**
+     * 断线重连后恢复 SSE 流式输出
+     * 先重放断点之后缓冲的内容，再继续推送实时内容
+     *
+     * @param appId       应用ID
+     * @param lastEventId 客户端最后收到的事件 ID，可通过 Last-Event-ID 请求头或参数传递
+     * @param request     HTTP请求
+     * @return SSE 事件流
+     */
+    @GetMapping(value = "/chat/gen/code/resume", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> resumeGenCode(@RequestParam Long appId,
+                                                       @RequestParam(required = false) String lastEventId,
+                                                       @RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) String lastEventIdHeader,
+                                                       HttpServletRequest request) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
+        String resumeFrom = StrUtil.isNotBlank(lastEventIdHeader) ? lastEventIdHeader : lastEventId;
+        ThrowUtils.throwIf(StrUtil.isBlank(resumeFrom), ErrorCode.PARAMS_ERROR, "Last-Event-ID 不能为空");
+        User loginUser = userService.getLoginUser(request);
+        return toSseStream(appService.resumeGenCode(appId, resumeFrom, loginUser));
+    }
+
+    /**
+     * 取消正在进行的生成
+     * 中止模型调用，已生成的内容会保存到对话历史
+     *
+     * @param appCancelGenRequest 取消请求
+     * @param request             HTTP请求
+     * @return 是否有生成被取消
+     */
+    @PostMapping("/chat/gen/cancel")
+    public BaseResponse<Boolean> cancelGenCode(@RequestBody AppCancelGenRequest appCancelGenRequest, HttpServletRequest request) {
+        ThrowUtils.throwIf(appCancelGenRequest == null, ErrorCode.PARAMS_ERROR);
+        User loginUser = userService.getLoginUser(request);
+        return ResultUtils.success(appService.cancelGenCode(appCancelGenRequest.getAppId(), loginUser));
+    }
+
+    /**
+     * 获取应用最近一次生成任务
+     * 页面刷新后可据此判断是否有进行中的生成，并以 {id}-0 作为 Last-Event-ID 重新订阅
+     *
+     * @param appId   应用ID
+     * @param request HTTP请求
+     * @return 生成任务，没有时返回 null
+     */
+    @GetMapping("/chat/gen/job/latest")
+    public BaseResponse<GenerationJobVO> getLatestGenerationJob(@RequestParam Long appId, HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        return ResultUtils.success(generationJobService.getLatestJob(appId, loginUser));
+    }
 
+    /**
+     * 列出应用工作目录的快照
+     * 每轮生成前会为上一轮的结果创建快照，最新的在前
+     *
+     * @param appId   应用ID
+     * @param request HTTP请求
+     * @return 快照列表
+     */
+    @GetMapping("/snapshot/list")
+    public BaseResponse<List<WorkspaceSnapshotVO>> listSnapshots(@RequestParam Long appId, HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        return ResultUtils.success(appService.listSnapshots(appId, loginUser));
+    }
+
+    /**
+     * 比较两个快照之间的文件变更
+     *
+     * @param appId   应用ID
+     * @param fromId  起始快照ID
+     * @param toId    目标快照ID，不传时与当前代码比较
+     * @param request HTTP请求
+     * @return 文件变更
+     */
+    @GetMapping("/snapshot/diff")
+    public BaseResponse<List<WorkspaceFileChangeVO>> diffSnapshots(@RequestParam Long appId,
+                                                                   @RequestParam Long fromId,
+                                                                   @RequestParam(required = false) Long toId,
+                                                                   HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        return ResultUtils.success(appService.diffSnapshots(appId, fromId, toId, loginUser));
+    }
+
+    /**
+     * 回滚应用代码到指定快照
+     *
+     * @param appSnapshotRollbackRequest 回滚请求
+     * @param request                    HTTP请求
+     * @return 回滚前的快照ID，可用于撤销回滚
+     */
+    @PostMapping("/snapshot/rollback")
+    public BaseResponse<Long> rollbackSnapshot(@RequestBody AppSnapshotRollbackRequest appSnapshotRollbackRequest,
+                                               HttpServletRequest request) {
+        ThrowUtils.throwIf(appSnapshotRollbackRequest == null, ErrorCode.PARAMS_ERROR);
+        User loginUser = userService.getLoginUser(request);
+        return ResultUtils.success(appService.rollbackSnapshot(appSnapshotRollbackRequest.getAppId(),
+                appSnapshotRollbackRequest.getSnapshotId(), loginUser));
+    }
+
+    /**
+     * 将生成事件流转换为 SSE 格式，附加结束事件、错误事件、心跳和超时
+     *
+     * @param eventFlux 生成事件流
+     * @return SSE 事件流
+     */
+    private Flux<ServerSentEvent<String>> toSseStream(Flux<GenerationEvent> eventFlux) {
         // 转换内容流为 SSE 格式
         // 注意：这里的 map 操作是高频操作（每个字符块都会调用），不传递 MDC 以提升性能
-        Flux<ServerSentEvent<String>> dataFlux = contentFlux
-                .map(chunk -> {
-                    // 将内容包装成JSON对象（高频操作，不传递 MDC）
-                    Map<String, String> wrapper = Map.of("d", chunk);
-                    String jsonData = JSONUtil.toJsonStr(wrapper);
+        Flux<ServerSentEvent<String>> dataFlux = eventFlux
+                .map(event -> {
+                    if (!event.isContent()) {
+                        // 状态事件（排队位置）不带事件 ID，不影响断线恢复
+                        return ServerSentEvent.<String>builder()
+                                .event(event.event())
+                                .data("{\"position\":" + event.data() + "}")
+                                .build();
+                    }
+                    // 将内容包装成JSON对象（高频操作，不传递 MDC），整条链路只在这里序列化一次
+                    // 事件 ID 用于断线重连时从断点恢复
                     return ServerSentEvent.<String>builder()
-                            .data(jsonData)
+                            .id(event.id())
+                            .data(toSseData(event.data()))
                             .build();
                 })
                 // 仅在错误处理时传递 MDC，用于日志记录
@@ -208,6 +341,20 @@ public class AppController {
 
 
 
+    /**
+     * 将内容块包装为 {"d": chunk} 格式的 JSON
+     *
+     * @param chunk 内容块
+     * @return JSON 字符串
+     */
+    private String toSseData(String chunk) {
+        try {
+            return objectMapper.writeValueAsString(Map.of("d", chunk));
+        } catch (JsonProcessingException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "SSE 数据序列化失败");
+        }
+    }
+
     // region 用户接口
 
     /**
@@ -7,30 +7,45 @@ package com.woopsion.woopsionaicodemother.core;
  * @description
  */
 
-import cn.hutool.json.JSONUtil;
+import cn.hutool.core.util.StrUtil;
 import com.woopsion.woopsionaicodemother.ai.AiCodeGeneratorService;
 import com.woopsion.woopsionaicodemother.ai.AiCodeGeneratorServiceFactory;
 import com.woopsion.woopsionaicodemother.ai.model.HtmlCodeResult;
 import com.woopsion.woopsionaicodemother.ai.model.MultiFileCodeResult;
-import com.woopsion.woopsionaicodemother.core.parser.CodeParserExecutor;
+import com.woopsion.woopsionaicodemother.ai.streaming.HedgingStreamingChatModel;
+import com.woopsion.woopsionaicodemother.core.generation.GenerationCancellation;
+import com.woopsion.woopsionaicodemother.core.generation.GenerationMetrics;
+import com.woopsion.woopsionaicodemother.core.generation.OutputContinuation;
+import com.woopsion.woopsionaicodemother.core.parser.StreamingCodeParser;
+import com.woopsion.woopsionaicodemother.core.saver.CodeFileSaveQueue;
 import com.woopsion.woopsionaicodemother.core.saver.CodeFileSaverExecutor;
+import com.woopsion.woopsionaicodemother.core.snapshot.FileHashIndex;
 import com.woopsion.woopsionaicodemother.exception.BusinessException;
 import com.woopsion.woopsionaicodemother.exception.ErrorCode;
 import com.woopsion.woopsionaicodemother.model.enums.CodeGenTypeEnum;
 import com.woopsion.woopsionaicodemother.model.message.AiResponseMessage;
+import com.woopsion.woopsionaicodemother.model.message.StreamMessage;
 import com.woopsion.woopsionaicodemother.model.message.ToolExecutedMessage;
 import com.woopsion.woopsionaicodemother.model.message.ToolRequestMessage;
 import dev.langchain4j.agent.tool.ToolExecutionRequest;
 import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.StreamingHandle;
 import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.tool.BeforeToolExecution;
 import dev.langchain4j.service.tool.ToolExecution;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 
 import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * AI 代码生成外观类，组合生成和保存功能
@@ -41,6 +56,21 @@ public class AiCodeGeneratorFacade {
     @Resource
     private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
 
+    @Resource
+    private CodeFileSaveQueue codeFileSaveQueue;
+
+    @Resource
+    private GenerationCancellation generationCancellation;
+
+    @Resource
+    private FileHashIndex fileHashIndex;
+
+    @Resource
+    private GenerationMetrics generationMetrics;
+
+    @Resource
+    private OutputContinuation outputContinuation;
+
 
 
     /**
@@ -54,14 +84,14 @@ public class AiCodeGeneratorFacade {
         if (codeGenTypeEnum == null) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "生成类型为空");
         }
-        AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId);
-        return switch (codeGenTypeEnum) {
+        AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(codeGenTypeEnum);
+        File savedDir = switch (codeGenTypeEnum) {
             case HTML -> {
-                HtmlCodeResult result = aiCodeGeneratorService.generateHtmlCode(userMessage);
+                HtmlCodeResult result = aiCodeGeneratorService.generateHtmlCode(appId, userMessage);
                 yield CodeFileSaverExecutor.executeSaver(result, CodeGenTypeEnum.HTML,appId);
             }
             case MULTI_FILE -> {
-                MultiFileCodeResult result = aiCodeGeneratorService.generateMultiFileCode(userMessage);
+                MultiFileCodeResult result = aiCodeGeneratorService.generateMultiFileCode(appId, userMessage);
                 yield CodeFileSaverExecutor.executeSaver(result, CodeGenTypeEnum.MULTI_FILE,appId);
             }
             default -> {
@@ -69,6 +99,9 @@ public class AiCodeGeneratorFacade {
                 throw new BusinessException(ErrorCode.SYSTEM_ERROR, errorMessage);
             }
         };
+        // 保存器不经过哈希索引写入，使该工作目录的哈希失效
+        fileHashIndex.invalidateWorkspace(savedDir.toPath());
+        return savedDir;
     }
 
     /**
@@ -76,26 +109,29 @@ public class AiCodeGeneratorFacade {
      *
      * @param userMessage     用户提示词
      * @param codeGenTypeEnum 生成类型
+     * @return 流式消息（HTML、MULTI_FILE 只包含 AI 响应消息）
      */
-    public Flux<String> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum,Long appId) {
+    public Flux<StreamMessage> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum,Long appId) {
         if (codeGenTypeEnum == null) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "生成类型为空");
         }
-        // 根据 appId 获取对应的 AI 服务实例
-        AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId,codeGenTypeEnum);
+        // 根据生成类型获取对应的 AI 服务实例，对话记忆按 appId 区分
+        AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(codeGenTypeEnum);
+        // 本次生成的取消令牌，在调用 AI 服务之前创建，本次生成的工具在调用时取得该令牌
+        GenerationCancellation.Token cancellationToken = generationCancellation.begin(appId);
         return switch (codeGenTypeEnum) {
             case HTML -> {
-                Flux<String> codeStream = aiCodeGeneratorService.generateHtmlCodeStream(userMessage);
-                yield processCodeStream(codeStream, CodeGenTypeEnum.HTML, appId);
+                TokenStream tokenStream = aiCodeGeneratorService.generateHtmlCodeStream(appId, userMessage);
+                yield processCodeStream(tokenStream, CodeGenTypeEnum.HTML, appId, cancellationToken);
             }
             case MULTI_FILE -> {
-                Flux<String> codeStream = aiCodeGeneratorService.generateMultiFileCodeStream(userMessage);
-                yield processCodeStream(codeStream, CodeGenTypeEnum.MULTI_FILE, appId);
+                TokenStream tokenStream = aiCodeGeneratorService.generateMultiFileCodeStream(appId, userMessage);
+                yield processCodeStream(tokenStream, CodeGenTypeEnum.MULTI_FILE, appId, cancellationToken);
             }
             case VUE_PROJECT -> {
+                // Vue 项目的文件由工具调用直接写入，无需再解析保存
                 TokenStream tokenStream = aiCodeGeneratorService.generateVueProjectCodeStream(appId, userMessage);
-                Flux<String> codeStream = processTokenStream(tokenStream);
-                yield processCodeStream(codeStream, CodeGenTypeEnum.MULTI_FILE, appId);
+                yield processTokenStream(tokenStream, CodeGenTypeEnum.VUE_PROJECT, appId, null, cancellationToken);
             }
             default -> {
                 String errorMessage = "不支持的生成类型：" + codeGenTypeEnum.getValue();
@@ -108,73 +144,167 @@ public class AiCodeGeneratorFacade {
 
     /**
      * 通用流式代码处理方法
+     * 在流式传输的同时增量解析代码块，每个代码块闭合后立即提交到保存队列
      *
-     * @param codeStream  代码流
+     * @param tokenStream TokenStream 对象
      * @param codeGenType 代码生成类型
-     * @return 流式响应
+     * @return 流式响应（只包含 AI 响应消息）
      */
-    private Flux<String> processCodeStream(Flux<String> codeStream, CodeGenTypeEnum codeGenType, Long appId) {
-        StringBuilder codeBuilder = new StringBuilder();
-        return codeStream
-                .doOnNext(chunk -> {
-                    // 实时收集代码片段
-                    if (chunk != null && !chunk.isEmpty()) {
-                        log.debug("收集到代码片段: {} 字符", chunk.length());
-                        codeBuilder.append(chunk);
-                    }
-                })
-                .doOnError(error -> {
-                    // 发生错误时记录日志
-                    log.error("流式处理错误: {}", error.getMessage(), error);
-                })
-                .doOnComplete(() -> {
-                    // 流式返回完成后异步保存代码，避免阻塞流式传输
-                    log.info("流式处理完成，开始保存代码，总长度: {}", codeBuilder.length());
-                    new Thread(() -> {
-                        try {
-                            if (codeBuilder.length() == 0) {
-                                log.warn("生成的代码为空，跳过保存");
-                                return;
-                            }
-                            String completeCode = codeBuilder.toString();
-                            // 使用执行器解析代码
-                            Object parsedResult = CodeParserExecutor.executeParser(completeCode, codeGenType);
-                            // 使用执行器保存代码
-                            File savedDir = CodeFileSaverExecutor.executeSaver(parsedResult, codeGenType, appId);
-                            log.info("保存成功，路径为：" + savedDir.getAbsolutePath());
-                        } catch (Exception e) {
-                            log.error("保存失败: {}", e.getMessage(), e);
-                        }
-                    }).start();
-                });
+    private Flux<StreamMessage> processCodeStream(TokenStream tokenStream, CodeGenTypeEnum codeGenType, Long appId,
+                                                  GenerationCancellation.Token cancellationToken) {
+        return Flux.defer(() -> {
+            // 本轮生成的序号，新一轮生成会取代本轮尚未执行的保存
+            long generationId = codeFileSaveQueue.nextGeneration();
+            // 已保存的文件，每个文件只保留第一个代码块
+            Set<String> savedFiles = new HashSet<>();
+            StreamingCodeParser codeParser = new StreamingCodeParser((language, fileName, code) ->
+                    saveCodeBlock(language, fileName, code, codeGenType, appId, generationId, savedFiles));
+            return processTokenStream(tokenStream, codeGenType, appId, codeParser, cancellationToken)
+                    .doOnError(error -> {
+                        // 发生错误时记录日志
+                        log.error("流式处理错误: {}", error.getMessage(), error);
+                    })
+                    .doOnComplete(() -> finishCodeStream(codeParser, codeGenType, appId, generationId, savedFiles));
+        });
     }
 
     /**
-     * 将 TokenStream 转换为 Flux<String>，并传递工具调用信息
+     * 提交闭合的代码块到保存队列
+     * 文件路径由生成类型的策略确定，围栏中的文件名提示优先于按语言推断
+     */
+    private void saveCodeBlock(String language, String fileNameHint, String code, CodeGenTypeEnum codeGenType, Long appId,
+                               long generationId, Set<String> savedFiles) {
+        String fileName = CodeFileSaverExecutor.resolveFilePath(language, fileNameHint, codeGenType);
+        if (fileName == null) {
+            return;
+        }
+        if (savedFiles.contains(fileName)) {
+            log.debug("忽略重复的 {} 代码块", fileName);
+            return;
+        }
+        if (codeFileSaveQueue.submit(fileName, code, codeGenType, appId, generationId)) {
+            savedFiles.add(fileName);
+            log.debug("代码块已提交保存，文件: {}, 长度: {}", fileName, code.length());
+        }
+    }
+
+    /**
+     * 流结束时的兜底处理：HTML 代码块未闭合（输出被截断）或没有任何代码块时
+     */
+    private void finishCodeStream(StreamingCodeParser codeParser, CodeGenTypeEnum codeGenType, Long appId,
+                                  long generationId, Set<String> savedFiles) {
+        if (savedFiles.contains("index.html")) {
+            log.info("流式处理完成，代码已提交保存: {}", savedFiles);
+            return;
+        }
+        if ("html".equals(codeParser.getOpenBlockLanguage())) {
+            log.warn("HTML 代码块未闭合，保存已接收的部分");
+            saveCodeBlock("html", codeParser.getOpenBlockFileName(), codeParser.getOpenBlockCode(), codeGenType, appId,
+                    generationId, savedFiles);
+        } else if (codeGenType == CodeGenTypeEnum.HTML && StrUtil.isNotBlank(codeParser.getRawText())) {
+            // 如果没有找到代码块，将整个内容作为HTML
+            saveCodeBlock("html", null, codeParser.getRawText(), codeGenType, appId, generationId, savedFiles);
+        } else {
+            log.warn("未解析到 HTML 代码块，跳过保存");
+        }
+    }
+
+    /**
+     * 将 TokenStream 转换为 Flux<StreamMessage>，并传递工具调用信息
+     * 消息以对象形式向下游传递，不做 JSON 序列化
+     * 下游取消订阅时中止模型的流式调用，并阻止后续的工具调用继续写文件
+     * 同时记录首个 token 时间、token 间隔、输出速度等生成指标
+     * HTML 和多文件模式的输出达到 max-tokens 被截断时自动续写，续写内容接在同一个流中，见 OutputContinuation
      *
      * @param tokenStream TokenStream 对象
-     * @return Flux<String> 流式响应
+     * @param codeGenType 代码生成类型
+     * @param appId       应用 ID
+     * @param codeParser  代码块解析器，输出在传递给下游前先交给解析器，续写时从中读取未闭合代码块的状态；
+     *                    为 null 时不解析也不续写（Vue 项目）
+     * @param cancellationToken 本次生成的取消令牌，取消时标记，本次生成遗留的工具调用不再写文件
+     * @return Flux<StreamMessage> 流式响应
      */
-    private Flux<String> processTokenStream(TokenStream tokenStream) {
+    private Flux<StreamMessage> processTokenStream(TokenStream tokenStream, CodeGenTypeEnum codeGenType, Long appId,
+                                                   StreamingCodeParser codeParser,
+                                                   GenerationCancellation.Token cancellationToken) {
         return Flux.create(sink -> {
-            tokenStream.onPartialResponse((String partialResponse) -> {
-                        AiResponseMessage aiResponseMessage = new AiResponseMessage(partialResponse);
-                        sink.next(JSONUtil.toJsonStr(aiResponseMessage));
+            sink.onDispose(() -> generationCancellation.end(appId, cancellationToken));
+            GenerationMetrics.Recording recording = generationMetrics.start(codeGenType,
+                    aiCodeGeneratorServiceFactory.getStreamingModelName(codeGenType));
+            // 每次模型调用（含工具调用后的续写）都有各自的句柄，始终持有最新的一个
+            AtomicReference<StreamingHandle> streamingHandle = new AtomicReference<>();
+            AtomicReference<Disposable> continuation = new AtomicReference<>();
+            // 已输出内容的末尾，截断后续写时使用，只保留续写请求需要的长度
+            OutputContinuation.Tail tail = codeParser == null ? null : outputContinuation.newTail();
+            Consumer<String> emitText = text -> {
+                recording.onPartialResponse();
+                if (codeParser != null) {
+                    long parseStart = System.nanoTime();
+                    codeParser.append(text);
+                    generationMetrics.recordParseTime(codeGenType, System.nanoTime() - parseStart);
+                    tail.append(text);
+                }
+                sink.next(new AiResponseMessage(text));
+            };
+            sink.onCancel(() -> {
+                recording.onCancel();
+                cancellationToken.cancel();
+                StreamingHandle handle = streamingHandle.get();
+                if (handle != null && !handle.isCancelled()) {
+                    handle.cancel();
+                }
+                Disposable disposable = continuation.get();
+                if (disposable != null) {
+                    disposable.dispose();
+                }
+                log.info("应用 {} 的生成已被取消，中止模型调用", appId);
+            });
+            tokenStream.onPartialResponseWithContext((PartialResponse partialResponse, PartialResponseContext context) -> {
+                        if (streamingHandle.getAndSet(context.streamingHandle()) == null) {
+                            // 经过对冲的模型在句柄中带有胜出的端点，指标按实际提供服务的端点记录
+                            recording.onEndpoint(HedgingStreamingChatModel.endpointOf(context.streamingHandle()));
+                        }
+                        if (sink.isCancelled()) {
+                            // 取消时尚未收到首个 token，此时才拿到句柄
+                            context.streamingHandle().cancel();
+                            return;
+                        }
+                        emitText.accept(partialResponse.text());
                     })
                     .onToolExecuted((ToolExecution toolExecution) -> {
-                        ToolExecutedMessage toolExecutedMessage = new ToolExecutedMessage(toolExecution);
-                        sink.next(JSONUtil.toJsonStr(toolExecutedMessage));
+                        recording.onToolExecuted();
+                        sink.next(new ToolExecutedMessage(toolExecution));
                     })
                     .beforeToolExecution((BeforeToolExecution beforeToolExecution) -> {
                         ToolExecutionRequest request = beforeToolExecution.request();
-                            ToolRequestMessage toolRequestMessage = new ToolRequestMessage(request);
-                        sink.next(JSONUtil.toJsonStr(toolRequestMessage));
+                        sink.next(new ToolRequestMessage(request));
                     })
                     .onCompleteResponse((ChatResponse response) -> {
-                        sink.complete();
+                        if (codeParser == null || sink.isCancelled() || !outputContinuation.shouldContinue(response, codeGenType)) {
+                            recording.onComplete(response);
+                            sink.complete();
+                            return;
+                        }
+                        continuation.set(outputContinuation.continueOutput(codeGenType, tail, codeParser, recording::onContinuation)
+                                .subscribe(emitText,
+                                        error -> {
+                                            // 续写失败时保留已输出的内容，未闭合的代码块由下游兜底保存
+                                            log.error("应用 {} 的续写失败: {}", appId, error.getMessage(), error);
+                                            recording.onComplete(response);
+                                            sink.complete();
+                                        },
+                                        () -> {
+                                            recording.onComplete(response);
+                                            sink.complete();
+                                        }));
+                        if (sink.isCancelled()) {
+                            // 续写开始前已取消，此时 onCancel 拿不到续写的订阅
+                            continuation.get().dispose();
+                        }
                     })
                     .onError((Throwable error) -> {
                         error.printStackTrace();
+                        recording.onError();
                         sink.error(error);
                     })
                     .start();
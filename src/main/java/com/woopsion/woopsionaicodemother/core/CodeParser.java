@@ -9,88 +9,31 @@ package com.woopsion.woopsionaicodemother.core;
 
 import com.woopsion.woopsionaicodemother.ai.model.HtmlCodeResult;
 import com.woopsion.woopsionaicodemother.ai.model.MultiFileCodeResult;
-
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import com.woopsion.woopsionaicodemother.core.parser.HtmlCodeParser;
+import com.woopsion.woopsionaicodemother.core.parser.MultiFileCodeParser;
 
 /**
  * 代码解析器
- * 提供静态方法解析不同类型的代码内容
+ * 提供静态方法解析不同类型的代码内容，已改为委托 core.parser 下的解析器
  */
 @Deprecated
 public class CodeParser {
 
-    private static final Pattern HTML_CODE_PATTERN = Pattern.compile("```html\\s*\\n([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
-    private static final Pattern CSS_CODE_PATTERN = Pattern.compile("```css\\s*\\n([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
-    private static final Pattern JS_CODE_PATTERN = Pattern.compile("```(?:js|javascript)\\s*\\n([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
+    private static final HtmlCodeParser htmlCodeParser = new HtmlCodeParser();
+
+    private static final MultiFileCodeParser multiFileCodeParser = new MultiFileCodeParser();
 
     /**
      * 解析 HTML 单文件代码
      */
     public static HtmlCodeResult parseHtmlCode(String codeContent) {
-        HtmlCodeResult result = new HtmlCodeResult();
-        // 提取 HTML 代码
-        String htmlCode = extractHtmlCode(codeContent);
-        if (htmlCode != null && !htmlCode.trim().isEmpty()) {
-            result.setHtmlCode(htmlCode.trim());
-        } else {
-            // 如果没有找到代码块，将整个内容作为HTML
-            result.setHtmlCode(codeContent.trim());
-        }
-        return result;
+        return htmlCodeParser.parseCode(codeContent);
     }
 
     /**
      * 解析多文件代码（HTML + CSS + JS）
      */
     public static MultiFileCodeResult parseMultiFileCode(String codeContent) {
-        MultiFileCodeResult result = new MultiFileCodeResult();
-        // 提取各类代码
-        String htmlCode = extractCodeByPattern(codeContent, HTML_CODE_PATTERN);
-        String cssCode = extractCodeByPattern(codeContent, CSS_CODE_PATTERN);
-        String jsCode = extractCodeByPattern(codeContent, JS_CODE_PATTERN);
-        // 设置HTML代码
-        if (htmlCode != null && !htmlCode.trim().isEmpty()) {
-            result.setHtmlCode(htmlCode.trim());
-        }
-        // 设置CSS代码
-        if (cssCode != null && !cssCode.trim().isEmpty()) {
-            result.setCssCode(cssCode.trim());
-        }
-        // 设置JS代码
-        if (jsCode != null && !jsCode.trim().isEmpty()) {
-            result.setJsCode(jsCode.trim());
-        }
-        return result;
-    }
-
-    /**
-     * 提取HTML代码内容
-     *
-     * @param content 原始内容
-     * @return HTML代码
-     */
-    private static String extractHtmlCode(String content) {
-        Matcher matcher = HTML_CODE_PATTERN.matcher(content);
-        if (matcher.find()) {
-            return matcher.group(1);
-        }
-        return null;
-    }
-
-    /**
-     * 根据正则模式提取代码
-     *
-     * @param content 原始内容
-     * @param pattern 正则模式
-     * @return 提取的代码
-     */
-    private static String extractCodeByPattern(String content, Pattern pattern) {
-        Matcher matcher = pattern.matcher(content);
-        if (matcher.find()) {
-            return matcher.group(1);
-        }
-        return null;
+        return multiFileCodeParser.parseCode(codeContent);
     }
 }
-
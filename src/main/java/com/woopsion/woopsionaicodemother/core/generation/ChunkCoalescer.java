@@ -0,0 +1,98 @@
+package com.woopsion.woopsionaicodemother.core.generation;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/16
+ * @time 20:10
+ * @description
+ */
+
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文本块合并器
+ * 将高频的小文本块合并为较大的块向下游发送：
+ * <ul>
+ *   <li>首个文本块立即发送，不影响首字延迟</li>
+ *   <li>之后的文本块最多等待 maxDelay，或累计达到 maxChars 字符时发送</li>
+ *   <li>上游结束或出错时先发送剩余内容</li>
+ * </ul>
+ */
+public class ChunkCoalescer {
+
+    private ChunkCoalescer() {
+    }
+
+    /**
+     * 合并文本流
+     *
+     * @param source   原始文本流
+     * @param maxDelay 最长等待时间
+     * @param maxChars 单块最大字符数
+     * @return 合并后的文本流
+     */
+    public static Flux<String> coalesce(Flux<String> source, Duration maxDelay, int maxChars) {
+        return coalesce(source, maxDelay, maxChars, Schedulers.parallel());
+    }
+
+    static Flux<String> coalesce(Flux<String> source, Duration maxDelay, int maxChars, Scheduler scheduler) {
+        long delayNanos = maxDelay.toNanos();
+        return Flux.create(sink -> {
+            // 在锁内发送，保证定时发送与上游触发的发送之间的顺序
+            Object lock = new Object();
+            StringBuilder pending = new StringBuilder();
+            boolean[] firstSent = {false};
+            Disposable.Swap flushTask = Disposables.swap();
+            Runnable flush = () -> {
+                synchronized (lock) {
+                    if (!pending.isEmpty()) {
+                        String chunk = pending.toString();
+                        pending.setLength(0);
+                        sink.next(chunk);
+                    }
+                }
+            };
+            Disposable upstream = source.subscribe(
+                    chunk -> {
+                        synchronized (lock) {
+                            if (!firstSent[0]) {
+                                firstSent[0] = true;
+                                sink.next(chunk);
+                                return;
+                            }
+                            boolean wasEmpty = pending.isEmpty();
+                            pending.append(chunk);
+                            if (pending.length() >= maxChars) {
+                                flushTask.update(null);
+                                flush.run();
+                            } else if (wasEmpty) {
+                                flushTask.update(scheduler.schedule(flush, delayNanos, TimeUnit.NANOSECONDS));
+                            }
+                        }
+                    },
+                    error -> {
+                        flushTask.dispose();
+                        flush.run();
+                        sink.error(error);
+                    },
+                    () -> {
+                        flushTask.dispose();
+                        flush.run();
+                        sink.complete();
+                    },
+                    Context.of(sink.contextView()));
+            sink.onDispose(() -> {
+                upstream.dispose();
+                flushTask.dispose();
+            });
+        });
+    }
+}
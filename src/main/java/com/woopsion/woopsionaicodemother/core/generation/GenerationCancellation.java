@@ -0,0 +1,79 @@
+package com.woopsion.woopsionaicodemother.core.generation;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/16
+ * @time 19:20
+ * @description
+ */
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 生成取消令牌
+ * 生成被取消后，模型调用虽已中止，但已经返回的工具调用仍可能继续执行；
+ * 每次生成有自己的令牌，工具持有所属生成的令牌并在执行前检查，避免为已取消的生成继续写文件。
+ * 令牌只属于一次生成，取消后用户重新发起的生成使用新的令牌，上一次生成遗留的工具调用仍然看到已取消
+ */
+@Component
+public class GenerationCancellation {
+
+    /**
+     * 各应用当前生成的令牌，同一应用同时只有一次生成
+     */
+    private final Map<Long, Token> currentTokens = new ConcurrentHashMap<>();
+
+    /**
+     * 开始一次生成，创建它的令牌
+     *
+     * @param appId 应用 ID
+     * @return 本次生成的令牌
+     */
+    public Token begin(long appId) {
+        Token token = new Token();
+        currentTokens.put(appId, token);
+        return token;
+    }
+
+    /**
+     * 获取应用当前生成的令牌，用于在生成开始时把令牌交给本次生成的工具
+     * 没有进行中的生成时返回一个不会被取消的新令牌
+     */
+    public Token current(long appId) {
+        Token token = currentTokens.get(appId);
+        return token != null ? token : new Token();
+    }
+
+    /**
+     * 生成结束，只移除本次生成的令牌
+     */
+    public void end(long appId, Token token) {
+        currentTokens.remove(appId, token);
+    }
+
+    /**
+     * 一次生成的取消令牌
+     */
+    public static class Token {
+
+        private final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+        /**
+         * 标记本次生成已取消
+         */
+        public void cancel() {
+            cancelled.set(true);
+        }
+
+        /**
+         * 本次生成是否已取消
+         */
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.woopsion.woopsionaicodemother.core.generation;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/16
+ * @time 17:45
+ * @description
+ */
+
+/**
+ * 生成事件
+ * 内容事件在所属会话内有单调递增的序号，对外的事件 ID 为 {sessionId}-{seq}，
+ * 客户端断线重连时通过 Last-Event-ID 回传，用于从重放缓冲区继续。
+ * 状态事件（如排队位置）不编号、不进入重放缓冲区
+ *
+ * @param sessionId 会话 ID
+ * @param seq       会话内序号，从 1 开始；状态事件为 0
+ * @param event     事件类型，内容事件为 null
+ * @param data      事件内容
+ */
+public record GenerationEvent(long sessionId, long seq, String event, String data) {
+
+    /**
+     * 排队位置事件，data 为从 1 开始的排队位置
+     */
+    public static final String EVENT_QUEUE = "queue";
+
+    private static final char ID_SEPARATOR = '-';
+
+    /**
+     * 创建内容事件
+     */
+    public static GenerationEvent content(long sessionId, long seq, String data) {
+        return new GenerationEvent(sessionId, seq, null, data);
+    }
+
+    /**
+     * 创建排队位置事件
+     */
+    public static GenerationEvent queue(long sessionId, int position) {
+        return new GenerationEvent(sessionId, 0, EVENT_QUEUE, String.valueOf(position));
+    }
+
+    /**
+     * 是否为内容事件
+     */
+    public boolean isContent() {
+        return event == null;
+    }
+
+    /**
+     * 获取对外的事件 ID
+     */
+    public String id() {
+        return sessionId + String.valueOf(ID_SEPARATOR) + seq;
+    }
+
+    /**
+     * 解析事件 ID
+     *
+     * @param eventId 事件 ID
+     * @return [sessionId, seq]，格式不合法时返回 null
+     */
+    public static long[] parseId(String eventId) {
+        if (eventId == null) {
+            return null;
+        }
+        int index = eventId.indexOf(ID_SEPARATOR);
+        if (index <= 0 || index == eventId.length() - 1) {
+            return null;
+        }
+        try {
+            long sessionId = Long.parseLong(eventId.substring(0, index));
+            long seq = Long.parseLong(eventId.substring(index + 1));
+            return new long[]{sessionId, seq};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
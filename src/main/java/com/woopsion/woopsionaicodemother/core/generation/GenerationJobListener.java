@@ -0,0 +1,40 @@
+package com.woopsion.woopsionaicodemother.core.generation;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/16
+ * @time 18:40
+ * @description
+ */
+
+/**
+ * 生成任务生命周期监听器
+ * 由注册表在会话状态变化时回调，用于持久化任务状态等
+ * 回调中的异常会被记录并忽略，不影响生成本身
+ */
+public interface GenerationJobListener {
+
+    /**
+     * 会话已创建，等待执行
+     */
+    default void onQueued(GenerationSession session) {
+    }
+
+    /**
+     * 会话获得执行名额，开始调用模型
+     */
+    default void onRunning(GenerationSession session) {
+    }
+
+    /**
+     * 生成正常完成
+     */
+    default void onCompleted(GenerationSession session) {
+    }
+
+    /**
+     * 生成失败或被取消
+     */
+    default void onFailed(GenerationSession session, Throwable error) {
+    }
+}
@@ -0,0 +1,342 @@
+package com.woopsion.woopsionaicodemother.core.generation;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/16
+ * @time 21:10
+ * @description
+ */
+
+import com.woopsion.woopsionaicodemother.ai.streaming.HedgingStreamingChatModel;
+import com.woopsion.woopsionaicodemother.model.enums.CodeGenTypeEnum;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.openai.OpenAiTokenUsage;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 生成指标
+ * 按代码生成类型（codeGenType）、模型 Bean（model）和实际提供服务的端点（endpoint，对冲时为胜出的端点）记录每次生成的：
+ * <ul>
+ *   <li>ai.generation.ttft：从发起调用到收到首个 token 的时间</li>
+ *   <li>ai.generation.token.gap：相邻两个 token 的间隔，工具执行期间不计入</li>
+ *   <li>ai.generation.duration：整次生成耗时，按结果（outcome）区分成功、失败和取消</li>
+ *   <li>ai.generation.output.tokens：输出 token 数，取自模型返回的用量，缺失时按分片数估计</li>
+ *   <li>ai.generation.tokens.per.second：首个 token 之后的输出速度</li>
+ *   <li>ai.generation.parse.time：本服务解析代码块的耗时，用于区分慢在模型还是慢在自身</li>
+ *   <li>ai.generation.continuation：输出被截断后的自动续写次数</li>
+ * </ul>
+ * 以及模型服务端前缀缓存（context caching）的效果：
+ * <ul>
+ *   <li>ai.prompt.cache.hit.tokens / ai.prompt.cache.miss.tokens：命中和未命中缓存的输入 token 数，取自模型返回的用量</li>
+ *   <li>ai.prompt.cache.hit.ratio：按生成类型累计的命中率</li>
+ *   <li>ai.prompt.prefix：每轮对话的历史是否与上一轮发送的前缀一致（result=stable/changed）</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class GenerationMetrics {
+
+    public static final String OUTCOME_SUCCESS = "success";
+
+    public static final String OUTCOME_ERROR = "error";
+
+    public static final String OUTCOME_CANCELLED = "cancelled";
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 按生成类型累计的缓存命中和未命中 token 数
+     */
+    private final Map<CodeGenTypeEnum, PromptCacheStats> promptCacheStats = new ConcurrentHashMap<>();
+
+    public GenerationMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 开始记录一次生成
+     *
+     * @param codeGenType 代码生成类型
+     * @param model       提供服务的模型 Bean 名称
+     * @return 本次生成的记录器
+     */
+    public Recording start(CodeGenTypeEnum codeGenType, String model) {
+        Tags tags = Tags.of("codeGenType", codeGenType.getValue(), "model", model,
+                "endpoint", HedgingStreamingChatModel.PRIMARY_ENDPOINT);
+        return new Recording(codeGenType, tags, System.nanoTime());
+    }
+
+    /**
+     * 记录一轮对话的前缀是否稳定
+     *
+     * @param codeGenType 代码生成类型
+     * @param stable      历史是否以上一轮发送的前缀开头
+     */
+    public void recordPromptPrefix(CodeGenTypeEnum codeGenType, boolean stable) {
+        Counter.builder("ai.prompt.prefix")
+                .description("对话前缀是否与上一轮一致")
+                .tag("codeGenType", codeGenType.getValue())
+                .tag("result", stable ? "stable" : "changed")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * 获取指定生成类型的前缀缓存命中率（按 token 数累计）
+     *
+     * @return 命中率，没有数据时返回 NaN
+     */
+    public double getPromptCacheHitRatio(CodeGenTypeEnum codeGenType) {
+        PromptCacheStats stats = promptCacheStats.get(codeGenType);
+        return stats != null ? stats.hitRatio() : Double.NaN;
+    }
+
+    /**
+     * 记录命中和未命中缓存的输入 token 数
+     * 模型未返回缓存用量时不记录（不支持前缀缓存的服务，或用量缺失）
+     */
+    private void recordPromptCache(CodeGenTypeEnum codeGenType, Tags tags, ChatResponse response) {
+        if (response == null || !(response.tokenUsage() instanceof OpenAiTokenUsage tokenUsage)
+                || tokenUsage.inputTokenCount() == null || tokenUsage.inputTokensDetails() == null
+                || tokenUsage.inputTokensDetails().cachedTokens() == null) {
+            return;
+        }
+        long hitTokens = tokenUsage.inputTokensDetails().cachedTokens();
+        long missTokens = Math.max(0, tokenUsage.inputTokenCount() - hitTokens);
+        Counter.builder("ai.prompt.cache.hit.tokens")
+                .description("命中前缀缓存的输入 token 数")
+                .baseUnit("tokens")
+                .tags(tags)
+                .register(meterRegistry)
+                .increment(hitTokens);
+        Counter.builder("ai.prompt.cache.miss.tokens")
+                .description("未命中前缀缓存的输入 token 数")
+                .baseUnit("tokens")
+                .tags(tags)
+                .register(meterRegistry)
+                .increment(missTokens);
+        PromptCacheStats stats = promptCacheStats.computeIfAbsent(codeGenType, type -> {
+            PromptCacheStats newStats = new PromptCacheStats();
+            Gauge.builder("ai.prompt.cache.hit.ratio", newStats, PromptCacheStats::hitRatio)
+                    .description("前缀缓存命中率（按 token 数累计）")
+                    .tag("codeGenType", type.getValue())
+                    .register(meterRegistry);
+            return newStats;
+        });
+        stats.hitTokens.add(hitTokens);
+        stats.missTokens.add(missTokens);
+    }
+
+    /**
+     * 前缀缓存的累计用量
+     */
+    private static class PromptCacheStats {
+
+        private final LongAdder hitTokens = new LongAdder();
+
+        private final LongAdder missTokens = new LongAdder();
+
+        double hitRatio() {
+            long hit = hitTokens.sum();
+            long total = hit + missTokens.sum();
+            return total == 0 ? Double.NaN : (double) hit / total;
+        }
+    }
+
+    /**
+     * 记录解析代码块的耗时
+     *
+     * @param codeGenType 代码生成类型
+     * @param nanos       耗时（纳秒）
+     */
+    public void recordParseTime(CodeGenTypeEnum codeGenType, long nanos) {
+        Timer.builder("ai.generation.parse.time")
+                .description("解析代码块耗时")
+                .tag("codeGenType", codeGenType.getValue())
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 单次生成的记录器
+     * token 回调由模型的流式线程依次调用；结束可能来自完成、错误或取消，只记录第一次。
+     * 端点标签在首个 token 前确定，之后工具调用的续写请求即使由其他端点响应也不再变化
+     */
+    public class Recording {
+
+        private final CodeGenTypeEnum codeGenType;
+
+        private final long startNanos;
+
+        private volatile Tags tags;
+
+        /**
+         * 首个 token 时按最终的标签注册
+         */
+        private volatile Timer tokenGapTimer;
+
+        private final AtomicBoolean finished = new AtomicBoolean(false);
+
+        private volatile long firstTokenNanos = 0;
+
+        /**
+         * 上一个 token 的时间，0 表示不计算下一个间隔（尚未收到 token 或刚执行完工具）
+         */
+        private volatile long lastTokenNanos = 0;
+
+        private volatile long partialCount = 0;
+
+        /**
+         * 续写请求累计的输出 token 数
+         */
+        private volatile long continuationOutputTokens = 0;
+
+        private Recording(CodeGenTypeEnum codeGenType, Tags tags, long startNanos) {
+            this.codeGenType = codeGenType;
+            this.tags = tags;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * 确定提供服务的端点，收到首个 token 之后调用无效
+         *
+         * @param endpoint 端点名称，为 null 时保持默认的主端点
+         */
+        public void onEndpoint(String endpoint) {
+            if (endpoint != null && firstTokenNanos == 0) {
+                tags = tags.and("endpoint", endpoint);
+            }
+        }
+
+        /**
+         * 收到一个 token（流式分片）
+         */
+        public void onPartialResponse() {
+            long now = System.nanoTime();
+            partialCount++;
+            if (firstTokenNanos == 0) {
+                firstTokenNanos = now;
+                tokenGapTimer = Timer.builder("ai.generation.token.gap")
+                        .description("相邻 token 的间隔")
+                        .tags(tags)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry);
+                Timer.builder("ai.generation.ttft")
+                        .description("首个 token 的等待时间")
+                        .tags(tags)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry)
+                        .record(now - startNanos, TimeUnit.NANOSECONDS);
+            } else if (lastTokenNanos != 0) {
+                tokenGapTimer.record(now - lastTokenNanos, TimeUnit.NANOSECONDS);
+            }
+            lastTokenNanos = now;
+        }
+
+        /**
+         * 工具执行完成，之后模型续写的首个 token 不计算间隔
+         */
+        public void onToolExecuted() {
+            lastTokenNanos = 0;
+        }
+
+        /**
+         * 一次截断后的续写请求完成
+         *
+         * @param response 续写请求的响应
+         */
+        public void onContinuation(ChatResponse response) {
+            Counter.builder("ai.generation.continuation")
+                    .description("输出截断后的自动续写次数")
+                    .tags(tags)
+                    .register(meterRegistry)
+                    .increment();
+            recordPromptCache(codeGenType, tags, response);
+            TokenUsage tokenUsage = response.tokenUsage();
+            if (tokenUsage != null && tokenUsage.outputTokenCount() != null) {
+                continuationOutputTokens += tokenUsage.outputTokenCount();
+            }
+        }
+
+        /**
+         * 生成完成
+         *
+         * @param response 最终响应，包含本次生成（含工具调用后的续写）累计的 token 用量，不含截断后的续写请求
+         */
+        public void onComplete(ChatResponse response) {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            long now = System.nanoTime();
+            recordDuration(now, OUTCOME_SUCCESS);
+            recordPromptCache(codeGenType, tags, response);
+            long outputTokens = resolveOutputTokens(response);
+            DistributionSummary.builder("ai.generation.output.tokens")
+                    .description("输出 token 数")
+                    .baseUnit("tokens")
+                    .tags(tags)
+                    .register(meterRegistry)
+                    .record(outputTokens);
+            long decodeNanos = firstTokenNanos == 0 ? 0 : now - firstTokenNanos;
+            if (outputTokens > 0 && decodeNanos > 0) {
+                DistributionSummary.builder("ai.generation.tokens.per.second")
+                        .description("首个 token 之后的输出速度")
+                        .baseUnit("tokens/s")
+                        .tags(tags)
+                        .register(meterRegistry)
+                        .record(outputTokens * 1_000_000_000.0 / decodeNanos);
+            }
+        }
+
+        /**
+         * 生成失败
+         */
+        public void onError() {
+            if (finished.compareAndSet(false, true)) {
+                recordDuration(System.nanoTime(), OUTCOME_ERROR);
+            }
+        }
+
+        /**
+         * 生成被取消
+         */
+        public void onCancel() {
+            if (finished.compareAndSet(false, true)) {
+                recordDuration(System.nanoTime(), OUTCOME_CANCELLED);
+            }
+        }
+
+        private void recordDuration(long now, String outcome) {
+            Timer.builder("ai.generation.duration")
+                    .description("整次生成耗时")
+                    .tags(tags)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(now - startNanos, TimeUnit.NANOSECONDS);
+        }
+
+        private long resolveOutputTokens(ChatResponse response) {
+            TokenUsage tokenUsage = response != null ? response.tokenUsage() : null;
+            if (tokenUsage != null && tokenUsage.outputTokenCount() != null) {
+                return tokenUsage.outputTokenCount() + continuationOutputTokens;
+            }
+            log.debug("模型未返回 token 用量，按分片数估计: {}", partialCount);
+            return partialCount;
+        }
+    }
+}
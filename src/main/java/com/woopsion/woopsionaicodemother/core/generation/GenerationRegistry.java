@@ -0,0 +1,569 @@
+package com.woopsion.woopsionaicodemother.core.generation;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/16
+ * @time 16:32
+ * @description
+ */
+
+import cn.hutool.core.util.IdUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.woopsion.woopsionaicodemother.config.GenerationSchedulerConfig;
+import com.woopsion.woopsionaicodemother.exception.BusinessException;
+import com.woopsion.woopsionaicodemother.exception.ErrorCode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 生成注册表
+ * 同一个应用同一时间只允许一次生成（single-flight）：
+ * <ul>
+ *   <li>同一用户以相同消息重复请求（双击、多标签页、前端重试）时，附加到正在进行的生成上，并重放已生成的内容</li>
+ *   <li>生成进行中收到不同的消息时，立即返回“生成中”错误，不再启动第二次模型调用</li>
+ *   <li>客户端断线后可携带 Last-Event-ID 恢复，生成结束后的短时间内仍可取回末尾的内容</li>
+ * </ul>
+ * 生成以任务的方式调度执行：
+ * <ul>
+ *   <li>单节点和单个用户同时调用模型的数量都有上限，超出的任务排队，排队位置通过 SSE 推送给客户端</li>
+ *   <li>排队按应用优先级加权：优先级每高 1 点，相当于提前 priorityWeightMs 毫秒排队，低优先级任务不会被饿死</li>
+ *   <li>排队数超过上限时直接拒绝</li>
+ * </ul>
+ * 会话结束时只在当前线程移除会话、归还名额，随后立即通知客户端；任务状态的持久化和启动下一个任务
+ * （写入对话历史、加载对话记忆等阻塞操作）在虚拟线程中执行，不占用模型回调线程和 Reactor 的调度线程。
+ * 服务关闭时不再接受新任务，等待进行中的任务完成后再退出。
+ * 所有客户端断开且在宽限期（app.generation.scheduler.abandon-grace-seconds）内没有重连时取消生成，中止模型调用，避免为无人接收的生成消耗 token。
+ * 调度指标：
+ * <ul>
+ *   <li>ai.generation.queue.wait：从提交到获得执行名额的等待时间</li>
+ *   <li>ai.generation.rejected：按原因（reason）统计的拒绝次数</li>
+ *   <li>ai.generation.queued / ai.generation.running：当前排队和执行中的生成数</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class GenerationRegistry {
+
+    /**
+     * 服务关闭时等待进行中生成完成的最长时间
+     */
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(60);
+
+    /**
+     * 参与排队加权的优先级上限
+     */
+    private static final int MAX_EFFECTIVE_PRIORITY = 100;
+
+    private final Map<Long, GenerationSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * 正在独占工作目录（如回滚）的应用，期间不启动新的生成
+     */
+    private final Set<Long> exclusiveApps = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 最近结束的会话，保留一段时间供断线的客户端恢复
+     */
+    private final Cache<Long, GenerationSession> finishedSessions = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .expireAfterWrite(Duration.ofMinutes(2))
+            .build();
+
+    @Resource
+    private GenerationSchedulerConfig schedulerConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Autowired(required = false)
+    private List<GenerationJobListener> jobListeners = List.of();
+
+    /**
+     * 调度和任务状态回调在虚拟线程中执行
+     */
+    @Autowired
+    @Qualifier("businessVirtualThreadPool")
+    private Executor dispatchExecutor;
+
+    // region 以下字段由 slotLock 保护
+
+    private final Object slotLock = new Object();
+
+    private int runningCount = 0;
+
+    private final Map<Long, Integer> runningCountByUser = new HashMap<>();
+
+    /**
+     * 排队中的任务，按加权后的排队时间升序
+     */
+    private final List<QueuedSession> queuedSessions = new ArrayList<>();
+
+    // endregion
+
+    private volatile boolean draining = false;
+
+    /**
+     * 服务关闭时等待进行中的生成结束，会话结束时唤醒
+     */
+    private final Object drainLock = new Object();
+
+    private Timer queueWaitTimer;
+
+    @PostConstruct
+    public void init() {
+        queueWaitTimer = Timer.builder("ai.generation.queue.wait")
+                .description("生成任务从提交到获得执行名额的等待时间")
+                .register(meterRegistry);
+        Gauge.builder("ai.generation.queued", this, GenerationRegistry::getQueuedCount)
+                .description("排队中的生成数")
+                .register(meterRegistry);
+        Gauge.builder("ai.generation.running", this, GenerationRegistry::getRunningCount)
+                .description("正在执行的生成数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 启动生成，或附加到同一应用正在进行的生成
+     *
+     * @param appId              应用 ID
+     * @param userId             用户 ID
+     * @param priority           应用优先级
+     * @param message            用户消息
+     * @param generationSupplier 上游生成流的提供者，仅在任务获得执行名额时调用
+     * @return 生成事件流
+     */
+    public Flux<GenerationEvent> startOrAttach(long appId, long userId, int priority, String message,
+                                               Supplier<Flux<String>> generationSupplier) {
+        if (draining) {
+            recordRejection(RejectReason.DRAINING);
+            return Flux.error(new BusinessException(ErrorCode.OPERATION_ERROR, RejectReason.DRAINING.message));
+        }
+        GenerationSession newSession = new GenerationSession(IdUtil.getSnowflakeNextId(), appId, userId, priority, message,
+                generationSupplier, this::onSessionTerminate, this::onSessionAbandoned);
+        GenerationSession session = sessions.putIfAbsent(appId, newSession);
+        if (session != null) {
+            if (session.getUserId() == userId && Objects.equals(session.getMessage(), message)) {
+                log.info("应用 {} 正在生成中，附加到已有的生成，当前订阅数: {}", appId, session.getSubscriberCount().get());
+                return session.subscribe(0);
+            }
+            log.warn("应用 {} 正在生成中，拒绝新的生成请求", appId);
+            recordRejection(RejectReason.APP_BUSY);
+            return Flux.error(new BusinessException(ErrorCode.OPERATION_ERROR, RejectReason.APP_BUSY.message));
+        }
+        // 先登记会话再检查独占，与 runExclusive 的顺序相反，两者并发时至少一方能看到对方
+        if (exclusiveApps.contains(appId)) {
+            sessions.remove(appId, newSession);
+            recordRejection(RejectReason.WORKSPACE_BUSY);
+            return Flux.error(new BusinessException(ErrorCode.OPERATION_ERROR, RejectReason.WORKSPACE_BUSY.message));
+        }
+        RejectReason rejectReason = checkAdmission(userId);
+        if (rejectReason != null) {
+            sessions.remove(appId, newSession);
+            recordRejection(rejectReason);
+            log.warn("生成请求被拒绝，appId: {}, userId: {}, 原因: {}", appId, userId, rejectReason.message);
+            return Flux.error(new BusinessException(ErrorCode.TOO_MANY_REQUEST, rejectReason.message));
+        }
+        notifyListeners(listener -> listener.onQueued(newSession));
+        enqueue(newSession);
+        return newSession.subscribe(0);
+    }
+
+    /**
+     * 从断点恢复生成输出
+     *
+     * @param appId       应用 ID
+     * @param userId      用户 ID
+     * @param lastEventId 客户端最后收到的事件 ID
+     * @return 断点之后的生成事件流
+     */
+    public Flux<GenerationEvent> resume(long appId, long userId, String lastEventId) {
+        long[] parsedId = GenerationEvent.parseId(lastEventId);
+        if (parsedId == null) {
+            return Flux.error(new BusinessException(ErrorCode.PARAMS_ERROR, "Last-Event-ID 格式错误"));
+        }
+        GenerationSession session = findSession(appId, parsedId[0]);
+        if (session == null) {
+            return Flux.error(new BusinessException(ErrorCode.NOT_FOUND_ERROR, "生成已结束或不存在，请刷新页面"));
+        }
+        if (session.getUserId() != userId) {
+            return Flux.error(new BusinessException(ErrorCode.NO_AUTH_ERROR, "无权限恢复该生成"));
+        }
+        log.info("应用 {} 从事件 {} 恢复生成输出", appId, lastEventId);
+        return session.subscribe(parsedId[1]);
+    }
+
+    /**
+     * 取消应用正在进行的生成
+     *
+     * @param appId  应用 ID
+     * @param userId 用户 ID
+     * @return 是否有生成被取消
+     */
+    public boolean cancel(long appId, long userId) {
+        GenerationSession session = sessions.get(appId);
+        if (session == null) {
+            return false;
+        }
+        if (session.getUserId() != userId) {
+            throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "无权限取消该生成");
+        }
+        log.info("用户 {} 取消应用 {} 的生成", userId, appId);
+        session.fail(new BusinessException(ErrorCode.OPERATION_ERROR, "生成已取消"));
+        return true;
+    }
+
+    /**
+     * 在应用没有生成时独占执行操作（如回滚工作目录），执行期间该应用的生成请求被拒绝
+     *
+     * @param appId  应用 ID
+     * @param action 操作
+     * @return 操作的结果
+     * @throws BusinessException 应用正在生成或正在执行其他独占操作时
+     */
+    public <T> T runExclusive(long appId, Supplier<T> action) {
+        if (!exclusiveApps.add(appId)) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, RejectReason.WORKSPACE_BUSY.message);
+        }
+        try {
+            if (sessions.containsKey(appId)) {
+                throw new BusinessException(ErrorCode.OPERATION_ERROR, "应用正在生成中，请稍后重试");
+            }
+            return action.get();
+        } finally {
+            exclusiveApps.remove(appId);
+        }
+    }
+
+    private GenerationSession findSession(long appId, long sessionId) {
+        GenerationSession session = sessions.get(appId);
+        if (session != null && session.getSessionId() == sessionId) {
+            return session;
+        }
+        session = finishedSessions.getIfPresent(appId);
+        if (session != null && session.getSessionId() == sessionId) {
+            return session;
+        }
+        return null;
+    }
+
+    // region 调度
+
+    /**
+     * 准入检查：无法立即执行时，排队数不能超过上限
+     * 检查与入队不是原子的，并发时排队数可能略微超过上限
+     *
+     * @return 拒绝原因，允许时返回 null
+     */
+    private RejectReason checkAdmission(long userId) {
+        synchronized (slotLock) {
+            boolean canRunNow = queuedSessions.isEmpty()
+                    && runningCount < schedulerConfig.getMaxRunning()
+                    && runningCountByUser.getOrDefault(userId, 0) < schedulerConfig.getMaxRunningPerUser();
+            if (canRunNow) {
+                return null;
+            }
+            if (queuedSessions.size() >= schedulerConfig.getMaxQueued()) {
+                return RejectReason.QUEUE_FULL;
+            }
+            long userQueued = queuedSessions.stream()
+                    .filter(queued -> queued.session().getUserId() == userId)
+                    .count();
+            if (userQueued >= schedulerConfig.getMaxQueuedPerUser()) {
+                return RejectReason.USER_QUEUE_FULL;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 按加权后的排队时间插入队列，然后尝试调度
+     */
+    private void enqueue(GenerationSession session) {
+        int effectivePriority = Math.min(Math.max(session.getPriority(), 0), MAX_EFFECTIVE_PRIORITY);
+        long virtualTime = session.getCreateNanos() / 1_000_000 - effectivePriority * schedulerConfig.getPriorityWeightMs();
+        QueuedSession queuedSession = new QueuedSession(session, virtualTime);
+        synchronized (slotLock) {
+            int index = queuedSessions.size();
+            while (index > 0 && queuedSessions.get(index - 1).virtualTime() > virtualTime) {
+                index--;
+            }
+            queuedSessions.add(index, queuedSession);
+        }
+        dispatchAsync();
+    }
+
+    /**
+     * 在虚拟线程中调度，启动任务时会调用上游生成流的提供者，其中有数据库和 Redis 操作
+     */
+    private void dispatchAsync() {
+        dispatchExecutor.execute(this::dispatch);
+    }
+
+    /**
+     * 将空闲的执行名额分配给排队的任务，并更新其余任务的排队位置
+     * 按排队顺序选取第一个所属用户未达到并发上限的任务
+     */
+    private void dispatch() {
+        List<GenerationSession> toLaunch = new ArrayList<>();
+        List<GenerationSession> stillQueued = new ArrayList<>();
+        synchronized (slotLock) {
+            Iterator<QueuedSession> iterator = queuedSessions.iterator();
+            while (iterator.hasNext() && runningCount < schedulerConfig.getMaxRunning()) {
+                GenerationSession session = iterator.next().session();
+                int userRunning = runningCountByUser.getOrDefault(session.getUserId(), 0);
+                if (userRunning >= schedulerConfig.getMaxRunningPerUser()) {
+                    continue;
+                }
+                iterator.remove();
+                runningCount++;
+                runningCountByUser.put(session.getUserId(), userRunning + 1);
+                toLaunch.add(session);
+            }
+            for (QueuedSession queuedSession : queuedSessions) {
+                stillQueued.add(queuedSession.session());
+            }
+        }
+        for (int i = 0; i < stillQueued.size(); i++) {
+            stillQueued.get(i).updateQueuePosition(i + 1);
+        }
+        for (GenerationSession session : toLaunch) {
+            launch(session);
+        }
+    }
+
+    private void launch(GenerationSession session) {
+        session.updateQueuePosition(0);
+        boolean started = session.start(() -> {
+            queueWaitTimer.record(System.nanoTime() - session.getCreateNanos(), TimeUnit.NANOSECONDS);
+            notifyListeners(listener -> listener.onRunning(session));
+        });
+        if (!started) {
+            // 分配名额时已被取消，归还名额
+            releaseSlot(session);
+            dispatchAsync();
+        }
+    }
+
+    private void releaseSlot(GenerationSession session) {
+        synchronized (slotLock) {
+            runningCount--;
+            runningCountByUser.computeIfPresent(session.getUserId(), (userId, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    // endregion
+
+    /**
+     * 会话结束回调，在通知客户端之前执行
+     * 先移除会话，之后的请求会启动新的生成；这里只做内存中的操作，
+     * 任务状态回调和启动下一个任务交给虚拟线程，客户端不必等待它们完成
+     */
+    private void onSessionTerminate(GenerationSession session, Throwable error) {
+        sessions.remove(session.getAppId(), session);
+        finishedSessions.put(session.getAppId(), session);
+        if (draining) {
+            synchronized (drainLock) {
+                drainLock.notifyAll();
+            }
+        }
+        if (session.isStarted()) {
+            releaseSlot(session);
+        } else {
+            synchronized (slotLock) {
+                queuedSessions.removeIf(queued -> queued.session() == session);
+            }
+        }
+        dispatchExecutor.execute(() -> {
+            if (error == null) {
+                notifyListeners(listener -> listener.onCompleted(session));
+            } else {
+                notifyListeners(listener -> listener.onFailed(session, error));
+            }
+            dispatch();
+        });
+    }
+
+    /**
+     * 所有客户端断开时回调，宽限期后仍无客户端则取消生成
+     */
+    private void onSessionAbandoned(GenerationSession session) {
+        long graceSeconds = schedulerConfig.getAbandonGraceSeconds();
+        log.info("应用 {} 的生成已无客户端订阅，{} 秒内无重连将取消", session.getAppId(), graceSeconds);
+        // 取消生成会中止上游生成流，其中的清理可能阻塞，不在定时器线程中执行
+        Mono.delay(Duration.ofSeconds(graceSeconds)).subscribe(tick -> dispatchExecutor.execute(() -> {
+            if (session.getSubscriberCount().get() == 0 && !session.isTerminated()) {
+                log.info("应用 {} 的生成无客户端订阅，取消生成", session.getAppId());
+                session.fail(new BusinessException(ErrorCode.OPERATION_ERROR, "客户端已断开，生成已取消"));
+            }
+        }));
+    }
+
+    private void notifyListeners(Consumer<GenerationJobListener> action) {
+        for (GenerationJobListener listener : jobListeners) {
+            try {
+                action.accept(listener);
+            } catch (Exception e) {
+                log.error("生成任务监听器执行失败: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 服务关闭时排空任务
+     * 不再接受新任务，排队中的任务直接失败，等待进行中的任务完成，超时后中止剩余任务
+     */
+    @PreDestroy
+    public void drain() {
+        draining = true;
+        List<GenerationSession> queued = new ArrayList<>();
+        synchronized (slotLock) {
+            for (QueuedSession queuedSession : queuedSessions) {
+                queued.add(queuedSession.session());
+            }
+            queuedSessions.clear();
+        }
+        for (GenerationSession session : queued) {
+            session.fail(new BusinessException(ErrorCode.OPERATION_ERROR, "服务正在重启，生成已取消"));
+        }
+        long deadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+        synchronized (drainLock) {
+            // 会话结束时唤醒，检查和等待都在锁内，不会错过唤醒
+            while (!sessions.isEmpty()) {
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    break;
+                }
+                log.info("等待 {} 个进行中的生成完成", sessions.size());
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(drainLock, remainingNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        for (GenerationSession session : new ArrayList<>(sessions.values())) {
+            log.warn("服务关闭，中止应用 {} 的生成", session.getAppId());
+            session.fail(new BusinessException(ErrorCode.OPERATION_ERROR, "服务重启，生成已中断"));
+        }
+    }
+
+    /**
+     * 获取应用正在进行的生成会话
+     *
+     * @param appId 应用 ID
+     * @return 会话，没有进行中的生成时返回 null
+     */
+    public GenerationSession getSession(long appId) {
+        return sessions.get(appId);
+    }
+
+    /**
+     * 获取进行中（含排队）的生成数量
+     */
+    public int getActiveCount() {
+        return sessions.size();
+    }
+
+    /**
+     * 获取排队中的生成数量
+     */
+    public int getQueuedCount() {
+        synchronized (slotLock) {
+            return queuedSessions.size();
+        }
+    }
+
+    /**
+     * 获取正在执行的生成数量
+     */
+    public int getRunningCount() {
+        synchronized (slotLock) {
+            return runningCount;
+        }
+    }
+
+    private void recordRejection(RejectReason reason) {
+        Counter.builder("ai.generation.rejected")
+                .description("被拒绝的生成请求数")
+                .tag("reason", reason.tag)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * 获取调度统计信息
+     *
+     * @return 统计信息字符串
+     */
+    public String getStatistics() {
+        double rejected = meterRegistry.find("ai.generation.rejected").counters().stream()
+                .mapToDouble(Counter::count)
+                .sum();
+        return String.format("GenerationRegistry[running=%d, queued=%d, started=%d, rejected=%.0f, " +
+                        "avgWaitMs=%.0f, maxWaitMs=%.0f]",
+                getRunningCount(), getQueuedCount(), queueWaitTimer.count(), rejected,
+                queueWaitTimer.mean(TimeUnit.MILLISECONDS), queueWaitTimer.max(TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * 拒绝原因
+     */
+    private enum RejectReason {
+        DRAINING("draining", "服务正在重启，请稍后重试"),
+        APP_BUSY("app_busy", "应用正在生成中，请等待当前生成完成"),
+        QUEUE_FULL("queue_full", "当前生成请求过多，请稍后重试"),
+        USER_QUEUE_FULL("user_queue_full", "排队中的生成过多，请等待之前的生成完成"),
+        WORKSPACE_BUSY("workspace_busy", "应用工作目录正在回滚，请稍后重试");
+
+        /**
+         * 指标标签
+         */
+        private final String tag;
+
+        /**
+         * 返回给客户端的提示
+         */
+        private final String message;
+
+        RejectReason(String tag, String message) {
+            this.tag = tag;
+            this.message = message;
+        }
+    }
+
+    /**
+     * 排队中的任务
+     *
+     * @param session     会话
+     * @param virtualTime 加权后的排队时间（毫秒），越小越靠前
+     */
+    private record QueuedSession(GenerationSession session, long virtualTime) {
+    }
+}
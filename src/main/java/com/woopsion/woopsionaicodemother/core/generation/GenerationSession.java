@@ -0,0 +1,314 @@
+package com.woopsion.woopsionaicodemother.core.generation;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/16
+ * @time 16:20
+ * @description
+ */
+
+import com.woopsion.woopsionaicodemother.exception.BusinessException;
+import com.woopsion.woopsionaicodemother.exception.ErrorCode;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 生成会话
+ * 会话创建后可能先排队，获得执行名额后才调用模型；上游生成流由会话自己订阅，与客户端连接无关，
+ * 客户端断开不会中断生成，完成后照常保存对话历史、构建项目。
+ * 上游生成流只订阅一次，输出编号后写入有界的重放缓冲区并推送给所有订阅的客户端：
+ * <ul>
+ *   <li>后加入的客户端先收到缓冲区中的内容，再继续接收实时内容</li>
+ *   <li>断线重连的客户端携带 Last-Event-ID，只重放之后的事件</li>
+ *   <li>缓冲区按字符数和事件数限制大小，超出时丢弃最早的事件</li>
+ * </ul>
+ */
+@Slf4j
+public class GenerationSession {
+
+    /**
+     * 重放缓冲区最大字符数
+     */
+    private static final long MAX_BUFFER_CHARS = 2 * 1024 * 1024;
+
+    /**
+     * 重放缓冲区最大事件数
+     */
+    private static final int MAX_BUFFER_EVENTS = 50_000;
+
+    @Getter
+    private final long sessionId;
+
+    @Getter
+    private final long appId;
+
+    @Getter
+    private final long userId;
+
+    /**
+     * 触发本次生成的用户消息
+     */
+    @Getter
+    private final String message;
+
+    @Getter
+    private final LocalDateTime startTime;
+
+    /**
+     * 应用优先级，影响排队顺序
+     */
+    @Getter
+    private final int priority;
+
+    /**
+     * 创建时间（纳秒），用于统计排队等待时间
+     */
+    @Getter
+    private final long createNanos;
+
+    /**
+     * 当前订阅的客户端数量
+     */
+    @Getter
+    private final AtomicInteger subscriberCount = new AtomicInteger(0);
+
+    // region 以下字段由 lock 保护
+
+    private final Object lock = new Object();
+
+    private final ArrayDeque<GenerationEvent> buffer = new ArrayDeque<>();
+
+    private long bufferedChars = 0;
+
+    private long lastSeq = 0;
+
+    private final List<FluxSink<GenerationEvent>> subscribers = new ArrayList<>();
+
+    private boolean terminated = false;
+
+    private Throwable error;
+
+    /**
+     * 排队位置，从 1 开始；0 表示未排队
+     */
+    private int queuePosition = 0;
+
+    // endregion
+
+    private final Supplier<Flux<String>> generationSupplier;
+
+    /**
+     * 生成结束（完成时 error 为 null）的回调，在通知客户端之前执行
+     */
+    private final BiConsumer<GenerationSession, Throwable> onTerminate;
+
+    /**
+     * 最后一个客户端断开时的回调
+     */
+    private final Consumer<GenerationSession> onAbandoned;
+
+    private static final int STATE_NEW = 0;
+
+    private static final int STATE_RUNNING = 1;
+
+    private static final int STATE_FINISHED = 2;
+
+    private final AtomicInteger state = new AtomicInteger(STATE_NEW);
+
+    /**
+     * 是否已获得执行名额并开始生成
+     */
+    @Getter
+    private volatile boolean started = false;
+
+    private volatile Disposable upstream;
+
+    GenerationSession(long sessionId, long appId, long userId, int priority, String message,
+                      Supplier<Flux<String>> generationSupplier,
+                      BiConsumer<GenerationSession, Throwable> onTerminate,
+                      Consumer<GenerationSession> onAbandoned) {
+        this.sessionId = sessionId;
+        this.appId = appId;
+        this.userId = userId;
+        this.message = message;
+        this.startTime = LocalDateTime.now();
+        this.priority = priority;
+        this.createNanos = System.nanoTime();
+        this.generationSupplier = generationSupplier;
+        this.onTerminate = onTerminate;
+        this.onAbandoned = onAbandoned;
+    }
+
+    /**
+     * 获取上游生成流并订阅，开始生成
+     *
+     * @param beforeStart 开始前的回调
+     * @return 是否开始；排队期间已被取消时返回 false
+     */
+    boolean start(Runnable beforeStart) {
+        if (!state.compareAndSet(STATE_NEW, STATE_RUNNING)) {
+            return false;
+        }
+        started = true;
+        beforeStart.run();
+        try {
+            Flux<String> generationFlux = generationSupplier.get();
+            upstream = generationFlux.subscribe(this::emit, this::finish, () -> finish(null));
+            if (state.get() == STATE_FINISHED) {
+                // 订阅期间被取消
+                upstream.dispose();
+            }
+        } catch (RuntimeException e) {
+            log.error("应用 {} 启动生成失败: {}", appId, e.getMessage(), e);
+            finish(e);
+        }
+        return true;
+    }
+
+    /**
+     * 中止生成，已订阅的客户端收到错误
+     *
+     * @param error 中止原因
+     */
+    void fail(Throwable error) {
+        Disposable current = upstream;
+        if (current != null) {
+            current.dispose();
+        }
+        finish(error);
+    }
+
+    /**
+     * 订阅会话输出
+     *
+     * @param afterSeq 只接收序号大于该值的事件，0 表示从头开始
+     * @return 事件流；所需事件已被移出缓冲区时返回错误
+     */
+    public Flux<GenerationEvent> subscribe(long afterSeq) {
+        return Flux.<GenerationEvent>create(sink -> {
+                    synchronized (lock) {
+                        GenerationEvent oldest = buffer.peekFirst();
+                        long firstAvailableSeq = oldest != null ? oldest.seq() : lastSeq + 1;
+                        if (afterSeq + 1 < firstAvailableSeq) {
+                            sink.error(new BusinessException(ErrorCode.OPERATION_ERROR,
+                                    "生成内容已超出可重放范围，请等待生成完成后刷新"));
+                            return;
+                        }
+                        for (GenerationEvent event : buffer) {
+                            if (event.seq() > afterSeq) {
+                                sink.next(event);
+                            }
+                        }
+                        if (queuePosition > 0 && !terminated) {
+                            sink.next(GenerationEvent.queue(sessionId, queuePosition));
+                        }
+                        if (terminated) {
+                            if (error != null) {
+                                sink.error(error);
+                            } else {
+                                sink.complete();
+                            }
+                            return;
+                        }
+                        subscribers.add(sink);
+                    }
+                    sink.onDispose(() -> {
+                        synchronized (lock) {
+                            subscribers.remove(sink);
+                        }
+                    });
+                })
+                .doOnSubscribe(subscription -> subscriberCount.incrementAndGet())
+                .doFinally(signalType -> {
+                    if (subscriberCount.decrementAndGet() == 0 && !isTerminated()) {
+                        onAbandoned.accept(this);
+                    }
+                });
+    }
+
+    /**
+     * 是否已经结束
+     */
+    public boolean isTerminated() {
+        synchronized (lock) {
+            return terminated;
+        }
+    }
+
+    /**
+     * 更新排队位置并通知订阅的客户端
+     *
+     * @param position 从 1 开始的排队位置，0 表示已出队
+     */
+    void updateQueuePosition(int position) {
+        synchronized (lock) {
+            if (position == queuePosition || terminated) {
+                return;
+            }
+            queuePosition = position;
+            if (position == 0) {
+                return;
+            }
+            GenerationEvent event = GenerationEvent.queue(sessionId, position);
+            for (FluxSink<GenerationEvent> subscriber : subscribers) {
+                subscriber.next(event);
+            }
+        }
+    }
+
+    private void emit(String data) {
+        synchronized (lock) {
+            GenerationEvent event = GenerationEvent.content(sessionId, ++lastSeq, data);
+            buffer.addLast(event);
+            bufferedChars += data.length();
+            while (buffer.size() > 1 && (bufferedChars > MAX_BUFFER_CHARS || buffer.size() > MAX_BUFFER_EVENTS)) {
+                bufferedChars -= buffer.removeFirst().data().length();
+            }
+            for (FluxSink<GenerationEvent> subscriber : subscribers) {
+                subscriber.next(event);
+            }
+        }
+    }
+
+    private void finish(Throwable error) {
+        int previousState = state.getAndSet(STATE_FINISHED);
+        if (previousState == STATE_FINISHED) {
+            return;
+        }
+        started = previousState == STATE_RUNNING;
+        try {
+            onTerminate.accept(this, error);
+        } finally {
+            terminate(error);
+        }
+    }
+
+    private void terminate(Throwable error) {
+        List<FluxSink<GenerationEvent>> toNotify;
+        synchronized (lock) {
+            this.terminated = true;
+            this.error = error;
+            toNotify = new ArrayList<>(subscribers);
+            subscribers.clear();
+        }
+        for (FluxSink<GenerationEvent> subscriber : toNotify) {
+            if (error != null) {
+                subscriber.error(error);
+            } else {
+                subscriber.complete();
+            }
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.woopsion.woopsionaicodemother.core.generation;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/17
+ * @time 02:10
+ * @description
+ */
+
+import com.woopsion.woopsionaicodemother.ai.AiCodeGeneratorServiceFactory;
+import com.woopsion.woopsionaicodemother.config.ContinuationConfig;
+import com.woopsion.woopsionaicodemother.core.parser.StreamingCodeParser;
+import com.woopsion.woopsionaicodemother.model.enums.CodeGenTypeEnum;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.chat.response.StreamingHandle;
+import dev.langchain4j.model.output.FinishReason;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * 输出截断自动续写
+ * 模型达到 max-tokens 停止输出（finish_reason=length）时，直接调用流式模型续写：
+ * <ul>
+ *   <li>续写请求只携带已输出内容的末尾和所在代码块的语言，不重放对话记忆</li>
+ *   <li>续写内容开头重复的末尾内容和重新打开的围栏会被去掉，接在原来的输出之后，下游解析器看到的是同一个代码块</li>
+ *   <li>续写仍被截断时继续续写，直到达到次数上限</li>
+ * </ul>
+ * 只用于 HTML 和多文件模式，Vue 项目的文件内容在工具调用参数中，截断的参数无法拼接
+ */
+@Slf4j
+@Component
+public class OutputContinuation {
+
+    private static final String SYSTEM_PROMPT = """
+            你是代码续写助手。上一次的输出因为长度限制被截断，用户会给出截断前的末尾内容。
+            请从截断处直接续写，遵守以下规则：
+            1. 第一个字符紧接截断处，不要重复已输出的内容，不要添加任何解释、问候或总结
+            2. 如果截断处位于代码块中，直接输出剩余代码，不要重新输出开始围栏，代码完成后用 ``` 闭合代码块
+            3. 代码块之后的内容按原来的格式继续输出，直到全部完成
+            """;
+
+    /**
+     * 续写开头用于比对重复内容的最大字符数，比对完成前暂缓输出
+     */
+    static final int OVERLAP_WINDOW = 400;
+
+    /**
+     * 判定为重复内容的最小长度，避免把偶然相同的几个字符当作重复
+     */
+    static final int MIN_OVERLAP = 16;
+
+    @Resource
+    private ContinuationConfig continuationConfig;
+
+    @Resource
+    private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
+
+    /**
+     * 是否需要续写
+     *
+     * @param response    模型的最终响应
+     * @param codeGenType 代码生成类型
+     */
+    public boolean shouldContinue(ChatResponse response, CodeGenTypeEnum codeGenType) {
+        return continuationConfig.isEnabled()
+                && continuationConfig.getMaxContinuations() > 0
+                && codeGenType != CodeGenTypeEnum.VUE_PROJECT
+                && response != null
+                && response.finishReason() == FinishReason.LENGTH;
+    }
+
+    /**
+     * 创建已输出内容的末尾缓冲区，生成流的每个片段都要追加到其中
+     */
+    public Tail newTail() {
+        return new Tail(continuationConfig.getTailChars());
+    }
+
+    /**
+     * 续写被截断的输出
+     * 每次续写开始时读取已输出内容的末尾和解析器中未闭合代码块的状态，不保留也不重新解析完整输出；
+     * 调用方收到每个续写片段时同样追加到 tail 和 codeParser，续写仍被截断时下一次续写基于最新状态
+     *
+     * @param codeGenType 代码生成类型
+     * @param tail        已输出内容的末尾
+     * @param codeParser  解析已输出内容的流式解析器
+     * @param onResponse  每次续写请求完成时回调，用于累计 token 用量
+     * @return 拼接在原输出之后的续写内容，取消订阅时中止模型调用
+     */
+    public Flux<String> continueOutput(CodeGenTypeEnum codeGenType, Tail tail, StreamingCodeParser codeParser,
+                                       Consumer<ChatResponse> onResponse) {
+        StreamingChatModel model = aiCodeGeneratorServiceFactory.getStreamingChatModel(codeGenType);
+        return continueOutput(model, tail, codeParser, 1, onResponse);
+    }
+
+    private Flux<String> continueOutput(StreamingChatModel model, Tail tail, StreamingCodeParser codeParser, int attempt,
+                                        Consumer<ChatResponse> onResponse) {
+        AtomicBoolean produced = new AtomicBoolean(false);
+        AtomicBoolean truncated = new AtomicBoolean(false);
+        Flux<String> once = continueOnce(model, tail, codeParser, response -> {
+            truncated.set(response.finishReason() == FinishReason.LENGTH);
+            onResponse.accept(response);
+        }).doOnNext(text -> produced.set(true));
+        return once.concatWith(Flux.defer(() -> {
+            if (!truncated.get() || !produced.get()) {
+                return Flux.empty();
+            }
+            if (attempt >= continuationConfig.getMaxContinuations()) {
+                log.warn("续写 {} 次后输出仍被截断，不再续写", attempt);
+                return Flux.empty();
+            }
+            return continueOutput(model, tail, codeParser, attempt + 1, onResponse);
+        }));
+    }
+
+    private Flux<String> continueOnce(StreamingChatModel model, Tail tail, StreamingCodeParser codeParser,
+                                      Consumer<ChatResponse> onResponse) {
+        return Flux.create(sink -> {
+            String tailText = tail.get();
+            String openBlockLanguage = codeParser.getOpenBlockLanguage();
+            Stitcher stitcher = new Stitcher(tailText, openBlockLanguage != null);
+            AtomicReference<StreamingHandle> streamingHandle = new AtomicReference<>();
+            sink.onCancel(() -> {
+                StreamingHandle handle = streamingHandle.get();
+                if (handle != null && !handle.isCancelled()) {
+                    handle.cancel();
+                }
+            });
+            ChatRequest chatRequest = ChatRequest.builder()
+                    .messages(SystemMessage.from(SYSTEM_PROMPT), UserMessage.from(buildPrompt(tailText, openBlockLanguage)))
+                    .build();
+            log.info("输出被截断，发起续写，已输出 {} 个字符，未闭合的代码块: {}", tail.length(), openBlockLanguage);
+            model.chat(chatRequest, new StreamingChatResponseHandler() {
+                @Override
+                public void onPartialResponse(PartialResponse partialResponse, PartialResponseContext context) {
+                    streamingHandle.set(context.streamingHandle());
+                    if (sink.isCancelled()) {
+                        context.streamingHandle().cancel();
+                        return;
+                    }
+                    emit(stitcher.append(partialResponse.text()));
+                }
+
+                @Override
+                public void onCompleteResponse(ChatResponse completeResponse) {
+                    emit(stitcher.finish());
+                    onResponse.accept(completeResponse);
+                    sink.complete();
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    sink.error(error);
+                }
+
+                private void emit(String text) {
+                    if (!text.isEmpty()) {
+                        sink.next(text);
+                    }
+                }
+            });
+        });
+    }
+
+    private static String buildPrompt(String tail, String openBlockLanguage) {
+        String position = openBlockLanguage != null
+                ? "截断处位于未闭合的 " + openBlockLanguage + " 代码块中"
+                : "截断处不在代码块中";
+        return position + "。以下是截断前的末尾内容（不含首尾的分隔线）：\n"
+                + "-----\n" + tail + "\n-----\n"
+                + "请紧接最后一个字符继续输出。";
+    }
+
+    static String tail(String output, int tailChars) {
+        if (output.length() <= tailChars) {
+            return output;
+        }
+        int start = output.length() - tailChars;
+        // 不从代理对中间截开
+        if (Character.isLowSurrogate(output.charAt(start))) {
+            start++;
+        }
+        return output.substring(start);
+    }
+
+    /**
+     * 已输出内容的末尾
+     * 只保留最近的 tailChars 个字符（缓冲区超过两倍时整体丢弃较早的部分，均摊为线性），
+     * 续写请求只需要末尾，不再保留完整的输出。非线程安全，由生成流的回调依次追加
+     */
+    public static class Tail {
+
+        private final int tailChars;
+
+        private final StringBuilder buffer = new StringBuilder();
+
+        private long length = 0;
+
+        Tail(int tailChars) {
+            this.tailChars = Math.max(1, tailChars);
+        }
+
+        /**
+         * 追加一个输出片段
+         */
+        public void append(String text) {
+            if (text == null || text.isEmpty()) {
+                return;
+            }
+            buffer.append(text);
+            length += text.length();
+            if (buffer.length() > 2 * tailChars) {
+                buffer.delete(0, buffer.length() - tailChars);
+                // 不从代理对中间截开
+                if (Character.isLowSurrogate(buffer.charAt(0))) {
+                    buffer.deleteCharAt(0);
+                }
+            }
+        }
+
+        /**
+         * 获取最近的 tailChars 个字符
+         */
+        public String get() {
+            return tail(buffer.toString(), tailChars);
+        }
+
+        /**
+         * 已输出的总字符数
+         */
+        public long length() {
+            return length;
+        }
+    }
+
+    /**
+     * 续写内容拼接
+     * 暂存续写开头的一段内容，去掉重新打开的围栏和与原输出末尾重复的部分后再输出，之后的内容直接透传
+     */
+    static class Stitcher {
+
+        private final String tail;
+
+        private final boolean insideBlock;
+
+        private final StringBuilder head = new StringBuilder();
+
+        private boolean passThrough = false;
+
+        Stitcher(String tail, boolean insideBlock) {
+            this.tail = tail;
+            this.insideBlock = insideBlock;
+        }
+
+        /**
+         * 追加一个续写片段
+         *
+         * @return 可以输出的内容，可能为空
+         */
+        String append(String text) {
+            if (passThrough) {
+                return text;
+            }
+            head.append(text);
+            return head.length() < OVERLAP_WINDOW ? "" : flush();
+        }
+
+        /**
+         * 续写结束，输出暂存的内容
+         */
+        String finish() {
+            return passThrough ? "" : flush();
+        }
+
+        private String flush() {
+            passThrough = true;
+            String text = head.toString();
+            head.setLength(0);
+            if (insideBlock) {
+                text = stripReopenedFence(text);
+            }
+            return text.substring(overlap(tail, text));
+        }
+
+        /**
+         * 去掉续写开头重新打开的围栏行（如 ```html）
+         */
+        static String stripReopenedFence(String text) {
+            int start = 0;
+            while (start < text.length() && (text.charAt(start) == '\n' || text.charAt(start) == '\r')) {
+                start++;
+            }
+            if (!text.startsWith("```", start)) {
+                return text;
+            }
+            int lineEnd = text.indexOf('\n', start);
+            if (lineEnd < 0) {
+                return text;
+            }
+            String info = text.substring(start + 3, lineEnd).trim();
+            // 只有语言标识的围栏才是重新打开的代码块，单独的 ``` 是闭合围栏
+            return info.isEmpty() || info.contains(" ") ? text : text.substring(lineEnd + 1);
+        }
+
+        /**
+         * 续写开头与原输出末尾重复的长度
+         */
+        static int overlap(String tail, String text) {
+            int max = Math.min(tail.length(), text.length());
+            for (int length = max; length >= MIN_OVERLAP; length--) {
+                if (tail.regionMatches(tail.length() - length, text, 0, length)) {
+                    return length;
+                }
+            }
+            return 0;
+        }
+    }
+}
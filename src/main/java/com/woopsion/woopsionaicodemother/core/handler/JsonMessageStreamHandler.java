@@ -39,7 +39,7 @@ public class JsonMessageStreamHandler {
 
     /**
      * 处理 TokenStream（VUE_PROJECT）
-     * 解析 JSON 消息并重组为完整的响应格式
+     * 将类型化的流式消息重组为完整的响应格式
      *
      * @param originFlux         原始流
      * @param chatHistoryService 聊天历史服务
@@ -47,7 +47,7 @@ public class JsonMessageStreamHandler {
      * @param loginUser          登录用户
      * @return 处理后的流
      */
-    public Flux<String> handle(Flux<String> originFlux,
+    public Flux<String> handle(Flux<StreamMessage> originFlux,
                                ChatHistoryService chatHistoryService,
                                long appId, User loginUser) {
         // 收集数据用于生成后端记忆格式
@@ -55,9 +55,9 @@ public class JsonMessageStreamHandler {
         // 用于跟踪已经见过的工具ID，判断是否是第一次调用
         Set<String> seenToolIds = new HashSet<>();
         return originFlux
-                .map(chunk -> {
-                    // 解析每个 JSON 消息块（高频操作，不传递 MDC）
-                    return handleJsonMessageChunk(chunk, chatHistoryStringBuilder, seenToolIds);
+                .map(message -> {
+                    // 处理每个消息块（高频操作，不传递 MDC）
+                    return handleJsonMessageChunk(message, chatHistoryStringBuilder, seenToolIds);
                 })
                 .filter(StrUtil::isNotEmpty) // 过滤空字串
                 // 在完成时传递 MDC，用于日志记录
@@ -71,6 +71,12 @@ public class JsonMessageStreamHandler {
                     // 虚拟线程池会自动传递 MDC
                     vueProjectBuilder.buildProjectAsync(projectPath);
                 }))
+                // 生成被中止时保存已生成的部分，避免丢失
+                .doOnCancel(ReactorMdcUtils.withMdc(() -> {
+                    log.warn("JSON 消息流被中止，保存已生成的部分");
+                    String aiResponse = chatHistoryStringBuilder + "\n\n（生成已中断）";
+                    chatHistoryService.addChatMessage(appId, aiResponse, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
+                }))
                 // 在错误时传递 MDC，用于日志记录
                 .doOnError(ReactorMdcUtils.withMdc(error -> {
                     log.error("JSON 消息流处理失败", error);
@@ -83,22 +89,19 @@ public class JsonMessageStreamHandler {
     }
 
     /**
-     * 解析并收集 TokenStream 数据
+     * 收集 TokenStream 数据并转换为输出文本
+     * 消息类型是密封的，按具体类型分发，无需再做 JSON 反序列化
+     * 包内可见，供基准测试（src/jmh）直接调用
      */
-    private String handleJsonMessageChunk(String chunk, StringBuilder chatHistoryStringBuilder, Set<String> seenToolIds) {
-        // 解析 JSON
-        StreamMessage streamMessage = JSONUtil.toBean(chunk, StreamMessage.class);
-        StreamMessageTypeEnum typeEnum = StreamMessageTypeEnum.getEnumByValue(streamMessage.getType());
-        switch (typeEnum) {
-            case AI_RESPONSE -> {
-                AiResponseMessage aiMessage = JSONUtil.toBean(chunk, AiResponseMessage.class);
+    String handleJsonMessageChunk(StreamMessage streamMessage, StringBuilder chatHistoryStringBuilder, Set<String> seenToolIds) {
+        switch (streamMessage) {
+            case AiResponseMessage aiMessage -> {
                 String data = aiMessage.getData();
                 // 直接拼接响应
                 chatHistoryStringBuilder.append(data);
                 return data;
             }
-            case TOOL_REQUEST -> {
-                ToolRequestMessage toolRequestMessage = JSONUtil.toBean(chunk, ToolRequestMessage.class);
+            case ToolRequestMessage toolRequestMessage -> {
                 String toolId = toolRequestMessage.getId();
                 // 检查是否是第一次看到这个工具 ID
                 if (toolId != null && !seenToolIds.contains(toolId)) {
@@ -110,8 +113,8 @@ public class JsonMessageStreamHandler {
                     return "";
                 }
             }
-            case TOOL_EXECUTED -> {
-                ToolExecutedMessage toolExecutedMessage = JSONUtil.toBean(chunk, ToolExecutedMessage.class);
+            case ToolExecutedMessage toolExecutedMessage -> {
+                // 工具参数是模型输出的 JSON 字符串，每次工具调用只解析一次
                 JSONObject jsonObject = JSONUtil.parseObj(toolExecutedMessage.getArguments());
                 String relativeFilePath = jsonObject.getStr("relativeFilePath");
                 String suffix = FileUtil.getSuffix(relativeFilePath);
@@ -127,10 +130,6 @@ public class JsonMessageStreamHandler {
                 chatHistoryStringBuilder.append(output);
                 return output;
             }
-            default -> {
-                log.error("不支持的消息类型: {}", typeEnum);
-                return "";
-            }
         }
     }
 }
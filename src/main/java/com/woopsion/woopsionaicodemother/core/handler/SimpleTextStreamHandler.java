@@ -9,6 +9,8 @@ package com.woopsion.woopsionaicodemother.core.handler;
 
 import com.woopsion.woopsionaicodemother.entity.User;
 import com.woopsion.woopsionaicodemother.model.enums.ChatHistoryMessageTypeEnum;
+import com.woopsion.woopsionaicodemother.model.message.AiResponseMessage;
+import com.woopsion.woopsionaicodemother.model.message.StreamMessage;
 import com.woopsion.woopsionaicodemother.service.ChatHistoryService;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
@@ -30,13 +32,16 @@ public class SimpleTextStreamHandler {
      * @param loginUser          登录用户
      * @return 处理后的流
      */
-    public Flux<String> handle(Flux<String> originFlux,
+    public Flux<String> handle(Flux<StreamMessage> originFlux,
                                ChatHistoryService chatHistoryService,
                                long appId, User loginUser) {
         StringBuilder aiResponseBuilder = new StringBuilder();
         return originFlux
-                .map(chunk -> {
+                // 传统流只包含 AI 响应消息
+                .ofType(AiResponseMessage.class)
+                .map(message -> {
                     // 收集AI响应内容
+                    String chunk = message.getData();
                     aiResponseBuilder.append(chunk);
                     return chunk;
                 })
@@ -45,6 +50,11 @@ public class SimpleTextStreamHandler {
                     String aiResponse = aiResponseBuilder.toString();
                     chatHistoryService.addChatMessage(appId, aiResponse, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
                 })
+                .doOnCancel(() -> {
+                    // 生成被中止时保存已生成的部分，避免丢失
+                    String aiResponse = aiResponseBuilder + "\n\n（生成已中断）";
+                    chatHistoryService.addChatMessage(appId, aiResponse, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
+                })
                 .doOnError(error -> {
                     // 如果AI回复失败，也要记录错误消息
                     String errorMessage = "AI回复失败: " + error.getMessage();
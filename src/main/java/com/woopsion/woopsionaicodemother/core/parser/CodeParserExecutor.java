@@ -1,9 +1,10 @@
 package com.woopsion.woopsionaicodemother.core.parser;
 
-import com.woopsion.woopsionaicodemother.exception.BusinessException;
-import com.woopsion.woopsionaicodemother.exception.ErrorCode;
+import com.woopsion.woopsionaicodemother.core.strategy.CodeGenStrategyRegistry;
 import com.woopsion.woopsionaicodemother.model.enums.CodeGenTypeEnum;
 
+import java.util.Map;
+
 /**
  * @author wangpengcan
  * @date 2025/10/27
@@ -12,10 +13,6 @@ import com.woopsion.woopsionaicodemother.model.enums.CodeGenTypeEnum;
  */
 public class CodeParserExecutor {
 
-    private static final HtmlCodeParser htmlCodeParser = new HtmlCodeParser();
-
-    private static final MultiFileCodeParser multiFileCodeParser = new MultiFileCodeParser();
-
     /**
      * 执行代码解析
      *
@@ -24,11 +21,17 @@ public class CodeParserExecutor {
      * @return 解析结果（HtmlCodeResult 或 MultiFileCodeResult）
      */
     public static Object executeParser(String codeContent, CodeGenTypeEnum codeGenType) {
-        return switch (codeGenType) {
-            case HTML -> htmlCodeParser.parseCode(codeContent);
-            case MULTI_FILE -> multiFileCodeParser.parseCode(codeContent);
-            default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
-        };
+        return CodeGenStrategyRegistry.get(codeGenType).parse(codeContent);
     }
-}
 
+    /**
+     * 执行代码解析，直接得到要保存的文件
+     *
+     * @param codeContent 代码内容
+     * @param codeGenType 代码生成类型
+     * @return 相对路径 → 文件内容
+     */
+    public static Map<String, String> executeFileParser(String codeContent, CodeGenTypeEnum codeGenType) {
+        return CodeGenStrategyRegistry.get(codeGenType).parseFiles(codeContent);
+    }
+}
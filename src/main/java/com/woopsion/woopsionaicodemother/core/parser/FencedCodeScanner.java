@@ -0,0 +1,199 @@
+package com.woopsion.woopsionaicodemother.core.parser;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/17
+ * @time 03:00
+ * @description
+ */
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 围栏代码块扫描器
+ * 对完整的 AI 响应做一次线性扫描，索引其中所有的 ```lang ... ``` 代码块（语言、文件名提示、内容的偏移量），
+ * 不使用正则，没有回溯，未闭合的代码块也只扫描一遍。代码块只记录偏移量，需要时再取内容的切片。
+ *
+ * <p>识别规则与 {@link StreamingCodeParser} 一致：任意位置出现的 ``` 开始或闭合代码块，
+ * 开始围栏之后到行尾是信息串，第一个单词是语言，之后的文件名提示见 {@link #parseFileName(String)}。</p>
+ */
+public final class FencedCodeScanner {
+
+    private static final String FENCE = "```";
+
+    private FencedCodeScanner() {
+    }
+
+    /**
+     * 扫描所有代码块
+     *
+     * @param content AI 响应
+     * @return 按出现顺序排列的代码块，最后一个可能未闭合
+     */
+    public static List<CodeBlock> scan(String content) {
+        List<CodeBlock> blocks = new ArrayList<>();
+        if (content == null) {
+            return blocks;
+        }
+        int length = content.length();
+        int position = 0;
+        while (true) {
+            int fenceStart = content.indexOf(FENCE, position);
+            if (fenceStart < 0) {
+                break;
+            }
+            int infoStart = fenceStart + FENCE.length();
+            int lineEnd = content.indexOf('\n', infoStart);
+            if (lineEnd < 0) {
+                // 信息串还没有结束，不构成代码块
+                break;
+            }
+            String info = content.substring(infoStart, lineEnd).trim();
+            int contentStart = lineEnd + 1;
+            int closeStart = content.indexOf(FENCE, contentStart);
+            boolean closed = closeStart >= 0;
+            int contentEnd = closed ? closeStart : length;
+            blocks.add(new CodeBlock(content, parseLanguage(info), parseFileName(info), fenceStart, contentStart, contentEnd,
+                    closed));
+            if (!closed) {
+                break;
+            }
+            position = closeStart + FENCE.length();
+        }
+        return blocks;
+    }
+
+    /**
+     * 查找指定语言的第一个代码块
+     *
+     * @param blocks        扫描结果
+     * @param language      规范化后的语言
+     * @param includeOpen   是否包括未闭合的代码块（输出被截断时）
+     * @return 代码块，不存在时返回 null
+     */
+    public static CodeBlock findFirst(List<CodeBlock> blocks, String language, boolean includeOpen) {
+        for (CodeBlock block : blocks) {
+            if (language.equals(block.language()) && (includeOpen || block.closed())) {
+                return block;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 规范化语言：取信息串的第一个单词（冒号前的部分）并转为小写，javascript 统一为 js
+     */
+    static String parseLanguage(String info) {
+        int end = 0;
+        while (end < info.length() && !Character.isWhitespace(info.charAt(end)) && info.charAt(end) != ':') {
+            end++;
+        }
+        String language = info.substring(0, end).toLowerCase();
+        return "javascript".equals(language) ? "js" : language;
+    }
+
+    /**
+     * 解析信息串中的文件名提示，支持以下写法：
+     * <ul>
+     *   <li>```html:index.html</li>
+     *   <li>```html index.html（第二个单词含有 . 或 /）</li>
+     *   <li>```html filename=index.html，也支持 file=、path=、title=，值可以带引号</li>
+     * </ul>
+     *
+     * @return 文件名，没有提示时返回 null
+     */
+    static String parseFileName(String info) {
+        String[] words = info.split("\\s+");
+        int colon = words[0].indexOf(':');
+        if (colon >= 0 && colon < words[0].length() - 1) {
+            return words[0].substring(colon + 1);
+        }
+        for (int i = 1; i < words.length; i++) {
+            String word = words[i];
+            int equals = word.indexOf('=');
+            if (equals > 0) {
+                String key = word.substring(0, equals).toLowerCase();
+                if (key.equals("filename") || key.equals("file") || key.equals("path") || key.equals("title")) {
+                    String value = unquote(word.substring(equals + 1));
+                    return value.isEmpty() ? null : value;
+                }
+            } else if (word.indexOf('.') > 0 || word.indexOf('/') >= 0) {
+                return unquote(word);
+            }
+        }
+        return null;
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && (value.charAt(0) == '"' || value.charAt(0) == '\'')
+                && value.charAt(value.length() - 1) == value.charAt(0)) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    /**
+     * 代码块索引
+     *
+     * @param source       所在的 AI 响应
+     * @param language     规范化后的语言，没有语言标识时为空串
+     * @param fileName     文件名提示，可能为 null
+     * @param fenceStart   开始围栏的偏移量
+     * @param contentStart 内容的起始偏移量（开始围栏所在行的下一行）
+     * @param contentEnd   内容的结束偏移量（闭合围栏的位置，未闭合时为响应末尾）
+     * @param closed       是否已闭合
+     */
+    public record CodeBlock(String source, String language, String fileName, int fenceStart, int contentStart,
+                            int contentEnd, boolean closed) {
+
+        /**
+         * 代码块的结束偏移量，包括闭合围栏
+         */
+        public int end() {
+            return closed ? contentEnd + FENCE.length() : contentEnd;
+        }
+
+        /**
+         * 代码内容的切片，与响应共享字符，不复制
+         */
+        public CharSequence code() {
+            return CharBuffer.wrap(source, contentStart, contentEnd);
+        }
+
+        /**
+         * 去掉首尾空白后的代码内容，只复制一次
+         */
+        public String trimmedCode() {
+            int start = contentStart;
+            int end = contentEnd;
+            while (start < end && Character.isWhitespace(source.charAt(start))) {
+                start++;
+            }
+            while (end > start && Character.isWhitespace(source.charAt(end - 1))) {
+                end--;
+            }
+            return source.substring(start, end);
+        }
+
+        /**
+         * 代码内容是否为空白
+         */
+        public boolean isBlank() {
+            for (int i = contentStart; i < contentEnd; i++) {
+                if (!Character.isWhitespace(source.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "CodeBlock[language=" + language + ", fileName=" + fileName + ", fenceStart=" + fenceStart
+                    + ", contentStart=" + contentStart
+                    + ", contentEnd=" + contentEnd + ", closed=" + closed + "]";
+        }
+    }
+}
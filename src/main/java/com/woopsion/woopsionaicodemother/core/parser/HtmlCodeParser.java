@@ -2,8 +2,7 @@ package com.woopsion.woopsionaicodemother.core.parser;
 
 import com.woopsion.woopsionaicodemother.ai.model.HtmlCodeResult;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.List;
 
 /**
  * @author wangpengcan
@@ -14,34 +13,18 @@ import java.util.regex.Pattern;
 
 public class HtmlCodeParser implements CodeParser<HtmlCodeResult> {
 
-    private static final Pattern HTML_CODE_PATTERN = Pattern.compile("```html\\s*\\n([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
-
     @Override
     public HtmlCodeResult parseCode(String codeContent) {
         HtmlCodeResult result = new HtmlCodeResult();
-        // 提取 HTML 代码
-        String htmlCode = extractHtmlCode(codeContent);
-        if (htmlCode != null && !htmlCode.trim().isEmpty()) {
-            result.setHtmlCode(htmlCode.trim());
+        // 提取 HTML 代码，输出被截断时使用未闭合的代码块
+        List<FencedCodeScanner.CodeBlock> blocks = FencedCodeScanner.scan(codeContent);
+        FencedCodeScanner.CodeBlock htmlBlock = FencedCodeScanner.findFirst(blocks, "html", true);
+        if (htmlBlock != null && !htmlBlock.isBlank()) {
+            result.setHtmlCode(htmlBlock.trimmedCode());
         } else {
             // 如果没有找到代码块，将整个内容作为HTML
             result.setHtmlCode(codeContent.trim());
         }
         return result;
     }
-
-    /**
-     * 提取HTML代码内容
-     *
-     * @param content 原始内容
-     * @return HTML代码
-     */
-    private String extractHtmlCode(String content) {
-        Matcher matcher = HTML_CODE_PATTERN.matcher(content);
-        if (matcher.find()) {
-            return matcher.group(1);
-        }
-        return null;
-    }
 }
-
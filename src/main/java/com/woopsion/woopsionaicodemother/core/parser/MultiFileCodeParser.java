@@ -3,8 +3,7 @@ package com.woopsion.woopsionaicodemother.core.parser;
 import com.woopsion.woopsionaicodemother.ai.model.MultiFileCodeResult;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.List;
 
 /**
  * @author wangpengcan
@@ -15,46 +14,27 @@ import java.util.regex.Pattern;
 @Slf4j
 public class MultiFileCodeParser implements CodeParser<MultiFileCodeResult> {
 
-    private static final Pattern HTML_CODE_PATTERN = Pattern.compile("```html\\s*\\n([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
-    private static final Pattern CSS_CODE_PATTERN = Pattern.compile("```css\\s*\\n([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
-    private static final Pattern JS_CODE_PATTERN = Pattern.compile("```(?:js|javascript)\\s*\\n([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
-
     @Override
     public MultiFileCodeResult parseCode(String codeContent) {
         MultiFileCodeResult result = new MultiFileCodeResult();
-        log.info("开始解析多文件代码 condeContent: {}", codeContent);
-        // 提取各类代码
-        String htmlCode = extractCodeByPattern(codeContent, HTML_CODE_PATTERN);
-        String cssCode = extractCodeByPattern(codeContent, CSS_CODE_PATTERN);
-        String jsCode = extractCodeByPattern(codeContent, JS_CODE_PATTERN);
-        log.info("解析结果为: htmlCode: {}, cssCode: {}, jsCode: {}", htmlCode, cssCode, jsCode);
+        // 一次扫描索引所有代码块，每种语言取第一个；输出被截断时只有 HTML 使用未闭合的代码块
+        List<FencedCodeScanner.CodeBlock> blocks = FencedCodeScanner.scan(codeContent);
+        FencedCodeScanner.CodeBlock htmlBlock = FencedCodeScanner.findFirst(blocks, "html", true);
+        FencedCodeScanner.CodeBlock cssBlock = FencedCodeScanner.findFirst(blocks, "css", false);
+        FencedCodeScanner.CodeBlock jsBlock = FencedCodeScanner.findFirst(blocks, "js", false);
+        log.debug("解析多文件代码，响应长度: {}, 代码块: {}", codeContent.length(), blocks);
         // 设置HTML代码
-        if (htmlCode != null && !htmlCode.trim().isEmpty()) {
-            result.setHtmlCode(htmlCode.trim());
+        if (htmlBlock != null && !htmlBlock.isBlank()) {
+            result.setHtmlCode(htmlBlock.trimmedCode());
         }
         // 设置CSS代码
-        if (cssCode != null && !cssCode.trim().isEmpty()) {
-            result.setCssCode(cssCode.trim());
+        if (cssBlock != null && !cssBlock.isBlank()) {
+            result.setCssCode(cssBlock.trimmedCode());
         }
         // 设置JS代码
-        if (jsCode != null && !jsCode.trim().isEmpty()) {
-            result.setJsCode(jsCode.trim());
+        if (jsBlock != null && !jsBlock.isBlank()) {
+            result.setJsCode(jsBlock.trimmedCode());
         }
         return result;
     }
-
-    /**
-     * 根据正则模式提取代码
-     *
-     * @param content 原始内容
-     * @param pattern 正则模式
-     * @return 提取的代码
-     */
-    private String extractCodeByPattern(String content, Pattern pattern) {
-        Matcher matcher = pattern.matcher(content);
-        if (matcher.find()) {
-            return matcher.group(1);
-        }
-        return null;
-    }
 }
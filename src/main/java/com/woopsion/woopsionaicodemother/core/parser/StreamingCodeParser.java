@@ -0,0 +1,210 @@
+package com.woopsion.woopsionaicodemother.core.parser;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/16
+ * @time 10:12
+ * @description
+ */
+
+import java.util.function.BiConsumer;
+
+/**
+ * 流式代码块解析器
+ * 以状态机的方式逐个字符消费 AI 输出的片段，识别 ```lang ... ``` 围栏代码块，
+ * 每当一个代码块闭合时立即回调，无需等待流结束后再对完整响应做正则解析。
+ *
+ * <p>只缓存当前正在解析的代码块内容，围栏之外的说明文字在出现第一个围栏后不再保留。</p>
+ *
+ * <p>非线程安全，一个实例只对应一次生成的流。</p>
+ */
+public class StreamingCodeParser {
+
+    private static final char BACKTICK = '`';
+
+    private static final int FENCE_LENGTH = 3;
+
+    /**
+     * 解析状态
+     */
+    private enum State {
+        /**
+         * 围栏之外的普通文本
+         */
+        TEXT,
+        /**
+         * 已读到开始围栏，正在读取语言标识（直到换行）
+         */
+        INFO,
+        /**
+         * 代码块内部
+         */
+        CODE
+    }
+
+    /**
+     * 代码块闭合回调
+     */
+    @FunctionalInterface
+    public interface BlockListener {
+
+        /**
+         * 代码块闭合
+         *
+         * @param language 规范化后的语言标识
+         * @param fileName 围栏中的文件名提示，没有时为 null，见 {@link FencedCodeScanner#parseFileName(String)}
+         * @param code     代码内容
+         */
+        void onBlock(String language, String fileName, String code);
+    }
+
+    private final BlockListener blockListener;
+
+    private State state = State.TEXT;
+
+    /**
+     * 连续读到的反引号数量
+     */
+    private int backtickCount = 0;
+
+    private final StringBuilder infoBuilder = new StringBuilder();
+
+    private final StringBuilder codeBuilder = new StringBuilder();
+
+    /**
+     * 出现第一个围栏前的原始文本，用于没有代码块时的兜底
+     */
+    private StringBuilder rawTextBuilder = new StringBuilder();
+
+    private String currentLanguage;
+
+    private String currentFileName;
+
+    public StreamingCodeParser(BlockListener blockListener) {
+        this.blockListener = blockListener;
+    }
+
+    /**
+     * 不关心文件名提示时使用，回调参数为（语言标识，代码内容）
+     */
+    public StreamingCodeParser(BiConsumer<String, String> blockListener) {
+        this((language, fileName, code) -> blockListener.accept(language, code));
+    }
+
+    /**
+     * 追加一个流式片段
+     *
+     * @param chunk 代码片段
+     */
+    public void append(String chunk) {
+        if (chunk == null || chunk.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < chunk.length(); i++) {
+            char c = chunk.charAt(i);
+            switch (state) {
+                case TEXT -> onText(c);
+                case INFO -> onInfo(c);
+                case CODE -> onCode(c);
+            }
+        }
+    }
+
+    /**
+     * 当前是否处于未闭合的代码块中（流被截断时使用）
+     */
+    public boolean isInsideBlock() {
+        return state == State.CODE;
+    }
+
+    /**
+     * 获取未闭合代码块的语言标识
+     */
+    public String getOpenBlockLanguage() {
+        return state == State.CODE ? currentLanguage : null;
+    }
+
+    /**
+     * 获取未闭合代码块的文件名提示
+     */
+    public String getOpenBlockFileName() {
+        return state == State.CODE ? currentFileName : null;
+    }
+
+    /**
+     * 获取未闭合代码块当前已收集的内容
+     */
+    public String getOpenBlockCode() {
+        if (state != State.CODE) {
+            return null;
+        }
+        // 末尾不足 3 个的反引号属于代码内容
+        return codeBuilder + String.valueOf(BACKTICK).repeat(backtickCount);
+    }
+
+    /**
+     * 获取出现第一个围栏前的原始文本；出现过围栏时返回 null
+     */
+    public String getRawText() {
+        return rawTextBuilder == null ? null : rawTextBuilder.toString();
+    }
+
+    private void onText(char c) {
+        if (rawTextBuilder != null) {
+            rawTextBuilder.append(c);
+        }
+        if (c == BACKTICK) {
+            backtickCount++;
+            if (backtickCount == FENCE_LENGTH) {
+                backtickCount = 0;
+                infoBuilder.setLength(0);
+                // 出现围栏后不再需要兜底文本
+                rawTextBuilder = null;
+                state = State.INFO;
+            }
+            return;
+        }
+        backtickCount = 0;
+    }
+
+    private void onInfo(char c) {
+        if (c == '\n') {
+            String info = infoBuilder.toString().trim();
+            currentLanguage = FencedCodeScanner.parseLanguage(info);
+            currentFileName = FencedCodeScanner.parseFileName(info);
+            codeBuilder.setLength(0);
+            backtickCount = 0;
+            state = State.CODE;
+            return;
+        }
+        infoBuilder.append(c);
+    }
+
+    private void onCode(char c) {
+        if (c == BACKTICK) {
+            backtickCount++;
+            if (backtickCount == FENCE_LENGTH) {
+                closeBlock();
+            }
+            return;
+        }
+        if (backtickCount > 0) {
+            // 不足 3 个的反引号是代码内容的一部分（如 JS 模板字符串）
+            codeBuilder.append(String.valueOf(BACKTICK).repeat(backtickCount));
+            backtickCount = 0;
+        }
+        codeBuilder.append(c);
+    }
+
+    private void closeBlock() {
+        String code = codeBuilder.toString();
+        String language = currentLanguage;
+        String fileName = currentFileName;
+        codeBuilder.setLength(0);
+        backtickCount = 0;
+        currentLanguage = null;
+        currentFileName = null;
+        state = State.TEXT;
+        blockListener.onBlock(language, fileName, code);
+    }
+}
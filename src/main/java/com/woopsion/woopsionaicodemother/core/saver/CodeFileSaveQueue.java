@@ -0,0 +1,333 @@
+package com.woopsion.woopsionaicodemother.core.saver;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/16
+ * @time 14:05
+ * @description
+ */
+
+import cn.hutool.core.util.StrUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.woopsion.woopsionaicodemother.config.CodeFileSaveConfig;
+import com.woopsion.woopsionaicodemother.core.snapshot.FileHashIndex;
+import com.woopsion.woopsionaicodemother.model.enums.CodeGenTypeEnum;
+import com.woopsion.woopsionaicodemother.utils.VirtualThreadExecutor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 代码文件保存队列
+ * 将生成代码的落盘从流式传输线程中剥离，交给保存虚拟线程池执行
+ *
+ * <p>保存策略：</p>
+ * <ul>
+ *   <li>同一应用目录串行写入，避免多个任务同时写同一个 {type}_{appId} 目录</li>
+ *   <li>全局并发写入数有上限，突发流量下任务排队而不是无限创建线程</li>
+ *   <li>同一文件尚未开始的写入会被新内容覆盖（合并）</li>
+ *   <li>同一应用的新一轮生成开始后，上一轮尚未执行的写入直接丢弃</li>
+ *   <li>需要与写入串行的任务（如生成前的工作目录快照）同样在通道中排队，不会被新一轮生成丢弃</li>
+ * </ul>
+ *
+ * <p>监控指标：</p>
+ * <ul>
+ *   <li>code.save.queue.depth / code.save.active：排队中的文件数、正在写入的文件数</li>
+ *   <li>code.save.wait：从提交到开始写入的等待时间</li>
+ *   <li>code.save.latency：单个文件的写入耗时</li>
+ *   <li>code.save.tasks：按结果（result）统计的任务数，completed/failed/coalesced/superseded</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class CodeFileSaveQueue {
+
+    @Autowired
+    @Qualifier("saveVirtualThreadPool")
+    private VirtualThreadExecutor saveVirtualThreadPool;
+
+    @Resource
+    private CodeFileSaveConfig codeFileSaveConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private FileHashIndex fileHashIndex;
+
+    /**
+     * 全局并发写入名额，数量见 {@link CodeFileSaveConfig#getMaxConcurrentSaves()}
+     */
+    private Semaphore savePermits;
+
+    /**
+     * 每个应用目录一条串行通道
+     * 空闲通道保留一段时间，用于识别迟到的上一轮写入
+     */
+    private final Cache<String, DirLane> lanes = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofMinutes(30))
+            .build();
+
+    /**
+     * 生成轮次序号，单调递增
+     */
+    private final AtomicLong generationSequence = new AtomicLong(0);
+
+    // region 监控指标
+
+    private final AtomicInteger queueDepth = new AtomicInteger(0);
+    private Timer waitTimer;
+    private Timer saveTimer;
+    private Counter completedCounter;
+    private Counter failedCounter;
+    private Counter coalescedCounter;
+    private Counter supersededCounter;
+
+    // endregion
+
+    @PostConstruct
+    public void init() {
+        savePermits = new Semaphore(codeFileSaveConfig.getMaxConcurrentSaves());
+        Gauge.builder("code.save.queue.depth", queueDepth, AtomicInteger::get)
+                .description("排队中的待保存文件数")
+                .register(meterRegistry);
+        Gauge.builder("code.save.active", this, CodeFileSaveQueue::getActiveSaves)
+                .description("正在写入的文件数")
+                .register(meterRegistry);
+        waitTimer = Timer.builder("code.save.wait")
+                .description("代码文件从提交到开始写入的等待时间")
+                .register(meterRegistry);
+        saveTimer = Timer.builder("code.save.latency")
+                .description("单个代码文件的写入耗时")
+                .register(meterRegistry);
+        completedCounter = taskCounter("completed");
+        failedCounter = taskCounter("failed");
+        coalescedCounter = taskCounter("coalesced");
+        supersededCounter = taskCounter("superseded");
+    }
+
+    private Counter taskCounter(String result) {
+        return Counter.builder("code.save.tasks")
+                .description("按结果统计的保存任务数")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 开始新一轮生成，返回本轮的序号
+     * 同一应用序号更大的写入会取代序号更小且尚未执行的写入
+     *
+     * @return 生成轮次序号
+     */
+    public long nextGeneration() {
+        return generationSequence.incrementAndGet();
+    }
+
+    /**
+     * 提交文件保存任务
+     *
+     * @param fileName     相对路径，由 {@link CodeFileSaverExecutor#resolveFilePath} 得到
+     * @param code         代码内容
+     * @param codeGenType  代码生成类型
+     * @param appId        应用 ID
+     * @param generationId 生成轮次序号
+     * @return 是否被接受（路径为空、内容为空或已被新一轮生成取代时返回 false）
+     */
+    public boolean submit(String fileName, String code, CodeGenTypeEnum codeGenType, Long appId, long generationId) {
+        if (fileName == null || StrUtil.isBlank(code)) {
+            return false;
+        }
+        String laneKey = codeGenType.getValue() + "_" + appId;
+        PendingSave pendingSave = new PendingSave(fileName, code, codeGenType, appId, System.nanoTime(), null, null);
+        DirLane lane = lanes.get(laneKey, key -> new DirLane());
+        synchronized (lane) {
+            if (generationId < lane.latestGeneration) {
+                supersededCounter.increment();
+                log.debug("保存任务已被新一轮生成取代，丢弃: {}/{}", laneKey, fileName);
+                return false;
+            }
+            if (generationId > lane.latestGeneration) {
+                // 新一轮生成：丢弃上一轮尚未执行的写入，排队中的任务保留
+                int before = lane.pending.size();
+                lane.pending.values().removeIf(pending -> pending.task() == null);
+                int dropped = before - lane.pending.size();
+                if (dropped > 0) {
+                    queueDepth.addAndGet(-dropped);
+                    supersededCounter.increment(dropped);
+                    log.info("应用目录 {} 有新一轮生成，丢弃 {} 个待保存文件", laneKey, dropped);
+                }
+                lane.latestGeneration = generationId;
+            }
+            if (lane.pending.put(fileName, pendingSave) != null) {
+                coalescedCounter.increment();
+            } else {
+                queueDepth.incrementAndGet();
+            }
+            if (!lane.running) {
+                lane.running = true;
+                saveVirtualThreadPool.submit(() -> drain(lane));
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 在应用目录的串行通道中执行任务
+     * 任务在此前提交的写入之后、此后提交的写入之前执行，不会被新一轮生成丢弃，失败记录日志
+     *
+     * @param codeGenType 代码生成类型
+     * @param appId       应用 ID
+     * @param name        任务名称，用于日志
+     * @param task        任务
+     * @return 任务执行完成时完成，任务抛出异常时以该异常完成；需要等待任务时使用
+     */
+    public CompletableFuture<Void> submitTask(CodeGenTypeEnum codeGenType, Long appId, String name, Runnable task) {
+        String laneKey = codeGenType.getValue() + "_" + appId;
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        DirLane lane = lanes.get(laneKey, key -> new DirLane());
+        synchronized (lane) {
+            // 每个任务使用唯一的键，不与文件合并
+            lane.pending.put(new Object(), new PendingSave(name, null, codeGenType, appId, System.nanoTime(), task, future));
+            queueDepth.incrementAndGet();
+            if (!lane.running) {
+                lane.running = true;
+                saveVirtualThreadPool.submit(() -> drain(lane));
+            }
+        }
+        return future;
+    }
+
+    /**
+     * 串行执行某个应用目录下的所有待保存文件
+     */
+    private void drain(DirLane lane) {
+        while (true) {
+            PendingSave pendingSave;
+            synchronized (lane) {
+                Iterator<PendingSave> iterator = lane.pending.values().iterator();
+                if (!iterator.hasNext()) {
+                    lane.running = false;
+                    return;
+                }
+                pendingSave = iterator.next();
+                iterator.remove();
+                queueDepth.decrementAndGet();
+            }
+            execute(pendingSave);
+        }
+    }
+
+    private void execute(PendingSave pendingSave) {
+        boolean acquired = false;
+        try {
+            savePermits.acquire();
+            acquired = true;
+            long startNanos = System.nanoTime();
+            waitTimer.record(startNanos - pendingSave.submitNanos, TimeUnit.NANOSECONDS);
+            if (pendingSave.task != null) {
+                pendingSave.task.run();
+                pendingSave.taskDone.complete(null);
+                log.info("保存通道任务执行完成，appId: {}, 任务: {}, 耗时: {} ms",
+                        pendingSave.appId, pendingSave.fileName, (System.nanoTime() - startNanos) / 1_000_000);
+                return;
+            }
+            if (CodeFileSaverExecutor.executeFileSaver(pendingSave.fileName, pendingSave.code,
+                    pendingSave.codeGenType, pendingSave.appId)) {
+                // 保存器不经过哈希索引写入，使该文件的哈希失效
+                Path workspaceDir = CodeFileSaverExecutor.workspaceDir(pendingSave.codeGenType, pendingSave.appId);
+                fileHashIndex.invalidate(workspaceDir, workspaceDir.resolve(pendingSave.fileName));
+            }
+            long costNanos = System.nanoTime() - startNanos;
+            saveTimer.record(costNanos, TimeUnit.NANOSECONDS);
+            completedCounter.increment();
+            log.info("代码块保存成功，appId: {}, 文件: {}, 耗时: {} ms",
+                    pendingSave.appId, pendingSave.fileName, costNanos / 1_000_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (pendingSave.taskDone != null) {
+                pendingSave.taskDone.completeExceptionally(e);
+            }
+            failedCounter.increment();
+            log.warn("代码块保存被中断，appId: {}, 文件: {}", pendingSave.appId, pendingSave.fileName);
+        } catch (Exception e) {
+            if (pendingSave.taskDone != null) {
+                pendingSave.taskDone.completeExceptionally(e);
+            }
+            failedCounter.increment();
+            log.error("代码块保存失败，appId: {}, 文件: {}, 错误: {}",
+                    pendingSave.appId, pendingSave.fileName, e.getMessage(), e);
+        } finally {
+            if (acquired) {
+                savePermits.release();
+            }
+        }
+    }
+
+    /**
+     * 获取当前排队中的文件数
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * 获取正在写入的文件数
+     */
+    public int getActiveSaves() {
+        return codeFileSaveConfig.getMaxConcurrentSaves() - savePermits.availablePermits();
+    }
+
+    /**
+     * 获取保存统计信息
+     *
+     * @return 统计信息字符串
+     */
+    public String getStatistics() {
+        return String.format("CodeFileSaveQueue[queueDepth=%d, lanes=%d, activeSaves=%d, coalesced=%.0f, " +
+                        "superseded=%.0f, completed=%d, failed=%.0f, avgWaitMs=%.0f, avgSaveMs=%.0f, maxSaveMs=%.0f]",
+                queueDepth.get(), lanes.estimatedSize(), getActiveSaves(), coalescedCounter.count(),
+                supersededCounter.count(), saveTimer.count(), failedCounter.count(),
+                waitTimer.mean(TimeUnit.MILLISECONDS), saveTimer.mean(TimeUnit.MILLISECONDS),
+                saveTimer.max(TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * 应用目录的串行通道
+     */
+    private static class DirLane {
+
+        /**
+         * 按文件名合并的待保存任务，保持提交顺序；通道任务以唯一对象为键
+         */
+        private final LinkedHashMap<Object, PendingSave> pending = new LinkedHashMap<>();
+
+        private long latestGeneration;
+
+        private boolean running;
+    }
+
+    /**
+     * 待保存的代码块，或在通道中执行的任务（task 不为 null 时 fileName 为任务名称，taskDone 在任务结束时完成）
+     */
+    private record PendingSave(String fileName, String code, CodeGenTypeEnum codeGenType, Long appId,
+                               long submitNanos, Runnable task, CompletableFuture<Void> taskDone) {
+    }
+}
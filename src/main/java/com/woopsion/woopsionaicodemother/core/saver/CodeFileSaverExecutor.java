@@ -7,26 +7,23 @@ package com.woopsion.woopsionaicodemother.core.saver;
  * @description
  */
 
-import com.woopsion.woopsionaicodemother.ai.model.HtmlCodeResult;
-import com.woopsion.woopsionaicodemother.ai.model.MultiFileCodeResult;
-import com.woopsion.woopsionaicodemother.exception.BusinessException;
-import com.woopsion.woopsionaicodemother.exception.ErrorCode;
+import com.woopsion.woopsionaicodemother.constant.AppConstant;
+import com.woopsion.woopsionaicodemother.core.strategy.CodeGenStrategy;
+import com.woopsion.woopsionaicodemother.core.strategy.CodeGenStrategyRegistry;
 import com.woopsion.woopsionaicodemother.model.enums.CodeGenTypeEnum;
 
 import java.io.File;
+import java.nio.file.Path;
+import java.util.Map;
 
 /**
  * 代码文件保存执行器
- * 根据代码生成类型执行相应的保存逻辑
+ * 根据代码生成类型从策略注册表中找到保存器执行保存
  *
  * @author yupi
  */
 public class CodeFileSaverExecutor {
 
-    private static final HtmlCodeFileSaverTemplate htmlCodeFileSaver = new HtmlCodeFileSaverTemplate();
-
-    private static final MultiFileCodeFileSaverTemplate multiFileCodeFileSaver = new MultiFileCodeFileSaverTemplate();
-
     /**
      * 执行代码保存（使用 appId）
      *
@@ -36,11 +33,56 @@ public class CodeFileSaverExecutor {
      * @return 保存的目录
      */
     public static File executeSaver(Object codeResult, CodeGenTypeEnum codeGenType, Long appId) {
-        return switch (codeGenType) {
-            case HTML -> htmlCodeFileSaver.saveCode((HtmlCodeResult) codeResult, appId);
-            case MULTI_FILE -> multiFileCodeFileSaver.saveCode((MultiFileCodeResult) codeResult, appId);
-            default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
-        };
+        return CodeGenStrategyRegistry.get(codeGenType).save(codeResult, appId);
+    }
+
+    /**
+     * 保存一组文件
+     *
+     * @param files       相对路径 → 文件内容
+     * @param codeGenType 代码生成类型
+     * @param appId       应用 ID
+     * @return 保存的目录
+     */
+    public static File executeFilesSaver(Map<String, String> files, CodeGenTypeEnum codeGenType, Long appId) {
+        return CodeGenStrategyRegistry.get(codeGenType).saveFiles(files, appId);
+    }
+
+    /**
+     * 执行单个文件的保存（流式解析使用）
+     *
+     * @param path        相对路径，由 {@link #resolveFilePath(String, String, CodeGenTypeEnum)} 得到
+     * @param code        代码内容
+     * @param codeGenType 代码生成类型
+     * @param appId       应用 ID
+     * @return 是否写入了文件
+     */
+    public static boolean executeFileSaver(String path, String code, CodeGenTypeEnum codeGenType, Long appId) {
+        return CodeGenStrategyRegistry.get(codeGenType).saver().saveFile(path, code, appId);
+    }
+
+    /**
+     * 获取生成类型和应用对应的工作目录（{type}_{appId}），保存器写入的文件都在这个目录下
+     *
+     * @param codeGenType 代码生成类型
+     * @param appId       应用 ID
+     * @return 工作目录
+     */
+    public static Path workspaceDir(CodeGenTypeEnum codeGenType, Long appId) {
+        return Path.of(AppConstant.CODE_OUTPUT_ROOT_DIR, codeGenType.getValue() + "_" + appId);
+    }
+
+    /**
+     * 获取代码块在指定生成类型下对应的文件路径
+     *
+     * @param language     代码块语言标识
+     * @param fileNameHint 围栏中的文件名提示，可能为 null
+     * @param codeGenType  代码生成类型
+     * @return 相对路径，不支持的语言或生成类型返回 null
+     */
+    public static String resolveFilePath(String language, String fileNameHint, CodeGenTypeEnum codeGenType) {
+        CodeGenStrategy<?> strategy = CodeGenStrategyRegistry.find(codeGenType);
+        return strategy == null ? null : strategy.resolvePath(language, fileNameHint);
     }
 
 }
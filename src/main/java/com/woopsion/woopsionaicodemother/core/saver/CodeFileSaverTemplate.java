@@ -1,15 +1,20 @@
 package com.woopsion.woopsionaicodemother.core.saver;
 
 import cn.hutool.core.io.FileUtil;
-import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.StrUtil;
 import com.woopsion.woopsionaicodemother.constant.AppConstant;
+import com.woopsion.woopsionaicodemother.core.parser.FencedCodeScanner;
 import com.woopsion.woopsionaicodemother.exception.BusinessException;
 import com.woopsion.woopsionaicodemother.exception.ErrorCode;
 import com.woopsion.woopsionaicodemother.model.enums.CodeGenTypeEnum;
 
 import java.io.File;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @author wangpengcan
@@ -17,13 +22,24 @@ import java.nio.charset.StandardCharsets;
  * @time 00:10
  * @description
  */
+
+/**
+ * 代码文件保存模板
+ * 每种生成模式一个子类，把生成结果转换为「相对路径 → 文件内容」后统一写入 {type}_{appId} 目录：
+ * <ul>
+ *   <li>结构化输出的结果对象由 {@link #toFiles(Object)} 转换</li>
+ *   <li>文本输出由 {@link #parseFiles(String)} 一次扫描得到，代码块围栏中的文件名提示优先于按语言推断的文件名</li>
+ *   <li>流式解析时单个代码块由 {@link #resolvePath(String, String)} 确定路径</li>
+ * </ul>
+ * 新增生成模式只需实现语言与文件的对应关系，解析和写入共用同一条路径
+ *
+ * @param <T> 结构化输出的结果类型
+ */
 public abstract class CodeFileSaverTemplate<T> {
 
     // 文件保存根目录
     protected static final String FILE_SAVE_ROOT_DIR = AppConstant.CODE_OUTPUT_ROOT_DIR;
 
-
-
     /**
      * 模板方法：保存代码的标准流程（使用 appId）
      *
@@ -34,14 +50,82 @@ public abstract class CodeFileSaverTemplate<T> {
     public final File saveCode(T result, Long appId) {
         // 1. 验证输入
         validateInput(result);
-        // 2. 构建基于 appId 的目录
+        // 2. 转换为文件并保存
+        return saveFiles(toFiles(result), appId);
+    }
+
+    /**
+     * 保存一组文件
+     *
+     * @param files 相对路径 → 文件内容，空白内容跳过
+     * @param appId 应用 ID
+     * @return 保存的目录
+     */
+    public final File saveFiles(Map<String, String> files, Long appId) {
+        validateFiles(files);
         String baseDirPath = buildUniqueDir(appId);
-        // 3. 保存文件（具体实现由子类提供）
-        saveFiles(result, baseDirPath);
-        // 4. 返回目录文件对象
+        files.forEach((path, content) -> writeToFile(baseDirPath, path, content));
         return new File(baseDirPath);
     }
 
+    /**
+     * 保存单个文件（流式解析时，代码块闭合后立即调用）
+     *
+     * @param path  相对路径，由 {@link #resolvePath(String, String)} 得到
+     * @param code  代码内容
+     * @param appId 应用 ID
+     * @return 是否写入了文件（内容为空时返回 false）
+     */
+    public final boolean saveFile(String path, String code, Long appId) {
+        if (path == null || StrUtil.isBlank(code)) {
+            return false;
+        }
+        String baseDirPath = buildUniqueDir(appId);
+        writeToFile(baseDirPath, path, code.trim());
+        return true;
+    }
+
+    /**
+     * 从文本输出中解析文件
+     * 一次扫描所有代码块，同一路径只保留第一个代码块；未闭合的代码块只在 {@link #acceptsOpenBlock(String)} 时使用
+     *
+     * @param content AI 输出
+     * @return 相对路径 → 文件内容（已去掉首尾空白），按代码块出现顺序排列
+     */
+    public Map<String, String> parseFiles(String content) {
+        Map<String, String> files = new LinkedHashMap<>();
+        List<FencedCodeScanner.CodeBlock> blocks = FencedCodeScanner.scan(content);
+        for (FencedCodeScanner.CodeBlock block : blocks) {
+            if (!block.closed() && !acceptsOpenBlock(block.language())) {
+                continue;
+            }
+            String path = resolvePath(block.language(), block.fileName());
+            if (path != null && !files.containsKey(path) && !block.isBlank()) {
+                files.put(path, block.trimmedCode());
+            }
+        }
+        if (files.isEmpty()) {
+            files.putAll(fallbackFiles(content));
+        }
+        return files;
+    }
+
+    /**
+     * 确定代码块对应的文件路径
+     * 文件名提示是合法的相对路径且当前模式接受时使用提示，否则按语言推断
+     *
+     * @param language     代码块语言标识
+     * @param fileNameHint 围栏中的文件名提示，可能为 null
+     * @return 相对路径，不属于当前模式的代码块返回 null
+     */
+    public final String resolvePath(String language, String fileNameHint) {
+        String hintedPath = normalizePath(fileNameHint);
+        if (hintedPath != null && acceptsPath(hintedPath)) {
+            return hintedPath;
+        }
+        return getFileName(language);
+    }
+
     /**
      * 构建基于 appId 的目录路径
      *
@@ -70,12 +154,22 @@ public abstract class CodeFileSaverTemplate<T> {
         }
     }
 
+    /**
+     * 验证要保存的文件（可由子类覆盖）
+     *
+     * @param files 相对路径 → 文件内容
+     */
+    protected void validateFiles(Map<String, String> files) {
+        if (files == null || files.isEmpty()) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "没有可保存的代码文件");
+        }
+    }
 
     /**
      * 写入单个文件的工具方法
      *
      * @param dirPath  目录路径
-     * @param filename 文件名
+     * @param filename 相对路径
      * @param content  文件内容
      */
     protected final void writeToFile(String dirPath, String filename, String content) {
@@ -85,6 +179,26 @@ public abstract class CodeFileSaverTemplate<T> {
         }
     }
 
+    /**
+     * 规范化文件名提示：统一分隔符，拒绝绝对路径和跳出工作目录的路径
+     *
+     * @return 规范化后的相对路径，不合法时返回 null
+     */
+    static String normalizePath(String fileNameHint) {
+        if (StrUtil.isBlank(fileNameHint)) {
+            return null;
+        }
+        try {
+            Path path = Path.of(fileNameHint.replace('\\', '/')).normalize();
+            if (path.isAbsolute() || path.getNameCount() == 0 || path.startsWith("..") || path.toString().isEmpty()) {
+                return null;
+            }
+            return path.toString().replace(File.separatorChar, '/');
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+
     /**
      * 获取代码类型（由子类实现）
      *
@@ -93,10 +207,44 @@ public abstract class CodeFileSaverTemplate<T> {
     protected abstract CodeGenTypeEnum getCodeType();
 
     /**
-     * 保存文件的具体实现（由子类实现）
+     * 根据代码块语言获取对应的文件名（由子类实现）
+     *
+     * @param language 代码块语言标识
+     * @return 文件名，不支持的语言返回 null
+     */
+    public abstract String getFileName(String language);
+
+    /**
+     * 结构化输出的结果对象转换为文件（由子类实现）
+     *
+     * @param result 代码结果对象
+     * @return 相对路径 → 文件内容
+     */
+    protected abstract Map<String, String> toFiles(T result);
+
+    /**
+     * 是否接受文件名提示指定的路径，默认不接受（只按语言推断）
+     *
+     * @param path 规范化后的相对路径
+     */
+    protected boolean acceptsPath(String path) {
+        return false;
+    }
+
+    /**
+     * 输出被截断时是否使用该语言未闭合的代码块，默认只使用 HTML
+     */
+    protected boolean acceptsOpenBlock(String language) {
+        return "html".equals(language);
+    }
+
+    /**
+     * 文本输出中没有可用代码块时的兜底，默认不保存
      *
-     * @param result      代码结果对象
-     * @param baseDirPath 基础目录路径
+     * @param content AI 输出
+     * @return 相对路径 → 文件内容
      */
-    protected abstract void saveFiles(T result, String baseDirPath);
+    protected Map<String, String> fallbackFiles(String content) {
+        return Map.of();
+    }
 }
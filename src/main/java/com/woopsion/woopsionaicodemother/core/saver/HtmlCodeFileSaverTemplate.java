@@ -13,6 +13,8 @@ import com.woopsion.woopsionaicodemother.exception.BusinessException;
 import com.woopsion.woopsionaicodemother.exception.ErrorCode;
 import com.woopsion.woopsionaicodemother.model.enums.CodeGenTypeEnum;
 
+import java.util.Map;
+
 /**
  * HTML代码文件保存器
  *
@@ -26,16 +28,26 @@ public class HtmlCodeFileSaverTemplate extends CodeFileSaverTemplate<HtmlCodeRes
     }
 
     @Override
-    protected void saveFiles(HtmlCodeResult result, String baseDirPath) {
-        // 保存 HTML 文件
-        writeToFile(baseDirPath, "index.html", result.getHtmlCode());
+    public String getFileName(String language) {
+        return "html".equals(language) ? "index.html" : null;
+    }
+
+    @Override
+    protected Map<String, String> toFiles(HtmlCodeResult result) {
+        return Map.of("index.html", StrUtil.nullToEmpty(result.getHtmlCode()));
+    }
+
+    @Override
+    protected Map<String, String> fallbackFiles(String content) {
+        // 如果没有找到代码块，将整个内容作为HTML
+        return StrUtil.isBlank(content) ? Map.of() : Map.of("index.html", content.trim());
     }
 
     @Override
-    protected void validateInput(HtmlCodeResult result) {
-        super.validateInput(result);
+    protected void validateFiles(Map<String, String> files) {
+        super.validateFiles(files);
         // HTML 代码不能为空
-        if (StrUtil.isBlank(result.getHtmlCode())) {
+        if (StrUtil.isBlank(files.get("index.html"))) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "HTML代码内容不能为空");
         }
     }
@@ -7,12 +7,16 @@ package com.woopsion.woopsionaicodemother.core.saver;
  * @description
  */
 
+import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.StrUtil;
 import com.woopsion.woopsionaicodemother.ai.model.MultiFileCodeResult;
 import com.woopsion.woopsionaicodemother.exception.BusinessException;
 import com.woopsion.woopsionaicodemother.exception.ErrorCode;
 import com.woopsion.woopsionaicodemother.model.enums.CodeGenTypeEnum;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * 多文件代码保存器
  *
@@ -26,20 +30,42 @@ public class MultiFileCodeFileSaverTemplate extends CodeFileSaverTemplate<MultiF
     }
 
     @Override
-    protected void saveFiles(MultiFileCodeResult result, String baseDirPath) {
-        // 保存 HTML 文件
-        writeToFile(baseDirPath, "index.html", result.getHtmlCode());
-        // 保存 CSS 文件
-        writeToFile(baseDirPath, "style.css", result.getCssCode());
-        // 保存 JavaScript 文件
-        writeToFile(baseDirPath, "script.js", result.getJsCode());
+    public String getFileName(String language) {
+        if (language == null) {
+            return null;
+        }
+        return switch (language) {
+            case "html" -> "index.html";
+            case "css" -> "style.css";
+            case "js" -> "script.js";
+            default -> null;
+        };
+    }
+
+    @Override
+    protected Map<String, String> toFiles(MultiFileCodeResult result) {
+        // CSS 和 JS 可以为空，空白内容不会写入
+        Map<String, String> files = new LinkedHashMap<>();
+        files.put("index.html", StrUtil.nullToEmpty(result.getHtmlCode()));
+        files.put("style.css", StrUtil.nullToEmpty(result.getCssCode()));
+        files.put("script.js", StrUtil.nullToEmpty(result.getJsCode()));
+        return files;
+    }
+
+    /**
+     * 接受围栏中指定的 HTML、CSS、JS 文件名，用于多页面或拆分的样式、脚本
+     */
+    @Override
+    protected boolean acceptsPath(String path) {
+        String suffix = FileUtil.getSuffix(path);
+        return "html".equals(suffix) || "css".equals(suffix) || "js".equals(suffix);
     }
 
     @Override
-    protected void validateInput(MultiFileCodeResult result) {
-        super.validateInput(result);
-        // 至少要有 HTML 代码，CSS 和 JS 可以为空
-        if (StrUtil.isBlank(result.getHtmlCode())) {
+    protected void validateFiles(Map<String, String> files) {
+        super.validateFiles(files);
+        // 入口 index.html 不能为空，多页面时也必须有入口
+        if (StrUtil.isBlank(files.get("index.html"))) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "HTML代码内容不能为空");
         }
     }
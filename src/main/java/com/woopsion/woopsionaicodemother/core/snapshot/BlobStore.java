@@ -0,0 +1,167 @@
+package com.woopsion.woopsionaicodemother.core.snapshot;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/17
+ * @time 05:00
+ * @description
+ */
+
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.crypto.digest.DigestAlgorithm;
+import cn.hutool.crypto.digest.DigestUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * 按内容寻址的文件存储
+ * 文件以内容的 SHA-256 为名保存在 blobs/{前两位}/{哈希} 下，内容相同的文件（跨轮次、跨应用）只保存一份。
+ * 写入先写临时文件再原子重命名，已存在的内容不再写入；内容不可变，读取无需加锁
+ */
+@Slf4j
+public class BlobStore {
+
+    private final Path blobsDir;
+
+    /**
+     * 写入中的临时文件，不在 blobs 目录下，回收时不会被扫描到
+     */
+    private final Path tempDir;
+
+    public BlobStore(Path rootDir) {
+        this.blobsDir = rootDir.resolve("blobs");
+        this.tempDir = rootDir.resolve("tmp");
+    }
+
+    /**
+     * 保存文件内容
+     * 扫描得到的哈希对应的内容已存在时不再复制；否则边复制边计算哈希，按实际复制的字节保存，
+     * 扫描后文件被修改时内容也不会保存到错误的地址
+     *
+     * @param file    文件
+     * @param scanned 扫描时得到的哈希和大小，见 {@link FileHashIndex#hash(Path, Path)}
+     * @return 实际保存的内容的哈希和大小
+     */
+    public WorkspaceManifest.FileEntry put(Path file, WorkspaceManifest.FileEntry scanned) throws IOException {
+        if (touch(scanned.hash())) {
+            return scanned;
+        }
+        Files.createDirectories(tempDir);
+        Path temp = Files.createTempFile(tempDir, ".blob", ".tmp");
+        try {
+            MessageDigest digest = DigestUtil.digester(DigestAlgorithm.SHA256).getDigest();
+            long size;
+            try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+                size = Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String hash = HexUtil.encodeHexStr(digest.digest());
+            if (!hash.equals(scanned.hash())) {
+                log.debug("文件在扫描后被修改，按复制的内容保存: {}", file);
+            }
+            if (!touch(hash)) {
+                Path target = path(hash);
+                Files.createDirectories(target.getParent());
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target);
+                } catch (FileAlreadyExistsException e) {
+                    // 并发写入了相同内容
+                }
+            }
+            return new WorkspaceManifest.FileEntry(hash, size);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 内容已存在时刷新修改时间，避免正在被新清单引用的内容被回收
+     *
+     * @return 内容是否已存在
+     */
+    private boolean touch(String hash) throws IOException {
+        Path target = path(hash);
+        if (!Files.exists(target)) {
+            return false;
+        }
+        try {
+            Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+            return true;
+        } catch (NoSuchFileException e) {
+            // 刚被回收
+            return false;
+        }
+    }
+
+    /**
+     * 把内容复制到目标文件，先写临时文件再替换，目标文件不会处于写了一半的状态
+     *
+     * @param hash   内容哈希
+     * @param target 目标文件
+     */
+    public void copyTo(String hash, Path target) throws IOException {
+        Path source = path(hash);
+        if (!Files.exists(source)) {
+            throw new IOException("快照内容不存在: " + hash);
+        }
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), ".restore", ".tmp");
+        try {
+            Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 内容是否存在
+     */
+    public boolean contains(String hash) {
+        return Files.exists(path(hash));
+    }
+
+    /**
+     * 删除没有被引用的内容
+     *
+     * @param referenced  所有清单引用的哈希
+     * @param graceMillis 最近这段时间内写入或被引用的内容不删除，避免与正在进行的快照竞争
+     * @return 删除的数量
+     */
+    public int sweep(Set<String> referenced, long graceMillis) throws IOException {
+        if (!Files.isDirectory(blobsDir)) {
+            return 0;
+        }
+        long threshold = System.currentTimeMillis() - graceMillis;
+        int deleted = 0;
+        try (Stream<Path> files = Files.walk(blobsDir, 2)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                String name = file.getFileName().toString();
+                if (referenced.contains(name) || Files.getLastModifiedTime(file).toMillis() > threshold) {
+                    continue;
+                }
+                Files.deleteIfExists(file);
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private Path path(String hash) {
+        return blobsDir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+}
@@ -0,0 +1,118 @@
+package com.woopsion.woopsionaicodemother.core.snapshot;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/17
+ * @time 05:00
+ * @description
+ */
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.woopsion.woopsionaicodemother.utils.CacheMetricsUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文件内容哈希索引
+ * 按工作目录和文件缓存 SHA-256，文件大小和修改时间不变时直接返回缓存的哈希，
+ * 对未修改的文件做快照或比较时只需读取文件属性，不必重新读取内容。
+ * 索引按工作目录划分：回滚等整体改写工作目录的操作使该工作目录的索引失效，
+ * 不经过 {@link #update} 写入的文件（如 CodeFileSaverTemplate 保存的文件）由写入方使其失效，
+ * 不依赖修改时间的精度发现变化。
+ * 命中率和淘汰数导出为监控指标（cache=file_hash）
+ */
+@Component
+public class FileHashIndex {
+
+    private final Cache<Key, Entry> index;
+
+    public FileHashIndex(MeterRegistry meterRegistry) {
+        this.index = CacheMetricsUtils.buildWithMetrics(Caffeine.newBuilder()
+                .maximumSize(200_000)
+                .expireAfterAccess(Duration.ofHours(6)), meterRegistry, "file_hash");
+    }
+
+    /**
+     * 获取文件内容的哈希
+     *
+     * @param workspaceDir 文件所在的工作目录
+     * @param file         文件
+     * @return SHA-256 十六进制字符串
+     */
+    public String hash(Path workspaceDir, Path file) throws IOException {
+        Key key = key(workspaceDir, file);
+        BasicFileAttributes attrs = Files.readAttributes(key.file(), BasicFileAttributes.class);
+        long size = attrs.size();
+        // 按纳秒比较修改时间，同一毫秒内写入相同大小的内容也能发现
+        long modifiedNanos = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        Entry entry = index.getIfPresent(key);
+        if (entry != null && entry.size() == size && entry.modifiedNanos() == modifiedNanos) {
+            return entry.hash();
+        }
+        String hash;
+        try (InputStream in = Files.newInputStream(key.file())) {
+            hash = DigestUtil.sha256Hex(in);
+        }
+        index.put(key, new Entry(size, modifiedNanos, hash));
+        return hash;
+    }
+
+    /**
+     * 记录刚写入文件的哈希，写入方已知内容时避免再次读取
+     *
+     * @param workspaceDir 文件所在的工作目录
+     * @param file         文件
+     * @param hash         写入内容的哈希
+     */
+    public void update(Path workspaceDir, Path file, String hash) throws IOException {
+        Key key = key(workspaceDir, file);
+        BasicFileAttributes attrs = Files.readAttributes(key.file(), BasicFileAttributes.class);
+        index.put(key, new Entry(attrs.size(), attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS), hash));
+    }
+
+    /**
+     * 文件被不经过 {@link #update} 的方式改写后调用，下次获取哈希时重新读取
+     */
+    public void invalidate(Path workspaceDir, Path file) {
+        index.invalidate(key(workspaceDir, file));
+    }
+
+    /**
+     * 使工作目录中所有文件的哈希失效
+     */
+    public void invalidateWorkspace(Path workspaceDir) {
+        Path workspace = normalize(workspaceDir);
+        index.asMap().keySet().removeIf(key -> key.workspace().equals(workspace));
+    }
+
+    /**
+     * 计算内容的哈希
+     */
+    public static String hash(byte[] content) {
+        return DigestUtil.sha256Hex(content);
+    }
+
+    private static Key key(Path workspaceDir, Path file) {
+        return new Key(normalize(workspaceDir), normalize(file));
+    }
+
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+    private record Key(Path workspace, Path file) {
+    }
+
+    private record Entry(long size, long modifiedNanos, String hash) {
+    }
+}
@@ -0,0 +1,117 @@
+package com.woopsion.woopsionaicodemother.core.snapshot;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/17
+ * @time 05:00
+ * @description
+ */
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * 工作目录快照清单
+ * 记录某一时刻工作目录中每个文件的内容哈希和大小，文件内容保存在 {@link BlobStore} 中
+ *
+ * @param id         快照 id，同一工作目录内单调递增（毫秒时间戳）
+ * @param createTime 创建时间（毫秒时间戳）
+ * @param note       说明，如触发快照的用户消息
+ * @param files      相对路径 → 文件信息，按路径排序
+ */
+public record WorkspaceManifest(long id, long createTime, String note, Map<String, FileEntry> files) {
+
+    public WorkspaceManifest {
+        files = Collections.unmodifiableMap(new TreeMap<>(files));
+    }
+
+    /**
+     * 文件信息
+     *
+     * @param hash 内容的 SHA-256
+     * @param size 字节数
+     */
+    public record FileEntry(String hash, long size) {
+    }
+
+    /**
+     * 文件变更
+     *
+     * @param path       相对路径
+     * @param changeType added / modified / deleted
+     * @param fromHash   变更前的哈希，新增时为 null
+     * @param toHash     变更后的哈希，删除时为 null
+     */
+    public record FileChange(String path, String changeType, String fromHash, String toHash) {
+    }
+
+    /**
+     * 所有文件的总字节数
+     */
+    public long totalSize() {
+        return files.values().stream().mapToLong(FileEntry::size).sum();
+    }
+
+    /**
+     * 文件内容是否与另一个清单完全相同
+     */
+    public boolean sameFiles(WorkspaceManifest other) {
+        return other != null && files.equals(other.files);
+    }
+
+    /**
+     * 比较两个清单，只比较哈希，不读取文件内容
+     *
+     * @return 按路径排序的变更
+     */
+    public static List<FileChange> diff(Map<String, FileEntry> from, Map<String, FileEntry> to) {
+        TreeMap<String, Boolean> paths = new TreeMap<>();
+        from.keySet().forEach(path -> paths.put(path, true));
+        to.keySet().forEach(path -> paths.put(path, true));
+        List<FileChange> changes = new ArrayList<>();
+        for (String path : paths.keySet()) {
+            FileEntry before = from.get(path);
+            FileEntry after = to.get(path);
+            if (before == null) {
+                changes.add(new FileChange(path, "added", null, after.hash()));
+            } else if (after == null) {
+                changes.add(new FileChange(path, "deleted", before.hash(), null));
+            } else if (!Objects.equals(before.hash(), after.hash())) {
+                changes.add(new FileChange(path, "modified", before.hash(), after.hash()));
+            }
+        }
+        return changes;
+    }
+
+    public String toJson() {
+        JSONObject fileJson = new JSONObject();
+        files.forEach((path, entry) -> fileJson.set(path, new JSONObject().set("hash", entry.hash()).set("size", entry.size())));
+        return new JSONObject()
+                .set("id", id)
+                .set("createTime", createTime)
+                .set("note", note)
+                .set("files", fileJson)
+                .toString();
+    }
+
+    public static WorkspaceManifest fromJson(String json) {
+        JSONObject jsonObject = JSONUtil.parseObj(json);
+        Map<String, FileEntry> files = new TreeMap<>();
+        JSONObject fileJson = jsonObject.getJSONObject("files");
+        if (fileJson != null) {
+            for (String path : fileJson.keySet()) {
+                JSONObject entry = fileJson.getJSONObject(path);
+                files.put(path, new FileEntry(entry.getStr("hash"), entry.getLong("size", 0L)));
+            }
+        }
+        return new WorkspaceManifest(jsonObject.getLong("id"), jsonObject.getLong("createTime"),
+                jsonObject.getStr("note"), files);
+    }
+}
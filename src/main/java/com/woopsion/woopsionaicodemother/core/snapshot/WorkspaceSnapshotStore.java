@@ -0,0 +1,346 @@
+package com.woopsion.woopsionaicodemother.core.snapshot;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/17
+ * @time 05:00
+ * @description
+ */
+
+import cn.hutool.core.util.StrUtil;
+import com.woopsion.woopsionaicodemother.ai.memory.CurrentFilesInjector;
+import com.woopsion.woopsionaicodemother.config.WorkspaceSnapshotConfig;
+import com.woopsion.woopsionaicodemother.constant.AppConstant;
+import com.woopsion.woopsionaicodemother.exception.BusinessException;
+import com.woopsion.woopsionaicodemother.exception.ErrorCode;
+import com.woopsion.woopsionaicodemother.model.enums.CodeGenTypeEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 工作目录快照存储
+ * 生成代码直接覆盖 {type}_{appId} 工作目录中的文件，每轮生成前在这里为工作目录创建快照，保留上一轮的结果：
+ * <ul>
+ *   <li>文件内容保存在按内容寻址的 {@link BlobStore} 中，未修改的文件和各应用相同的脚手架文件只保存一份</li>
+ *   <li>每个快照只是一份清单（路径 → 哈希），与上一个快照相同时不创建；未修改的文件由 {@link FileHashIndex} 跳过读取</li>
+ *   <li>比较两个快照只比较清单；回滚只写入哈希不同的文件、删除多出的文件，回滚前先为当前状态创建快照，回滚可以撤销</li>
+ *   <li>每个工作目录只保留最近的若干个快照，不再被任何清单引用的内容定期回收</li>
+ * </ul>
+ * 依赖和构建产物目录（node_modules、dist 等）不保存
+ */
+@Slf4j
+@Component
+public class WorkspaceSnapshotStore {
+
+    private final Path outputRootDir;
+
+    private final Path manifestsDir;
+
+    private final BlobStore blobStore;
+
+    private final WorkspaceSnapshotConfig config;
+
+    private final FileHashIndex fileHashIndex;
+
+    /**
+     * 每个工作目录一把锁，快照和回滚串行执行
+     */
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+    @Autowired
+    public WorkspaceSnapshotStore(WorkspaceSnapshotConfig config, FileHashIndex fileHashIndex) {
+        this(Path.of(AppConstant.CODE_OUTPUT_ROOT_DIR), Path.of(AppConstant.CODE_STORE_ROOT_DIR), config, fileHashIndex);
+    }
+
+    WorkspaceSnapshotStore(Path outputRootDir, Path storeRootDir, WorkspaceSnapshotConfig config, FileHashIndex fileHashIndex) {
+        this.outputRootDir = outputRootDir;
+        this.manifestsDir = storeRootDir.resolve("manifests");
+        this.blobStore = new BlobStore(storeRootDir);
+        this.config = config;
+        this.fileHashIndex = fileHashIndex;
+    }
+
+    /**
+     * 为工作目录创建快照
+     *
+     * @param appId       应用 ID
+     * @param codeGenType 代码生成类型
+     * @param note        说明
+     * @return 快照清单；与最近的快照相同时返回最近的快照；工作目录不存在或未启用时返回 null
+     */
+    public WorkspaceManifest snapshot(long appId, CodeGenTypeEnum codeGenType, String note) {
+        if (!config.isEnabled()) {
+            return null;
+        }
+        String workspaceKey = workspaceKey(appId, codeGenType);
+        Path workspaceDir = outputRootDir.resolve(workspaceKey);
+        if (!Files.isDirectory(workspaceDir)) {
+            return null;
+        }
+        synchronized (lock(workspaceKey)) {
+            try {
+                return doSnapshot(workspaceKey, workspaceDir, note);
+            } catch (IOException e) {
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "创建工作目录快照失败: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 列出工作目录的快照，最新的在前
+     */
+    public List<WorkspaceManifest> list(long appId, CodeGenTypeEnum codeGenType) {
+        Path dir = manifestsDir.resolve(workspaceKey(appId, codeGenType));
+        List<WorkspaceManifest> manifests = new ArrayList<>();
+        for (long id : listIds(dir).reversed()) {
+            WorkspaceManifest manifest = readManifest(dir, id);
+            if (manifest != null) {
+                manifests.add(manifest);
+            }
+        }
+        return manifests;
+    }
+
+    /**
+     * 比较两个快照，只读取清单
+     *
+     * @param fromId 起始快照 id
+     * @param toId   目标快照 id，为 null 时与工作目录的当前状态比较
+     * @return 按路径排序的变更
+     */
+    public List<WorkspaceManifest.FileChange> diff(long appId, CodeGenTypeEnum codeGenType, long fromId, Long toId) {
+        String workspaceKey = workspaceKey(appId, codeGenType);
+        WorkspaceManifest from = requireManifest(workspaceKey, fromId);
+        Map<String, WorkspaceManifest.FileEntry> to;
+        if (toId != null) {
+            to = requireManifest(workspaceKey, toId).files();
+        } else {
+            try {
+                to = scan(outputRootDir.resolve(workspaceKey));
+            } catch (IOException e) {
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "读取工作目录失败: " + e.getMessage());
+            }
+        }
+        return WorkspaceManifest.diff(from.files(), to);
+    }
+
+    /**
+     * 回滚工作目录到指定快照
+     * 只写入与快照不同的文件、删除快照中没有的文件；回滚前为当前状态创建快照
+     *
+     * @return 回滚前的快照，可用于撤销回滚
+     */
+    public WorkspaceManifest restore(long appId, CodeGenTypeEnum codeGenType, long snapshotId) {
+        String workspaceKey = workspaceKey(appId, codeGenType);
+        Path workspaceDir = outputRootDir.resolve(workspaceKey);
+        synchronized (lock(workspaceKey)) {
+            WorkspaceManifest target = requireManifest(workspaceKey, snapshotId);
+            try {
+                Files.createDirectories(workspaceDir);
+                WorkspaceManifest before = doSnapshot(workspaceKey, workspaceDir, "回滚到快照 " + snapshotId + " 前");
+                // 回滚整体改写工作目录，先使该工作目录的索引失效，中途失败也不会留下过期的哈希
+                fileHashIndex.invalidateWorkspace(workspaceDir);
+                int written = 0;
+                int deleted = 0;
+                for (WorkspaceManifest.FileChange change : WorkspaceManifest.diff(before.files(), target.files())) {
+                    Path file = resolveInWorkspace(workspaceDir, change.path());
+                    if (change.toHash() == null) {
+                        Files.deleteIfExists(file);
+                        deleted++;
+                    } else {
+                        blobStore.copyTo(change.toHash(), file);
+                        fileHashIndex.update(workspaceDir, file, change.toHash());
+                        written++;
+                    }
+                }
+                log.info("工作目录 {} 已回滚到快照 {}，写入 {} 个文件，删除 {} 个文件", workspaceKey, snapshotId, written, deleted);
+                return before;
+            } catch (IOException e) {
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "回滚工作目录失败: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 回收不再被任何快照引用的内容
+     * 每天凌晨执行一次
+     */
+    @Scheduled(cron = "0 30 4 * * ?")
+    public void collectGarbage() {
+        if (!Files.isDirectory(manifestsDir)) {
+            return;
+        }
+        try {
+            Set<String> referenced = new HashSet<>();
+            try (Stream<Path> dirs = Files.list(manifestsDir)) {
+                for (Path dir : (Iterable<Path>) dirs.filter(Files::isDirectory)::iterator) {
+                    for (long id : listIds(dir)) {
+                        WorkspaceManifest manifest = readManifest(dir, id);
+                        if (manifest != null) {
+                            manifest.files().values().forEach(entry -> referenced.add(entry.hash()));
+                        }
+                    }
+                }
+            }
+            int deleted = blobStore.sweep(referenced, TimeUnit.MINUTES.toMillis(config.getGcGraceMinutes()));
+            log.info("快照内容回收完成，引用中的内容 {} 个，删除 {} 个", referenced.size(), deleted);
+        } catch (IOException e) {
+            log.error("快照内容回收失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private WorkspaceManifest doSnapshot(String workspaceKey, Path workspaceDir, String note) throws IOException {
+        Map<String, WorkspaceManifest.FileEntry> files = scan(workspaceDir);
+        Path dir = manifestsDir.resolve(workspaceKey);
+        List<Long> ids = listIds(dir);
+        WorkspaceManifest latest = ids.isEmpty() ? null : readManifest(dir, ids.getLast());
+        if (latest != null && latest.files().equals(files)) {
+            return latest;
+        }
+        // 清单记录实际保存的内容，扫描后被修改的文件以复制时的内容为准
+        Map<String, WorkspaceManifest.FileEntry> stored = new TreeMap<>();
+        for (Map.Entry<String, WorkspaceManifest.FileEntry> entry : files.entrySet()) {
+            try {
+                stored.put(entry.getKey(), blobStore.put(workspaceDir.resolve(entry.getKey()), entry.getValue()));
+            } catch (NoSuchFileException e) {
+                // 扫描后被删除的文件忽略
+            }
+        }
+        long now = System.currentTimeMillis();
+        long id = latest == null ? now : Math.max(now, latest.id() + 1);
+        WorkspaceManifest manifest = new WorkspaceManifest(id, now, StrUtil.maxLength(note, 200), stored);
+        writeManifest(dir, manifest);
+        ids.add(id);
+        // 只保留最近的快照，内容由定期回收删除
+        for (int i = 0; i < ids.size() - Math.max(config.getMaxSnapshots(), 1); i++) {
+            Files.deleteIfExists(dir.resolve(ids.get(i) + ".json"));
+        }
+        log.info("工作目录 {} 已创建快照 {}，文件 {} 个", workspaceKey, id, stored.size());
+        return manifest;
+    }
+
+    /**
+     * 扫描工作目录中的文件及其哈希，跳过依赖和构建产物目录
+     */
+    private Map<String, WorkspaceManifest.FileEntry> scan(Path workspaceDir) throws IOException {
+        Map<String, WorkspaceManifest.FileEntry> files = new TreeMap<>();
+        if (!Files.isDirectory(workspaceDir)) {
+            return files;
+        }
+        Files.walkFileTree(workspaceDir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return CurrentFilesInjector.IGNORED_DIRS.contains(dir.getFileName().toString()) && !dir.equals(workspaceDir)
+                        ? FileVisitResult.SKIP_SUBTREE
+                        : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (attrs.isRegularFile()) {
+                    String path = workspaceDir.relativize(file).toString().replace('\\', '/');
+                    files.put(path, new WorkspaceManifest.FileEntry(fileHashIndex.hash(workspaceDir, file), attrs.size()));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                // 扫描期间被删除的文件忽略
+                if (e instanceof NoSuchFileException) {
+                    return FileVisitResult.CONTINUE;
+                }
+                throw e;
+            }
+        });
+        return files;
+    }
+
+    private WorkspaceManifest requireManifest(String workspaceKey, long id) {
+        WorkspaceManifest manifest = readManifest(manifestsDir.resolve(workspaceKey), id);
+        if (manifest == null) {
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "快照不存在");
+        }
+        return manifest;
+    }
+
+    private static List<Long> listIds(Path dir) {
+        List<Long> ids = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return ids;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(".json"))
+                    .map(name -> name.substring(0, name.length() - ".json".length()))
+                    .filter(StrUtil::isNumeric)
+                    .map(Long::parseLong)
+                    .sorted(Comparator.naturalOrder())
+                    .forEach(ids::add);
+        } catch (IOException e) {
+            log.warn("读取快照目录失败: {}, {}", dir, e.getMessage());
+        }
+        return ids;
+    }
+
+    private static WorkspaceManifest readManifest(Path dir, long id) {
+        Path file = dir.resolve(id + ".json");
+        try {
+            return WorkspaceManifest.fromJson(Files.readString(file, StandardCharsets.UTF_8));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (Exception e) {
+            log.warn("读取快照清单失败: {}, {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private static void writeManifest(Path dir, WorkspaceManifest manifest) throws IOException {
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, ".manifest", ".tmp");
+        try {
+            Files.writeString(temp, manifest.toJson(), StandardCharsets.UTF_8);
+            Files.move(temp, dir.resolve(manifest.id() + ".json"), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static Path resolveInWorkspace(Path workspaceDir, String path) throws IOException {
+        Path file = workspaceDir.resolve(path).normalize();
+        if (!file.startsWith(workspaceDir.normalize())) {
+            throw new IOException("快照中的路径不合法: " + path);
+        }
+        return file;
+    }
+
+    private Object lock(String workspaceKey) {
+        return locks.computeIfAbsent(workspaceKey, key -> new Object());
+    }
+
+    private static String workspaceKey(long appId, CodeGenTypeEnum codeGenType) {
+        return codeGenType.getValue() + "_" + appId;
+    }
+}
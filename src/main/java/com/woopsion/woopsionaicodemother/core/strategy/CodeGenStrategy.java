@@ -0,0 +1,79 @@
+package com.woopsion.woopsionaicodemother.core.strategy;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/17
+ * @time 04:00
+ * @description
+ */
+
+import com.woopsion.woopsionaicodemother.core.parser.CodeParser;
+import com.woopsion.woopsionaicodemother.core.saver.CodeFileSaverTemplate;
+import com.woopsion.woopsionaicodemother.exception.BusinessException;
+import com.woopsion.woopsionaicodemother.exception.ErrorCode;
+import com.woopsion.woopsionaicodemother.model.enums.CodeGenTypeEnum;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * 代码生成模式的解析和保存策略
+ * 把一种模式的结构化结果类型、文本解析器和文件保存器放在一起，调用方不再按枚举分支和强制转换
+ *
+ * @param codeGenType 代码生成类型
+ * @param resultType  结构化输出的结果类型
+ * @param parser      文本输出解析为结构化结果
+ * @param saver       保存器，也负责文本输出到文件的解析
+ * @param <T>         结构化输出的结果类型
+ */
+public record CodeGenStrategy<T>(CodeGenTypeEnum codeGenType, Class<T> resultType,
+                                 CodeParser<T> parser, CodeFileSaverTemplate<T> saver) {
+
+    /**
+     * 解析文本输出为结构化结果
+     */
+    public T parse(String content) {
+        return parser.parseCode(content);
+    }
+
+    /**
+     * 解析文本输出为文件，所有模式共用一次扫描的解析路径
+     *
+     * @return 相对路径 → 文件内容
+     */
+    public Map<String, String> parseFiles(String content) {
+        return saver.parseFiles(content);
+    }
+
+    /**
+     * 保存结构化结果
+     *
+     * @param result 结果对象，类型必须与当前模式一致
+     * @param appId  应用 ID
+     * @return 保存的目录
+     */
+    public File save(Object result, Long appId) {
+        if (!resultType.isInstance(result)) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "代码结果类型与生成类型不匹配: " + codeGenType.getValue());
+        }
+        return saver.saveCode(resultType.cast(result), appId);
+    }
+
+    /**
+     * 保存一组文件
+     */
+    public File saveFiles(Map<String, String> files, Long appId) {
+        return saver.saveFiles(files, appId);
+    }
+
+    /**
+     * 确定代码块对应的文件路径
+     *
+     * @param language     代码块语言标识
+     * @param fileNameHint 围栏中的文件名提示，可能为 null
+     * @return 相对路径，不属于当前模式的代码块返回 null
+     */
+    public String resolvePath(String language, String fileNameHint) {
+        return saver.resolvePath(language, fileNameHint);
+    }
+}
@@ -0,0 +1,73 @@
+package com.woopsion.woopsionaicodemother.core.strategy;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/17
+ * @time 04:00
+ * @description
+ */
+
+import com.woopsion.woopsionaicodemother.ai.model.HtmlCodeResult;
+import com.woopsion.woopsionaicodemother.ai.model.MultiFileCodeResult;
+import com.woopsion.woopsionaicodemother.core.parser.CodeParser;
+import com.woopsion.woopsionaicodemother.core.parser.HtmlCodeParser;
+import com.woopsion.woopsionaicodemother.core.parser.MultiFileCodeParser;
+import com.woopsion.woopsionaicodemother.core.saver.CodeFileSaverTemplate;
+import com.woopsion.woopsionaicodemother.core.saver.HtmlCodeFileSaverTemplate;
+import com.woopsion.woopsionaicodemother.core.saver.MultiFileCodeFileSaverTemplate;
+import com.woopsion.woopsionaicodemother.exception.BusinessException;
+import com.woopsion.woopsionaicodemother.exception.ErrorCode;
+import com.woopsion.woopsionaicodemother.model.enums.CodeGenTypeEnum;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 代码生成策略注册表
+ * 按生成类型查找解析和保存策略，新增由本服务解析保存的生成模式时在静态块中注册一次即可
+ * 注册只在类初始化时进行，之后映射不可修改，查找无需加锁
+ * Vue 项目的文件由工具调用直接写入，不在注册表中
+ */
+public class CodeGenStrategyRegistry {
+
+    private static final Map<CodeGenTypeEnum, CodeGenStrategy<?>> STRATEGIES;
+
+    static {
+        Map<CodeGenTypeEnum, CodeGenStrategy<?>> strategies = new EnumMap<>(CodeGenTypeEnum.class);
+        register(strategies, CodeGenTypeEnum.HTML, HtmlCodeResult.class, new HtmlCodeParser(), new HtmlCodeFileSaverTemplate());
+        register(strategies, CodeGenTypeEnum.MULTI_FILE, MultiFileCodeResult.class, new MultiFileCodeParser(), new MultiFileCodeFileSaverTemplate());
+        STRATEGIES = Collections.unmodifiableMap(strategies);
+    }
+
+    private CodeGenStrategyRegistry() {
+    }
+
+    /**
+     * 注册生成模式的策略
+     */
+    private static <T> void register(Map<CodeGenTypeEnum, CodeGenStrategy<?>> strategies, CodeGenTypeEnum codeGenType,
+                                     Class<T> resultType, CodeParser<T> parser, CodeFileSaverTemplate<T> saver) {
+        strategies.put(codeGenType, new CodeGenStrategy<>(codeGenType, resultType, parser, saver));
+    }
+
+    /**
+     * 获取生成类型的策略
+     *
+     * @throws BusinessException 生成类型没有注册策略时
+     */
+    public static CodeGenStrategy<?> get(CodeGenTypeEnum codeGenType) {
+        CodeGenStrategy<?> strategy = find(codeGenType);
+        if (strategy == null) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
+        }
+        return strategy;
+    }
+
+    /**
+     * 查找生成类型的策略，没有注册时返回 null
+     */
+    public static CodeGenStrategy<?> find(CodeGenTypeEnum codeGenType) {
+        return codeGenType == null ? null : STRATEGIES.get(codeGenType);
+    }
+}
@@ -0,0 +1,102 @@
+package com.woopsion.woopsionaicodemother.entity;
+
+import com.mybatisflex.annotation.Column;
+import com.mybatisflex.annotation.Id;
+import com.mybatisflex.annotation.KeyType;
+import com.mybatisflex.annotation.Table;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import java.io.Serial;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 生成任务 实体类。
+ *
+ * @author <a href="https://github.com/Woopsion">woopsion</a>
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("generation_job")
+public class GenerationJob implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * id，与生成会话 ID 一致
+     */
+    @Id(keyType = KeyType.None)
+    private Long id;
+
+    /**
+     * 应用id
+     */
+    @Column("appId")
+    private Long appId;
+
+    /**
+     * 创建用户id
+     */
+    @Column("userId")
+    private Long userId;
+
+    /**
+     * 触发生成的用户消息
+     */
+    private String message;
+
+    /**
+     * 状态：queued/running/completed/failed
+     */
+    private String status;
+
+    /**
+     * 失败原因
+     */
+    @Column("errorMessage")
+    private String errorMessage;
+
+    /**
+     * 执行节点
+     */
+    @Column("nodeId")
+    private String nodeId;
+
+    /**
+     * 开始执行时间
+     */
+    @Column("startTime")
+    private LocalDateTime startTime;
+
+    /**
+     * 结束时间
+     */
+    @Column("endTime")
+    private LocalDateTime endTime;
+
+    /**
+     * 创建时间
+     */
+    @Column("createTime")
+    private LocalDateTime createTime;
+
+    /**
+     * 更新时间
+     */
+    @Column("updateTime")
+    private LocalDateTime updateTime;
+
+    /**
+     * 是否删除
+     */
+    @Column(value = "isDelete", isLogicDelete = true)
+    private Integer isDelete;
+
+}
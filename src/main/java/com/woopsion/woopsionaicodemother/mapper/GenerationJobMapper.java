@@ -0,0 +1,13 @@
+package com.woopsion.woopsionaicodemother.mapper;
+
+import com.mybatisflex.core.BaseMapper;
+import com.woopsion.woopsionaicodemother.entity.GenerationJob;
+
+/**
+ * 生成任务 映射层。
+ *
+ * @author <a href="https://github.com/Woopsion">woopsion</a>
+ */
+public interface GenerationJobMapper extends BaseMapper<GenerationJob> {
+
+}
@@ -0,0 +1,22 @@
+package com.woopsion.woopsionaicodemother.model.dto.app;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/16
+ * @time 19:40
+ * @description
+ */
+@Data
+public class AppCancelGenRequest implements Serializable {
+
+    /**
+     * 应用 id
+     */
+    private Long appId;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,27 @@
+package com.woopsion.woopsionaicodemother.model.dto.app;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/17
+ * @time 05:00
+ * @description
+ */
+@Data
+public class AppSnapshotRollbackRequest implements Serializable {
+
+    /**
+     * 应用 id
+     */
+    private Long appId;
+
+    /**
+     * 回滚到的快照 id
+     */
+    private Long snapshotId;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,46 @@
+package com.woopsion.woopsionaicodemother.model.enums;
+
+import cn.hutool.core.util.ObjUtil;
+import lombok.Getter;
+
+/**
+ * @author wangpengcan
+ * @date 2026/10/16
+ * @time 18:30
+ * @description
+ */
+@Getter
+public enum GenerationJobStatusEnum {
+
+    QUEUED("排队中", "queued"),
+    RUNNING("生成中", "running"),
+    COMPLETED("已完成", "completed"),
+    FAILED("失败", "failed");
+
+    private final String text;
+
+    private final String value;
+
+    GenerationJobStatusEnum(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value 枚举值的value
+     * @return 枚举值
+     */
+    public static GenerationJobStatusEnum getEnumByValue(String value) {
+        if (ObjUtil.isEmpty(value)) {
+            return null;
+        }
+        for (GenerationJobStatusEnum anEnum : GenerationJobStatusEnum.values()) {
+            if (anEnum.value.equals(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+}
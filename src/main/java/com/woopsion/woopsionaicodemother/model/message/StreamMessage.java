@@ -13,11 +13,12 @@ import lombok.NoArgsConstructor;
 
 /**
  * 流式消息响应基类
+ * 密封类型，在进程内以对象形式流经整个 Flux 链路，只在 SSE 出口序列化一次
  */
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-public class StreamMessage {
+public abstract sealed class StreamMessage permits AiResponseMessage, ToolRequestMessage, ToolExecutedMessage {
     private String type;
 }
 
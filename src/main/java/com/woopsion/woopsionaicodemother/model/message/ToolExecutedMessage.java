@@ -18,7 +18,7 @@ import lombok.NoArgsConstructor;
 @Data
 @EqualsAndHashCode(callSuper = true)
 @NoArgsConstructor
-public class ToolExecutedMessage extends StreamMessage {
+public final class ToolExecutedMessage extends StreamMessage {
 
     private String id;
 
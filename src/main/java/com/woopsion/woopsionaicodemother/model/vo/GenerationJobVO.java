@@ -0,0 +1,57 @@
+package com.woopsion.woopsionaicodemother.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 生成任务视图对象
+ *
+ * @author <a href="https://github.com/Woopsion">woopsion</a>
+ */
+@Data
+public class GenerationJobVO implements Serializable {
+
+    /**
+     * id，可作为 {id}-0 形式的 Last-Event-ID 订阅进行中的生成
+     */
+    private Long id;
+
+    /**
+     * 应用id
+     */
+    private Long appId;
+
+    /**
+     * 触发生成的用户消息
+     */
+    private String message;
+
+    /**
+     * 状态：queued/running/completed/failed
+     */
+    private String status;
+
+    /**
+     * 失败原因
+     */
+    private String errorMessage;
+
+    /**
+     * 开始执行时间
+     */
+    private LocalDateTime startTime;
+
+    /**
+     * 结束时间
+     */
+    private LocalDateTime endTime;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+
+    private static final long serialVersionUID = 1L;
+}
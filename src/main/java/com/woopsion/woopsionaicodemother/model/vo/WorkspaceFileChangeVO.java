@@ -0,0 +1,26 @@
+package com.woopsion.woopsionaicodemother.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 快照之间的文件变更视图对象
+ *
+ * @author <a href="https://github.com/Woopsion">woopsion</a>
+ */
+@Data
+public class WorkspaceFileChangeVO implements Serializable {
+
+    /**
+     * 相对工作目录的路径
+     */
+    private String path;
+
+    /**
+     * 变更类型：added/modified/deleted
+     */
+    private String changeType;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,42 @@
+package com.woopsion.woopsionaicodemother.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 工作目录快照视图对象
+ *
+ * @author <a href="https://github.com/Woopsion">woopsion</a>
+ */
+@Data
+public class WorkspaceSnapshotVO implements Serializable {
+
+    /**
+     * 快照 id，用于比较和回滚
+     */
+    private Long id;
+
+    /**
+     * 说明，如触发快照的用户消息
+     */
+    private String note;
+
+    /**
+     * 文件数
+     */
+    private Integer fileCount;
+
+    /**
+     * 文件总字节数
+     */
+    private Long totalSize;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -7,6 +7,9 @@ import com.woopsion.woopsionaicodemother.entity.User;
 import com.woopsion.woopsionaicodemother.model.dto.app.AppAddRequest;
 import com.woopsion.woopsionaicodemother.model.dto.app.AppQueryRequest;
 import com.woopsion.woopsionaicodemother.model.vo.AppVO;
+import com.woopsion.woopsionaicodemother.model.vo.WorkspaceFileChangeVO;
+import com.woopsion.woopsionaicodemother.model.vo.WorkspaceSnapshotVO;
+import com.woopsion.woopsionaicodemother.core.generation.GenerationEvent;
 import reactor.core.publisher.Flux;
 
 import java.util.List;
@@ -48,9 +51,58 @@ public interface AppService extends IService<App> {
      * @param appId 应用id
      * @param message 聊天消息
      * @param loginUser 登录用户
-     * @return 代码流式输出内容
+     * @return 代码流式输出事件
      */
-    Flux<String> chatToGenCode(Long appId, String message, User loginUser);
+    Flux<GenerationEvent> chatToGenCode(Long appId, String message, User loginUser);
+
+    /**
+     * 断线重连后恢复生成输出
+     *
+     * @param appId 应用id
+     * @param lastEventId 客户端最后收到的事件 ID
+     * @param loginUser 登录用户
+     * @return 断点之后的代码流式输出事件
+     */
+    Flux<GenerationEvent> resumeGenCode(Long appId, String lastEventId, User loginUser);
+
+    /**
+     * 取消正在进行的生成
+     *
+     * @param appId 应用id
+     * @param loginUser 登录用户
+     * @return 是否有生成被取消
+     */
+    boolean cancelGenCode(Long appId, User loginUser);
+
+    /**
+     * 列出应用工作目录的快照，最新的在前
+     *
+     * @param appId 应用id
+     * @param loginUser 登录用户
+     * @return 快照列表
+     */
+    List<WorkspaceSnapshotVO> listSnapshots(Long appId, User loginUser);
+
+    /**
+     * 比较两个快照之间的文件变更
+     *
+     * @param appId 应用id
+     * @param fromId 起始快照 id
+     * @param toId 目标快照 id，为空时与工作目录的当前状态比较
+     * @param loginUser 登录用户
+     * @return 文件变更
+     */
+    List<WorkspaceFileChangeVO> diffSnapshots(Long appId, Long fromId, Long toId, User loginUser);
+
+    /**
+     * 回滚应用工作目录到指定快照，回滚前为当前状态创建快照
+     *
+     * @param appId 应用id
+     * @param snapshotId 快照 id
+     * @param loginUser 登录用户
+     * @return 回滚前的快照 id，可用于撤销回滚
+     */
+    Long rollbackSnapshot(Long appId, Long snapshotId, User loginUser);
 
     /**
      * 校验应用参数
@@ -8,7 +8,7 @@ import com.woopsion.woopsionaicodemother.entity.User;
 import com.woopsion.woopsionaicodemother.model.dto.chatHistory.ChatHistoryAdminQueryRequest;
 import com.woopsion.woopsionaicodemother.model.dto.chatHistory.ChatHistoryQueryRequest;
 import com.woopsion.woopsionaicodemother.model.vo.ChatHistoryVO;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -21,7 +21,24 @@ import java.util.List;
 public interface ChatHistoryService extends IService<ChatHistory> {
 
 
-    int loadChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount);
+    /**
+     * 从数据库加载历史对话，一次性写入对话记忆存储（覆盖原有内容）
+     *
+     * @param appId           应用id
+     * @param chatMemoryStore 对话记忆存储
+     * @param maxCount        最多加载的消息数
+     * @return 加载的消息数
+     */
+    int loadChatHistoryToMemory(Long appId, ChatMemoryStore chatMemoryStore, int maxCount);
+
+    /**
+     * 获取最近活跃的应用id，按最后一条消息的时间倒序
+     *
+     * @param since 起始时间
+     * @param limit 最多返回的应用数
+     * @return 应用id列表
+     */
+    List<Long> listRecentlyActiveAppIds(LocalDateTime since, int limit);
     /**
      * 添加对话消息
      *
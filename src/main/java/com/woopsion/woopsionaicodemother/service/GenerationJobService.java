@@ -0,0 +1,39 @@
+package com.woopsion.woopsionaicodemother.service;
+
+import com.mybatisflex.core.service.IService;
+import com.woopsion.woopsionaicodemother.entity.GenerationJob;
+import com.woopsion.woopsionaicodemother.entity.User;
+import com.woopsion.woopsionaicodemother.model.vo.GenerationJobVO;
+
+/**
+ * 生成任务 服务层。
+ *
+ * @author <a href="https://github.com/Woopsion">woopsion</a>
+ */
+public interface GenerationJobService extends IService<GenerationJob> {
+
+    /**
+     * 获取应用最近一次生成任务
+     *
+     * @param appId     应用id
+     * @param loginUser 登录用户
+     * @return 生成任务，没有时返回 null
+     */
+    GenerationJobVO getLatestJob(Long appId, User loginUser);
+
+    /**
+     * 将本节点未完成的任务标记为失败
+     * 服务重启后调用，这些任务的生成已随进程退出而中断
+     *
+     * @return 处理的任务数
+     */
+    int failUnfinishedJobs();
+
+    /**
+     * 获取生成任务封装
+     *
+     * @param generationJob 生成任务
+     * @return 生成任务视图
+     */
+    GenerationJobVO getGenerationJobVO(GenerationJob generationJob);
+}
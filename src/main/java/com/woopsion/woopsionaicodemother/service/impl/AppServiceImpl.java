@@ -4,6 +4,7 @@ import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.RandomUtil;
+import cn.hutool.core.util.ObjUtil;
 import cn.hutool.core.util.StrUtil;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.spring.service.impl.ServiceImpl;
@@ -11,7 +12,14 @@ import com.woopsion.woopsionaicodemother.ai.AiCodeGenTypeRoutingService;
 import com.woopsion.woopsionaicodemother.constant.AppConstant;
 import com.woopsion.woopsionaicodemother.core.AiCodeGeneratorFacade;
 import com.woopsion.woopsionaicodemother.core.builder.VueProjectBuilder;
+import com.woopsion.woopsionaicodemother.config.SseCoalesceConfig;
+import com.woopsion.woopsionaicodemother.core.generation.ChunkCoalescer;
+import com.woopsion.woopsionaicodemother.core.generation.GenerationEvent;
+import com.woopsion.woopsionaicodemother.core.generation.GenerationRegistry;
 import com.woopsion.woopsionaicodemother.core.handler.StreamHandlerExecutor;
+import com.woopsion.woopsionaicodemother.core.saver.CodeFileSaveQueue;
+import com.woopsion.woopsionaicodemother.core.snapshot.WorkspaceManifest;
+import com.woopsion.woopsionaicodemother.core.snapshot.WorkspaceSnapshotStore;
 import com.woopsion.woopsionaicodemother.entity.App;
 import com.woopsion.woopsionaicodemother.entity.User;
 import com.woopsion.woopsionaicodemother.exception.BusinessException;
@@ -22,8 +30,11 @@ import com.woopsion.woopsionaicodemother.model.dto.app.AppAddRequest;
 import com.woopsion.woopsionaicodemother.model.dto.app.AppQueryRequest;
 import com.woopsion.woopsionaicodemother.model.enums.ChatHistoryMessageTypeEnum;
 import com.woopsion.woopsionaicodemother.model.enums.CodeGenTypeEnum;
+import com.woopsion.woopsionaicodemother.model.message.StreamMessage;
 import com.woopsion.woopsionaicodemother.model.vo.AppVO;
 import com.woopsion.woopsionaicodemother.model.vo.UserVO;
+import com.woopsion.woopsionaicodemother.model.vo.WorkspaceFileChangeVO;
+import com.woopsion.woopsionaicodemother.model.vo.WorkspaceSnapshotVO;
 import com.woopsion.woopsionaicodemother.service.AppService;
 import com.woopsion.woopsionaicodemother.service.ChatHistoryService;
 import com.woopsion.woopsionaicodemother.service.ScreenshotService;
@@ -37,11 +48,17 @@ import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 
 import java.io.File;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 /**
@@ -79,6 +96,18 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
     @Resource
     private AiCodeGenTypeRoutingService aiCodeGenTypeRoutingService;
 
+    @Resource
+    private GenerationRegistry generationRegistry;
+
+    @Resource
+    private SseCoalesceConfig sseCoalesceConfig;
+
+    @Resource
+    private WorkspaceSnapshotStore workspaceSnapshotStore;
+
+    @Resource
+    private CodeFileSaveQueue codeFileSaveQueue;
+
     @Override
     public Long createApp(AppAddRequest appAddRequest, User loginUser) {
         // 参数校验
@@ -183,7 +212,7 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         });
     }
     @Override
-    public Flux<String> chatToGenCode(Long appId, String message, User loginUser) {
+    public Flux<GenerationEvent> chatToGenCode(Long appId, String message, User loginUser) {
         // 1. 参数校验
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
         ThrowUtils.throwIf(StrUtil.isBlank(message), ErrorCode.PARAMS_ERROR, "用户消息不能为空");
@@ -201,12 +230,126 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型");
         }
 
-        // 5. 通过校验后，添加用户消息到对话历史
-        chatHistoryService.addChatMessage(appId, message, ChatHistoryMessageTypeEnum.USER.getValue(), loginUser.getId());
-        // 6. 调用 AI 生成代码（流式）
-        Flux<String> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(message, codeGenTypeEnum, appId);
-        // 7. 收集 AI 响应内容并在完成后记录到对话历史
-        return streamHandlerExecutor.doExecute(codeStream, chatHistoryService, appId, loginUser, codeGenTypeEnum);
+        // 5. 同一应用同时只允许一次生成，重复请求附加到正在进行的生成上；超出并发上限时排队
+        // 排队时按应用优先级加权
+        int priority = ObjUtil.defaultIfNull(app.getPriority(), AppConstant.DEFAULT_APP_PRIORITY);
+        return generationRegistry.startOrAttach(appId, loginUser.getId(), priority, message, () -> {
+            // 6. 通过校验后，添加用户消息到对话历史
+            chatHistoryService.addChatMessage(appId, message, ChatHistoryMessageTypeEnum.USER.getValue(), loginUser.getId());
+            // 本轮生成会覆盖工作目录，先为上一轮的结果创建快照，在应用的保存通道中排在上一轮剩余的写入之后；失败不影响生成
+            // HTML 和多文件的写入也经过保存通道，快照异步执行即可排在本轮的第一个写入之前，不占用首个 token 之前的时间；
+            // Vue 项目由工具直接写入文件，不经过保存通道，等快照完成后再开始生成
+            CompletableFuture<Void> snapshotDone = codeFileSaveQueue.submitTask(codeGenTypeEnum, appId, "工作目录快照",
+                    () -> workspaceSnapshotStore.snapshot(appId, codeGenTypeEnum, message));
+            if (codeGenTypeEnum == CodeGenTypeEnum.VUE_PROJECT) {
+                try {
+                    snapshotDone.join();
+                } catch (CompletionException e) {
+                    log.warn("应用 {} 生成前创建快照失败: {}", appId, e.getMessage());
+                }
+            }
+            // 7. 调用 AI 生成代码（流式）
+            Flux<StreamMessage> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(message, codeGenTypeEnum, appId);
+            // 8. 收集 AI 响应内容并在完成后记录到对话历史
+            Flux<String> contentFlux = streamHandlerExecutor.doExecute(codeStream, chatHistoryService, appId, loginUser, codeGenTypeEnum);
+            // 9. 合并高频的小文本块，减少 SSE 帧数
+            if (!sseCoalesceConfig.isEnabled()) {
+                return contentFlux;
+            }
+            return ChunkCoalescer.coalesce(contentFlux, Duration.ofMillis(sseCoalesceConfig.getIntervalMs()),
+                    sseCoalesceConfig.getMaxChars());
+        });
+    }
+
+    @Override
+    public Flux<GenerationEvent> resumeGenCode(Long appId, String lastEventId, User loginUser) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
+        ThrowUtils.throwIf(StrUtil.isBlank(lastEventId), ErrorCode.PARAMS_ERROR, "Last-Event-ID 不能为空");
+        // 会话中记录了发起生成的用户，由注册表校验权限
+        return generationRegistry.resume(appId, loginUser.getId(), lastEventId);
+    }
+
+    @Override
+    public boolean cancelGenCode(Long appId, User loginUser) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
+        return generationRegistry.cancel(appId, loginUser.getId());
+    }
+
+    @Override
+    public List<WorkspaceSnapshotVO> listSnapshots(Long appId, User loginUser) {
+        App app = getOwnedApp(appId, loginUser);
+        return workspaceSnapshotStore.list(appId, getCodeGenType(app)).stream()
+                .map(manifest -> {
+                    WorkspaceSnapshotVO snapshotVO = new WorkspaceSnapshotVO();
+                    snapshotVO.setId(manifest.id());
+                    snapshotVO.setNote(manifest.note());
+                    snapshotVO.setFileCount(manifest.files().size());
+                    snapshotVO.setTotalSize(manifest.totalSize());
+                    snapshotVO.setCreateTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(manifest.createTime()), ZoneId.systemDefault()));
+                    return snapshotVO;
+                })
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<WorkspaceFileChangeVO> diffSnapshots(Long appId, Long fromId, Long toId, User loginUser) {
+        ThrowUtils.throwIf(fromId == null, ErrorCode.PARAMS_ERROR, "快照 ID 不能为空");
+        App app = getOwnedApp(appId, loginUser);
+        return workspaceSnapshotStore.diff(appId, getCodeGenType(app), fromId, toId).stream()
+                .map(change -> {
+                    WorkspaceFileChangeVO changeVO = new WorkspaceFileChangeVO();
+                    changeVO.setPath(change.path());
+                    changeVO.setChangeType(change.changeType());
+                    return changeVO;
+                })
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Long rollbackSnapshot(Long appId, Long snapshotId, User loginUser) {
+        ThrowUtils.throwIf(snapshotId == null, ErrorCode.PARAMS_ERROR, "快照 ID 不能为空");
+        App app = getOwnedApp(appId, loginUser);
+        CodeGenTypeEnum codeGenTypeEnum = getCodeGenType(app);
+        // 生成过程中工作目录正在被写入，不允许回滚；回滚期间不启动新的生成。
+        // 上一轮生成结束后仍可能有写入排在保存通道中，回滚同样在保存通道中执行，排在这些写入之后
+        WorkspaceManifest before = generationRegistry.runExclusive(appId, () -> {
+            AtomicReference<WorkspaceManifest> restored = new AtomicReference<>();
+            try {
+                codeFileSaveQueue.submitTask(codeGenTypeEnum, appId, "回滚到快照 " + snapshotId,
+                        () -> restored.set(workspaceSnapshotStore.restore(appId, codeGenTypeEnum, snapshotId))).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof BusinessException businessException) {
+                    throw businessException;
+                }
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "回滚工作目录失败: " + e.getCause().getMessage());
+            }
+            return restored.get();
+        });
+        // Vue 项目回滚后重新构建预览
+        if (codeGenTypeEnum == CodeGenTypeEnum.VUE_PROJECT) {
+            vueProjectBuilder.buildProjectAsync(AppConstant.CODE_OUTPUT_ROOT_DIR + File.separator
+                    + codeGenTypeEnum.getValue() + "_" + appId);
+        }
+        return before.id();
+    }
+
+    /**
+     * 查询应用并校验仅本人可以操作
+     */
+    private App getOwnedApp(Long appId, User loginUser) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
+        App app = this.getById(appId);
+        ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR, "应用不存在");
+        if (!app.getUserId().equals(loginUser.getId())) {
+            throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "无权限操作该应用");
+        }
+        return app;
+    }
+
+    private CodeGenTypeEnum getCodeGenType(App app) {
+        CodeGenTypeEnum codeGenTypeEnum = CodeGenTypeEnum.getEnumByValue(app.getCodeGenType());
+        ThrowUtils.throwIf(codeGenTypeEnum == null, ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型");
+        return codeGenTypeEnum;
     }
 
 
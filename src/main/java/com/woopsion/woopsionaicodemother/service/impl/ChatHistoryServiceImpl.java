@@ -5,6 +5,7 @@ import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.util.StrUtil;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.spring.service.impl.ServiceImpl;
+import com.woopsion.woopsionaicodemother.ai.memory.CodeReferences;
 import com.woopsion.woopsionaicodemother.constant.UserConstant;
 import com.woopsion.woopsionaicodemother.entity.App;
 import com.woopsion.woopsionaicodemother.entity.ChatHistory;
@@ -22,7 +23,9 @@ import com.woopsion.woopsionaicodemother.service.AppService;
 import com.woopsion.woopsionaicodemother.service.ChatHistoryService;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.UserMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
@@ -46,8 +49,11 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
     @Lazy
     AppService appService;
 
+    @Resource
+    private ChatMemoryStore redisChatMemoryStore;
+
     @Override
-    public int loadChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount) {
+    public int loadChatHistoryToMemory(Long appId, ChatMemoryStore chatMemoryStore, int maxCount) {
         try {
             // 直接构造查询条件，起始点为 1 而不是 0，用于排除最新的用户消息
             QueryWrapper queryWrapper = QueryWrapper.create()
@@ -60,19 +66,18 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
             }
             // 反转列表，确保按时间正序（老的在前，新的在后）
             historyList = historyList.reversed();
-            // 按时间顺序添加到记忆中
-            int loadedCount = 0;
-            // 先清理历史缓存，防止重复加载
-            chatMemory.clear();
+            List<ChatMessage> messages = new ArrayList<>(historyList.size());
             for (ChatHistory history : historyList) {
                 if (ChatHistoryMessageTypeEnum.USER.getValue().equals(history.getMessageType())) {
-                    chatMemory.add(UserMessage.from(history.getMessage()));
-                    loadedCount++;
+                    messages.add(UserMessage.from(history.getMessage()));
                 } else if (ChatHistoryMessageTypeEnum.AI.getValue().equals(history.getMessageType())) {
-                    chatMemory.add(AiMessage.from(history.getMessage()));
-                    loadedCount++;
+                    // 代码替换为文件引用，当前内容在请求时注入
+                    messages.add(CodeReferences.strip(AiMessage.from(history.getMessage())));
                 }
             }
+            // 一次性覆盖写入，避免逐条添加时每条消息都重写一次存储
+            chatMemoryStore.updateMessages(appId, messages);
+            int loadedCount = messages.size();
             log.info("成功为 appId: {} 加载了 {} 条历史对话", appId, loadedCount);
             return loadedCount;
         } catch (Exception e) {
@@ -82,6 +87,16 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         }
     }
 
+    @Override
+    public List<Long> listRecentlyActiveAppIds(LocalDateTime since, int limit) {
+        QueryWrapper queryWrapper = QueryWrapper.create()
+                .select(ChatHistory::getAppId)
+                .ge(ChatHistory::getCreateTime, since)
+                .groupBy(ChatHistory::getAppId)
+                .orderBy("max(createTime) desc")
+                .limit(limit);
+        return this.objListAs(queryWrapper, Long.class);
+    }
 
     @Override
     public boolean addChatMessage(Long appId, String message, String messageType, Long userId) {
@@ -216,6 +231,8 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         long count = this.count(queryWrapper);
         // 执行逻辑删除
         boolean result = this.remove(queryWrapper);
+        // 对话历史删除后，Redis 中的对话记忆也一并删除，本地缓存的淘汰不会删除记忆
+        redisChatMemoryStore.deleteMessages(appId);
         return result ? (int) count : 0;
     }
 
@@ -0,0 +1,197 @@
+package com.woopsion.woopsionaicodemother.service.impl;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.core.util.StrUtil;
+import com.mybatisflex.core.query.QueryWrapper;
+import com.mybatisflex.spring.service.impl.ServiceImpl;
+import com.woopsion.woopsionaicodemother.config.GenerationJobConfig;
+import com.woopsion.woopsionaicodemother.core.generation.GenerationJobListener;
+import com.woopsion.woopsionaicodemother.core.generation.GenerationSession;
+import com.woopsion.woopsionaicodemother.entity.App;
+import com.woopsion.woopsionaicodemother.entity.GenerationJob;
+import com.woopsion.woopsionaicodemother.entity.User;
+import com.woopsion.woopsionaicodemother.exception.BusinessException;
+import com.woopsion.woopsionaicodemother.exception.ErrorCode;
+import com.woopsion.woopsionaicodemother.exception.ThrowUtils;
+import com.woopsion.woopsionaicodemother.mapper.GenerationJobMapper;
+import com.woopsion.woopsionaicodemother.model.enums.GenerationJobStatusEnum;
+import com.woopsion.woopsionaicodemother.model.vo.GenerationJobVO;
+import com.woopsion.woopsionaicodemother.service.AppService;
+import com.woopsion.woopsionaicodemother.service.GenerationJobService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 生成任务 服务层实现。
+ * 同时作为生成任务生命周期监听器，将会话状态变化持久化。
+ * 未完成的任务由所属节点定期更新心跳（updateTime），节点启动时清理自己遗留的任务；
+ * 节点标识变化或节点下线后，任意节点把心跳超时的任务标记为失败
+ *
+ * @author <a href="https://github.com/Woopsion">woopsion</a>
+ */
+@Service
+@Slf4j
+public class GenerationJobServiceImpl extends ServiceImpl<GenerationJobMapper, GenerationJob>
+        implements GenerationJobService, GenerationJobListener {
+
+    /**
+     * 失败原因最大长度，与表字段一致
+     */
+    private static final int MAX_ERROR_MESSAGE_LENGTH = 1024;
+
+    private static final List<String> UNFINISHED_STATUSES = List.of(GenerationJobStatusEnum.QUEUED.getValue(),
+            GenerationJobStatusEnum.RUNNING.getValue());
+
+    @Autowired
+    @Lazy
+    private AppService appService;
+
+    @Resource
+    private GenerationJobConfig generationJobConfig;
+
+    /**
+     * 当前节点标识
+     */
+    private String nodeId;
+
+    @PostConstruct
+    public void init() {
+        nodeId = StrUtil.blankToDefault(generationJobConfig.getNodeId(), NetUtil.getLocalHostName());
+    }
+
+    @Override
+    public void onQueued(GenerationSession session) {
+        GenerationJob generationJob = GenerationJob.builder()
+                .id(session.getSessionId())
+                .appId(session.getAppId())
+                .userId(session.getUserId())
+                .message(session.getMessage())
+                .status(GenerationJobStatusEnum.QUEUED.getValue())
+                .nodeId(nodeId)
+                .build();
+        this.save(generationJob);
+    }
+
+    @Override
+    public void onRunning(GenerationSession session) {
+        GenerationJob generationJob = new GenerationJob();
+        generationJob.setId(session.getSessionId());
+        generationJob.setStatus(GenerationJobStatusEnum.RUNNING.getValue());
+        generationJob.setStartTime(LocalDateTime.now());
+        this.updateById(generationJob);
+    }
+
+    @Override
+    public void onCompleted(GenerationSession session) {
+        GenerationJob generationJob = new GenerationJob();
+        generationJob.setId(session.getSessionId());
+        generationJob.setStatus(GenerationJobStatusEnum.COMPLETED.getValue());
+        generationJob.setEndTime(LocalDateTime.now());
+        this.updateById(generationJob);
+    }
+
+    @Override
+    public void onFailed(GenerationSession session, Throwable error) {
+        GenerationJob generationJob = new GenerationJob();
+        generationJob.setId(session.getSessionId());
+        generationJob.setStatus(GenerationJobStatusEnum.FAILED.getValue());
+        generationJob.setErrorMessage(StrUtil.maxLength(StrUtil.nullToDefault(error.getMessage(), error.getClass().getSimpleName()),
+                MAX_ERROR_MESSAGE_LENGTH - 3));
+        generationJob.setEndTime(LocalDateTime.now());
+        this.updateById(generationJob);
+    }
+
+    @Override
+    public GenerationJobVO getLatestJob(Long appId, User loginUser) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
+        App app = appService.getById(appId);
+        ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR, "应用不存在");
+        if (!app.getUserId().equals(loginUser.getId())) {
+            throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "无权限查看该应用的生成任务");
+        }
+        QueryWrapper queryWrapper = QueryWrapper.create()
+                .eq(GenerationJob::getAppId, appId)
+                .orderBy(GenerationJob::getCreateTime, false)
+                .limit(1);
+        return getGenerationJobVO(this.getOne(queryWrapper));
+    }
+
+    /**
+     * 服务启动完成后，清理上次进程遗留的未完成任务
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        failUnfinishedJobs();
+    }
+
+    @Override
+    public int failUnfinishedJobs() {
+        try {
+            QueryWrapper queryWrapper = QueryWrapper.create()
+                    .eq(GenerationJob::getNodeId, nodeId)
+                    .in(GenerationJob::getStatus, UNFINISHED_STATUSES);
+            int count = this.getMapper().updateByQuery(failedJob("服务重启，生成已中断"), queryWrapper);
+            if (count > 0) {
+                log.warn("节点 {} 有 {} 个未完成的生成任务，已标记为失败", nodeId, count);
+            }
+            return count;
+        } catch (Exception e) {
+            log.error("清理未完成的生成任务失败: {}", e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    /**
+     * 更新本节点未完成任务的心跳，并把心跳超时的任务标记为失败
+     * 每分钟执行一次
+     */
+    @Scheduled(fixedDelay = 60_000, initialDelay = 60_000)
+    public void heartbeatAndFailStaleJobs() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            GenerationJob heartbeat = new GenerationJob();
+            heartbeat.setUpdateTime(now);
+            this.getMapper().updateByQuery(heartbeat, QueryWrapper.create()
+                    .eq(GenerationJob::getNodeId, nodeId)
+                    .in(GenerationJob::getStatus, UNFINISHED_STATUSES));
+            QueryWrapper staleQuery = QueryWrapper.create()
+                    .in(GenerationJob::getStatus, UNFINISHED_STATUSES)
+                    .lt(GenerationJob::getUpdateTime, now.minusMinutes(generationJobConfig.getStaleMinutes()));
+            int count = this.getMapper().updateByQuery(failedJob("执行节点已下线，生成已中断"), staleQuery);
+            if (count > 0) {
+                log.warn("有 {} 个生成任务的执行节点已超时未更新，已标记为失败", count);
+            }
+        } catch (Exception e) {
+            log.error("更新生成任务心跳失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private static GenerationJob failedJob(String errorMessage) {
+        GenerationJob generationJob = new GenerationJob();
+        generationJob.setStatus(GenerationJobStatusEnum.FAILED.getValue());
+        generationJob.setErrorMessage(errorMessage);
+        generationJob.setEndTime(LocalDateTime.now());
+        return generationJob;
+    }
+
+    @Override
+    public GenerationJobVO getGenerationJobVO(GenerationJob generationJob) {
+        if (generationJob == null) {
+            return null;
+        }
+        GenerationJobVO generationJobVO = new GenerationJobVO();
+        BeanUtil.copyProperties(generationJob, generationJobVO);
+        return generationJobVO;
+    }
+}
@@ -0,0 +1,49 @@
+package com.woopsion.woopsionaicodemother.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Policy;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineStatsCounter;
+
+/**
+ * 缓存监控工具类
+ * 构建记录统计信息的 Caffeine 缓存，并导出为监控指标（tag cache=缓存名称）：
+ * <ul>
+ *   <li>cache.gets：命中和未命中次数（result=hit/miss）</li>
+ *   <li>cache.loads：加载耗时（result=success/failure）</li>
+ *   <li>cache.evictions：按原因（cause）统计的淘汰次数和淘汰的权重</li>
+ *   <li>cache.size、cache.hit.ratio：当前条目数、累计命中率</li>
+ *   <li>cache.weight：按权重限制大小的缓存的当前总权重</li>
+ * </ul>
+ *
+ * @author <a href="https://github.com/Woopsion">woopsion</a>
+ */
+public class CacheMetricsUtils {
+
+    /**
+     * 构建缓存并注册监控指标
+     *
+     * @param builder       缓存配置
+     * @param meterRegistry 指标注册表
+     * @param cacheName     缓存名称
+     * @return 缓存
+     */
+    public static <K, V> Cache<K, V> buildWithMetrics(Caffeine<K, V> builder, MeterRegistry meterRegistry, String cacheName) {
+        CaffeineStatsCounter statsCounter = new CaffeineStatsCounter(meterRegistry, cacheName);
+        Cache<K, V> cache = builder.recordStats(() -> statsCounter).build();
+        statsCounter.registerSizeMetric(cache);
+        Gauge.builder("cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .tag("cache", cacheName)
+                .description("缓存累计命中率")
+                .register(meterRegistry);
+        cache.policy().eviction()
+                .filter(Policy.Eviction::isWeighted)
+                .ifPresent(eviction -> Gauge.builder("cache.weight", eviction, e -> e.weightedSize().orElse(0))
+                        .tag("cache", cacheName)
+                        .description("缓存当前的总权重")
+                        .register(meterRegistry));
+        return cache;
+    }
+}
@@ -106,11 +106,12 @@ public class VirtualThreadExecutor implements ExecutorService {
 
     /**
      * 包装 Runnable，传递 MDC
+     * 包内可见，供基准测试（src/jmh）直接调用
      *
      * @param task 原始任务
      * @return 包装后的任务
      */
-    private Runnable wrapWithMdc(Runnable task) {
+    Runnable wrapWithMdc(Runnable task) {
         Map<String, String> contextMap = MdcUtils.getCopyOfContextMap();
         int taskId = taskCounter.incrementAndGet();
         
@@ -2,6 +2,7 @@ package com.woopsion.woopsionaicodemother.ai;
 
 import com.woopsion.woopsionaicodemother.ai.model.HtmlCodeResult;
 import com.woopsion.woopsionaicodemother.ai.model.MultiFileCodeResult;
+import com.woopsion.woopsionaicodemother.model.enums.CodeGenTypeEnum;
 import jakarta.annotation.Resource;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -13,18 +14,20 @@ import static org.junit.jupiter.api.Assertions.*;
 class AiCodeGeneratorServiceTest {
 
     @Resource
-    private AiCodeGeneratorService aiCodeGeneratorService;
+    private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
 
 
     @Test
     void generateHtmlCode() {
-        HtmlCodeResult result = aiCodeGeneratorService.generateHtmlCode("做个 校园跑腿的网站 代码不超过 20 行");
+        HtmlCodeResult result = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(CodeGenTypeEnum.HTML)
+                .generateHtmlCode(1L, "做个 校园跑腿的网站 代码不超过 20 行");
         Assertions.assertNotNull(result);
     }
 
     @Test
     void generateMultiFileCode() {
-        MultiFileCodeResult result = aiCodeGeneratorService.generateMultiFileCode("做个ai百科问答的网站 代码不超过 50 行");
+        MultiFileCodeResult result = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(CodeGenTypeEnum.MULTI_FILE)
+                .generateMultiFileCode(1L, "做个ai百科问答的网站 代码不超过 50 行");
         Assertions.assertNotNull(result);
     }
 }
\ No newline at end of file
@@ -0,0 +1,221 @@
+package com.woopsion.woopsionaicodemother.ai.memory;
+
+import com.github.fppt.jedismock.RedisServer;
+import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.JedisPooled;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 追加写入存储的兼容性测试，使用 jedis-mock 作为本地 Redis 替身。
+ * 参照行为是被替换的 langchain4j RedisChatMemoryStore，连接同一个 Redis 替身（键不同，互不影响）
+ */
+class AppendOnlyRedisChatMemoryStoreTest {
+
+    private static final long TTL_SECONDS = 3600;
+
+    private RedisServer redisServer;
+
+    private JedisPooled jedis;
+
+    private MeterRegistry meterRegistry;
+
+    private AppendOnlyRedisChatMemoryStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        redisServer = RedisServer.newRedisServer().start();
+        jedis = new JedisPooled(redisServer.getHost(), redisServer.getBindPort());
+        meterRegistry = new SimpleMeterRegistry();
+        store = newStore();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        jedis.close();
+        redisServer.stop();
+    }
+
+    @Test
+    void behavesLikeReferenceStore() {
+        RedisChatMemoryStore reference = RedisChatMemoryStore.builder()
+                .host(redisServer.getHost())
+                .port(redisServer.getBindPort())
+                .ttl(TTL_SECONDS)
+                .build();
+        assertEquals(reference.getMessages(1L), store.getMessages(1L));
+        List<ChatMessage> messages = new ArrayList<>();
+        messages.add(SystemMessage.from("你是前端工程师"));
+        for (int i = 0; i < 6; i++) {
+            messages.add(UserMessage.from("需求 " + i));
+            ToolExecutionRequest request = ToolExecutionRequest.builder()
+                    .id("call-" + i).name("writeFile").arguments("{\"relativeFilePath\":\"a.vue\"}").build();
+            messages.add(AiMessage.from("好的", List.of(request)));
+            messages.add(ToolExecutionResultMessage.from(request, "文件写入成功"));
+            messages.add(AiMessage.from("完成 " + i + "：" + "页面".repeat(300)));
+            applyBoth(reference, 1L, messages);
+        }
+        // 淘汰开头的消息
+        messages.subList(1, 5).clear();
+        applyBoth(reference, 1L, messages);
+        // 内容整体变化（压缩为摘要）
+        List<ChatMessage> summarized = new ArrayList<>(messages.subList(0, 1));
+        summarized.add(UserMessage.from("【历史对话摘要】…"));
+        summarized.addAll(messages.subList(messages.size() - 4, messages.size()));
+        applyBoth(reference, 1L, summarized);
+        // 不同的记忆互不影响
+        applyBoth(reference, 2L, List.of(UserMessage.from("另一个应用")));
+        assertEquals(reference.getMessages(1L), store.getMessages(1L));
+        // 删除
+        store.deleteMessages(1L);
+        reference.deleteMessages(1L);
+        store.deleteMessages(2L);
+        reference.deleteMessages(2L);
+        assertEquals(reference.getMessages(1L), store.getMessages(1L));
+        assertEquals(reference.getMessages(2L), store.getMessages(2L));
+        // 原存储不接受空列表，这里更新为空等同于清空
+        store.updateMessages(3L, List.of(UserMessage.from("x")));
+        store.updateMessages(3L, List.of());
+        assertTrue(newStore().getMessages(3L).isEmpty());
+    }
+
+    @Test
+    void appendOnlyWritesNewMessages() {
+        List<ChatMessage> messages = new ArrayList<>(List.of(UserMessage.from("你好"), AiMessage.from("你好！")));
+        store.updateMessages(1L, messages);
+        byte[] key = "chat_memory:{1}".getBytes(StandardCharsets.UTF_8);
+        // 篡改第一条消息的存储内容，只追加时不会被重写
+        jedis.lset(key, 0, jsonEntry(UserMessage.from("原有内容")));
+        messages = new ArrayList<>(store.getMessages(1L));
+        messages.add(UserMessage.from("再来一个"));
+        store.updateMessages(1L, messages);
+        List<ChatMessage> stored = newStore().getMessages(1L);
+        assertEquals(3, stored.size());
+        assertEquals(UserMessage.from("原有内容"), stored.get(0));
+        assertEquals(UserMessage.from("再来一个"), stored.get(2));
+    }
+
+    @Test
+    void compressLargeMessagesAndRefreshTtl() {
+        AiMessage large = AiMessage.from("<div></div>".repeat(500));
+        store.updateMessages(1L, List.of(UserMessage.from("做个页面"), large));
+        byte[] key = "chat_memory:{1}".getBytes(StandardCharsets.UTF_8);
+        List<byte[]> entries = jedis.lrange(key, 0, -1);
+        assertEquals(0, entries.get(0)[0]);
+        assertEquals(1, entries.get(1)[0]);
+        assertTrue(entries.get(1).length < ChatMessageSerializer.messageToJson(large).length());
+        assertEquals(List.of(UserMessage.from("做个页面"), large), store.getMessages(1L));
+        assertTrue(jedis.ttl(key) > 0);
+        jedis.persist(key);
+        store.updateMessages(1L, List.of(UserMessage.from("做个页面"), large, UserMessage.from("改颜色")));
+        assertTrue(jedis.ttl(key) > 0);
+    }
+
+    @Test
+    void rewriteWhenModifiedByAnotherNode() {
+        AppendOnlyRedisChatMemoryStore otherNode = newStore();
+        store.updateMessages(1L, List.of(UserMessage.from("a")));
+        List<ChatMessage> stale = new ArrayList<>(store.getMessages(1L));
+        otherNode.getMessages(1L);
+        otherNode.updateMessages(1L, List.of(UserMessage.from("b"), AiMessage.from("c")));
+        // 本节点基于过期的状态更新，版本号不一致，改为整体重写
+        stale.add(AiMessage.from("d"));
+        store.updateMessages(1L, stale);
+        assertEquals(List.of(UserMessage.from("a"), AiMessage.from("d")), otherNode.getMessages(1L));
+    }
+
+    @Test
+    void staleSnapshotIsRewrittenAfterKeysExpire() throws InterruptedException {
+        AppendOnlyRedisChatMemoryStore otherNode = newStore();
+        store.updateMessages(1L, List.of(UserMessage.from("a")));
+        List<ChatMessage> stale = new ArrayList<>(store.getMessages(1L));
+        jedis.pexpire("chat_memory:{1}", 1);
+        jedis.pexpire("chat_memory:{1}:ver", 1);
+        while (jedis.exists("chat_memory:{1}") || jedis.exists("chat_memory:{1}:ver")) {
+            Thread.sleep(1);
+        }
+        // 过期后其他节点从头写入一次，计数与本节点过期前的计数相同
+        assertTrue(otherNode.getMessages(1L).isEmpty());
+        otherNode.updateMessages(1L, List.of(UserMessage.from("b")));
+        // 纪元不同，本节点基于过期前的状态追加时改为整体重写，不会接在其他节点的消息后面
+        stale.add(AiMessage.from("d"));
+        store.updateMessages(1L, stale);
+        assertEquals(List.of(UserMessage.from("a"), AiMessage.from("d")), newStore().getMessages(1L));
+    }
+
+    @Test
+    void nextVersionKeepsEpoch() {
+        String first = AppendOnlyRedisChatMemoryStore.nextVersion(null);
+        assertTrue(first.endsWith(".1"));
+        assertEquals(first.substring(0, first.length() - 1) + "2", AppendOnlyRedisChatMemoryStore.nextVersion(first));
+        assertNotEquals(first, AppendOnlyRedisChatMemoryStore.nextVersion(null));
+    }
+
+    @Test
+    void readWindowFromLocalCacheWhileVersionUnchanged() {
+        store.updateMessages(1L, List.of(UserMessage.from("你好"), AiMessage.from("你好！")));
+        byte[] key = "chat_memory:{1}".getBytes(StandardCharsets.UTF_8);
+        // 版本号未变化时不重新读取消息
+        jedis.lset(key, 0, jsonEntry(UserMessage.from("原有内容")));
+        assertEquals(UserMessage.from("你好"), store.getMessages(1L).get(0));
+        // 版本号变化后重新读取
+        jedis.set("chat_memory:{1}:ver", "other.1");
+        assertEquals(UserMessage.from("原有内容"), store.getMessages(1L).get(0));
+        // 过期后重新读取
+        jedis.del("chat_memory:{1}", "chat_memory:{1}:ver");
+        assertTrue(store.getMessages(1L).isEmpty());
+        assertTrue(meterRegistry.get("cache.size").tag("cache", "chat_memory_window").gauge().value() >= 1);
+    }
+
+    @Test
+    void estimateWeightGrowsWithWindowSize() {
+        int small = AppendOnlyRedisChatMemoryStore.estimateWeight(new String[]{"{}"});
+        int large = AppendOnlyRedisChatMemoryStore.estimateWeight(new String[]{"{}", "x".repeat(10_000)});
+        assertTrue(large > small + 20_000);
+    }
+
+    @Test
+    void findTrim() {
+        assertEquals(0, AppendOnlyRedisChatMemoryStore.findTrim(new long[]{1, 2}, new long[]{1, 2, 3}));
+        assertEquals(1, AppendOnlyRedisChatMemoryStore.findTrim(new long[]{1, 2, 3}, new long[]{2, 3, 4}));
+        assertEquals(3, AppendOnlyRedisChatMemoryStore.findTrim(new long[]{1, 2, 3}, new long[]{5, 6}));
+        assertEquals(0, AppendOnlyRedisChatMemoryStore.findTrim(new long[]{}, new long[]{1}));
+    }
+
+    private AppendOnlyRedisChatMemoryStore newStore() {
+        return new AppendOnlyRedisChatMemoryStore(jedis, TTL_SECONDS, 256, 64L * 1024 * 1024, meterRegistry);
+    }
+
+    private void applyBoth(ChatMemoryStore reference, Object memoryId, List<ChatMessage> messages) {
+        // 与 ChatMemory 的用法一致：先读取再更新
+        assertEquals(reference.getMessages(memoryId), store.getMessages(memoryId));
+        reference.updateMessages(memoryId, new ArrayList<>(messages));
+        store.updateMessages(memoryId, new ArrayList<>(messages));
+        assertEquals(reference.getMessages(memoryId), store.getMessages(memoryId));
+    }
+
+    private static byte[] jsonEntry(ChatMessage message) {
+        byte[] json = ChatMessageSerializer.messageToJson(message).getBytes(StandardCharsets.UTF_8);
+        byte[] entry = new byte[json.length + 1];
+        System.arraycopy(json, 0, entry, 1, json.length);
+        return entry;
+    }
+}
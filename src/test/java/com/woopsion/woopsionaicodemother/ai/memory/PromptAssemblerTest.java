@@ -0,0 +1,91 @@
+package com.woopsion.woopsionaicodemother.ai.memory;
+
+import cn.hutool.core.io.FileUtil;
+import com.woopsion.woopsionaicodemother.core.generation.GenerationMetrics;
+import com.woopsion.woopsionaicodemother.model.enums.CodeGenTypeEnum;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PromptAssemblerTest {
+
+    private static final long APP_ID = 9_000_000_018L;
+
+    private static final TokenCountEstimator LENGTH_ESTIMATOR = new TokenCountEstimator() {
+        @Override
+        public int estimateTokenCountInText(String text) {
+            return text.length();
+        }
+
+        @Override
+        public int estimateTokenCountInMessage(ChatMessage message) {
+            return message.toString().length();
+        }
+
+        @Override
+        public int estimateTokenCountInMessages(Iterable<ChatMessage> messages) {
+            int count = 0;
+            for (ChatMessage message : messages) {
+                count += estimateTokenCountInMessage(message);
+            }
+            return count;
+        }
+    };
+
+    private final Path workspaceDir = CurrentFilesInjector.getWorkspaceDir(APP_ID, CodeGenTypeEnum.VUE_PROJECT);
+
+    @AfterEach
+    void tearDown() {
+        FileUtil.del(workspaceDir);
+    }
+
+    @Test
+    void freezeCurrentFilesWithinTurn() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PromptAssembler promptAssembler = new PromptAssembler(APP_ID, CodeGenTypeEnum.VUE_PROJECT, new GenerationMetrics(meterRegistry));
+        TokenBudgetChatMemory memory = new TokenBudgetChatMemory(APP_ID, 100_000, 1000,
+                new InMemoryChatMemoryStore(), LENGTH_ESTIMATOR, promptAssembler);
+        FileUtil.writeString("<template>v1</template>", workspaceDir.resolve("src/App.vue").toFile(), StandardCharsets.UTF_8);
+        memory.add(SystemMessage.from("你是前端工程师"));
+        memory.add(UserMessage.from("把标题改成红色"));
+        List<ChatMessage> first = memory.messages();
+        assertInstanceOf(SystemMessage.class, first.get(0));
+        assertTrue(((UserMessage) first.get(1)).singleText().contains("v1"));
+
+        // 工具写入文件后续写，本轮的请求前缀不变
+        ToolExecutionRequest request = ToolExecutionRequest.builder().id("1").name("writeFile").arguments("{}").build();
+        memory.add(AiMessage.from(List.of(request)));
+        FileUtil.writeString("<template>v2</template>", workspaceDir.resolve("src/App.vue").toFile(), StandardCharsets.UTF_8);
+        memory.add(ToolExecutionResultMessage.from(request, "文件写入成功"));
+        List<ChatMessage> followUp = memory.messages();
+        assertEquals(first, followUp.subList(0, first.size()));
+        memory.add(AiMessage.from("已修改"));
+
+        // 新一轮读取最新的文件，记忆中不保存文件内容
+        memory.add(UserMessage.from("再加一个按钮"));
+        List<ChatMessage> second = memory.messages();
+        assertTrue(((UserMessage) second.getLast()).singleText().contains("v2"));
+        assertEquals(UserMessage.from("把标题改成红色"), second.get(1));
+        assertEquals(1.0, meterRegistry.get("ai.prompt.prefix").tag("result", "stable").counter().count());
+    }
+
+    @Test
+    void systemMessageFirst() {
+        List<ChatMessage> ordered = PromptAssembler.order(List.of(UserMessage.from("a"), SystemMessage.from("s"), AiMessage.from("b")));
+        assertEquals(List.of(SystemMessage.from("s"), UserMessage.from("a"), AiMessage.from("b")), ordered);
+    }
+}
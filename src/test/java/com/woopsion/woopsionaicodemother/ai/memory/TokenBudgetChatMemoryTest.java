@@ -0,0 +1,120 @@
+package com.woopsion.woopsionaicodemother.ai.memory;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBudgetChatMemoryTest {
+
+    /**
+     * 按字符数估算 token，便于构造测试数据
+     */
+    private static final TokenCountEstimator LENGTH_ESTIMATOR = new TokenCountEstimator() {
+        @Override
+        public int estimateTokenCountInText(String text) {
+            return text.length();
+        }
+
+        @Override
+        public int estimateTokenCountInMessage(ChatMessage message) {
+            return message.toString().length();
+        }
+
+        @Override
+        public int estimateTokenCountInMessages(Iterable<ChatMessage> messages) {
+            int count = 0;
+            for (ChatMessage message : messages) {
+                count += estimateTokenCountInMessage(message);
+            }
+            return count;
+        }
+    };
+
+    @Test
+    void compactOlderTurnsIntoSummary() {
+        TokenBudgetChatMemory memory = new TokenBudgetChatMemory(1L, 2000, 500, new InMemoryChatMemoryStore(), LENGTH_ESTIMATOR);
+        memory.add(SystemMessage.from("你是前端工程师"));
+        for (int i = 0; i < 10; i++) {
+            memory.add(UserMessage.from("需求 " + i + "：" + "页面需要有导航栏和轮播图。".repeat(20)));
+            memory.add(AiMessage.from("第 " + i + " 版页面\n```html\n" + "<div></div>".repeat(20) + "\n```"));
+        }
+        List<ChatMessage> messages = memory.messages();
+        assertTrue(LENGTH_ESTIMATOR.estimateTokenCountInMessages(messages) <= 2000);
+        assertInstanceOf(SystemMessage.class, messages.get(0));
+        assertTrue(ChatMemorySummarizer.isSummary(messages.get(1)));
+        String summary = ((UserMessage) messages.get(1)).singleText();
+        // 滚动摘要超出长度时丢弃最早的轮次
+        assertTrue(summary.length() <= 500);
+        assertFalse(summary.contains("需求 0"));
+        assertTrue(summary.contains("需求 "));
+        assertFalse(summary.contains("<div>"));
+        // 最近一轮保持原样，代码替换为文件引用
+        assertTrue(((UserMessage) messages.get(messages.size() - 2)).singleText().startsWith("需求 9"));
+        String lastReply = ((AiMessage) messages.get(messages.size() - 1)).text();
+        assertTrue(lastReply.contains("[代码已写入 index.html，sha256:"));
+        assertFalse(lastReply.contains("<div>"));
+    }
+
+    @Test
+    void keepToolCallsWithTheirTurn() {
+        TokenBudgetChatMemory memory = new TokenBudgetChatMemory(1L, 1500, 4000, new InMemoryChatMemoryStore(), LENGTH_ESTIMATOR);
+        for (int i = 0; i < 6; i++) {
+            memory.add(UserMessage.from("修改 " + i + "：" + "调整按钮样式。".repeat(30)));
+            ToolExecutionRequest request = ToolExecutionRequest.builder()
+                    .id("call-" + i)
+                    .name("writeFile")
+                    .arguments("{\"relativeFilePath\":\"src/App" + i + ".vue\",\"content\":\"" + "x".repeat(200) + "\"}")
+                    .build();
+            memory.add(AiMessage.from(request));
+            memory.add(ToolExecutionResultMessage.from(request, "文件写入成功"));
+            memory.add(AiMessage.from("完成 " + i));
+        }
+        List<ChatMessage> messages = memory.messages();
+        // 摘要和应答之后从一轮完整的对话开始
+        assertTrue(ChatMemorySummarizer.isSummary(messages.get(0)));
+        assertInstanceOf(UserMessage.class, messages.get(2));
+        String summary = ((UserMessage) messages.get(0)).singleText();
+        assertTrue(summary.contains("src/App0.vue"));
+        for (int i = 0; i < messages.size(); i++) {
+            if (messages.get(i) instanceof ToolExecutionResultMessage) {
+                AiMessage toolCall = (AiMessage) messages.get(i - 1);
+                assertTrue(toolCall.hasToolExecutionRequests());
+                // 工具参数中的文件内容替换为引用，调用 ID 不变
+                assertTrue(toolCall.toolExecutionRequests().get(0).arguments().contains("sha256:"));
+                assertFalse(toolCall.toolExecutionRequests().get(0).arguments().contains("xxxx"));
+            }
+        }
+    }
+
+    @Test
+    void stripCodeFromHistoryText() {
+        String history = "修改完成\n\n[工具调用] 写入文件 src/App.vue\n```vue\n<template></template>\n```\n\n```css\nbody {}\n```";
+        String stripped = CodeReferences.stripText(history);
+        assertEquals("修改完成\n\n[工具调用] 写入文件 src/App.vue\n"
+                + CodeReferences.reference("src/App.vue", "<template></template>") + "\n\n"
+                + CodeReferences.reference("style.css", "body {}"), stripped);
+    }
+
+    @Test
+    void summarizeReplacesCodeBlocks() {
+        String reply = "好的\n\n[工具调用] 写入文件 src/App.vue\n```vue\n<template>写入文件 fake.js</template>\n```\n完成";
+        String summary = ChatMemorySummarizer.summarize(null,
+                List.of(UserMessage.from("做一个首页"), AiMessage.from(reply)), 10_000);
+        List<String> lines = List.of(summary.split("\n"));
+        assertTrue(lines.get(0).startsWith(ChatMemorySummarizer.SUMMARY_PREFIX));
+        assertEquals("- 用户：做一个首页", lines.get(1));
+        // 代码块只保留语言标记，代码中的文字不计入写入的文件
+        assertEquals("- AI：好的 [工具调用] 写入文件 src/App.vue [vue 代码] 完成", lines.get(2));
+        assertEquals("涉及文件：src/App.vue", lines.get(3));
+    }
+}
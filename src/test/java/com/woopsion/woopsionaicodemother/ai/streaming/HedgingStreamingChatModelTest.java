@@ -0,0 +1,251 @@
+package com.woopsion.woopsionaicodemother.ai.streaming;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 使用本地的 OpenAI 兼容模拟服务测试对冲、故障转移和熔断
+ */
+class HedgingStreamingChatModelTest {
+
+    private final List<MockServer> servers = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        servers.forEach(server -> server.httpServer.stop(0));
+    }
+
+    @Test
+    void hedgeWhenPrimaryIsSlow() throws Exception {
+        MockServer primary = startServer("主端点", 3000, 200);
+        MockServer secondary = startServer("备用端点", 0, 200);
+        HedgingStreamingChatModel model = hedging(primary, secondary, Duration.ofMillis(300));
+        long start = System.nanoTime();
+        Result result = chat(model);
+        assertEquals("备用端点的回答", result.text());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2500);
+        assertEquals(1, primary.requests.get());
+        assertEquals(1, secondary.requests.get());
+    }
+
+    @Test
+    void reportWinnerAndDropLoser() throws Exception {
+        MockServer primary = startServer("主端点", 3000, 200);
+        MockServer secondary = startServer("备用端点", 0, 200);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        try (HedgingStreamingChatModel model = new HedgingStreamingChatModel("test", List.of(
+                new HedgingStreamingChatModel.Endpoint("primary", openAi(primary), new CircuitBreaker(3, Duration.ofMinutes(1))),
+                new HedgingStreamingChatModel.Endpoint("secondary", openAi(secondary), new CircuitBreaker(3, Duration.ofMinutes(1)))
+        ), Duration.ofMillis(300), meterRegistry)) {
+            List<String> endpoints = new CopyOnWriteArrayList<>();
+            CompletableFuture<ChatResponse> future = new CompletableFuture<>();
+            model.chat("你好", new StreamingChatResponseHandler() {
+                @Override
+                public void onPartialResponse(PartialResponse partialResponse, PartialResponseContext context) {
+                    endpoints.add(HedgingStreamingChatModel.endpointOf(context.streamingHandle()));
+                }
+
+                @Override
+                public void onCompleteResponse(ChatResponse completeResponse) {
+                    future.complete(completeResponse);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    future.completeExceptionally(error);
+                }
+            });
+            future.get(10, TimeUnit.SECONDS);
+            assertEquals(List.of("secondary", "secondary"), endpoints);
+            // 主端点还没有输出就已标记为落选
+            assertEquals(1, meterRegistry.get("ai.model.attempt").tag("endpoint", "primary").tag("result", "lost").counter().count());
+        }
+    }
+
+    @Test
+    void noHedgeWhenPrimaryIsFast() throws Exception {
+        MockServer primary = startServer("主端点", 0, 200);
+        MockServer secondary = startServer("备用端点", 0, 200);
+        // 阈值留出首次请求初始化 HTTP 客户端的时间
+        Result result = chat(hedging(primary, secondary, Duration.ofSeconds(3)));
+        assertEquals("主端点的回答", result.text());
+        Thread.sleep(500);
+        assertEquals(0, secondary.requests.get());
+    }
+
+    @Test
+    void failoverAndOpenCircuit() throws Exception {
+        MockServer primary = startServer("主端点", 0, 500);
+        MockServer secondary = startServer("备用端点", 0, 200);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        HedgingStreamingChatModel model = new HedgingStreamingChatModel("test", List.of(
+                new HedgingStreamingChatModel.Endpoint("primary", openAi(primary), new CircuitBreaker(2, Duration.ofMinutes(1))),
+                new HedgingStreamingChatModel.Endpoint("secondary", openAi(secondary), new CircuitBreaker(2, Duration.ofMinutes(1)))
+        ), Duration.ofSeconds(10), meterRegistry);
+        for (int i = 0; i < 3; i++) {
+            assertEquals("备用端点的回答", chat(model).text());
+        }
+        // 连续失败两次后熔断，第三次直接使用备用端点
+        assertEquals(2, primary.requests.get());
+        assertEquals(3, secondary.requests.get());
+        assertEquals(1, meterRegistry.get("ai.model.circuit.open").tag("endpoint", "primary").gauge().value());
+        assertEquals(2, meterRegistry.get("ai.model.failover").counter().count());
+    }
+
+    @Test
+    void errorWhenAllEndpointsFail() throws Exception {
+        MockServer primary = startServer("主端点", 0, 500);
+        MockServer secondary = startServer("备用端点", 0, 500);
+        CompletableFuture<ChatResponse> future = new CompletableFuture<>();
+        hedging(primary, secondary, Duration.ofMillis(300)).chat("你好", new StreamingChatResponseHandler() {
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                future.complete(completeResponse);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                future.completeExceptionally(error);
+            }
+        });
+        assertThrows(Exception.class, () -> future.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void circuitBreakerHalfOpen() {
+        long[] now = {0};
+        CircuitBreaker circuitBreaker = new CircuitBreaker(1, Duration.ofSeconds(10), () -> now[0]);
+        circuitBreaker.recordFailure();
+        assertFalse(circuitBreaker.tryAcquire());
+        now[0] = TimeUnit.SECONDS.toNanos(10);
+        // 半开只放行一个探测请求
+        assertTrue(circuitBreaker.tryAcquire());
+        assertFalse(circuitBreaker.tryAcquire());
+        circuitBreaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        now[0] = TimeUnit.SECONDS.toNanos(20);
+        assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    private HedgingStreamingChatModel hedging(MockServer primary, MockServer secondary, Duration ttftThreshold) {
+        return new HedgingStreamingChatModel("test", List.of(
+                new HedgingStreamingChatModel.Endpoint("primary", openAi(primary), new CircuitBreaker(3, Duration.ofMinutes(1))),
+                new HedgingStreamingChatModel.Endpoint("secondary", openAi(secondary), new CircuitBreaker(3, Duration.ofMinutes(1)))
+        ), ttftThreshold, null);
+    }
+
+    private static StreamingChatModel openAi(MockServer server) {
+        return OpenAiStreamingChatModel.builder()
+                .baseUrl("http://localhost:" + server.httpServer.getAddress().getPort() + "/v1")
+                .apiKey("test")
+                .modelName("mock")
+                .build();
+    }
+
+    private static Result chat(StreamingChatModel model) throws Exception {
+        StringBuilder text = new StringBuilder();
+        CompletableFuture<ChatResponse> future = new CompletableFuture<>();
+        model.chat("你好", new StreamingChatResponseHandler() {
+            @Override
+            public void onPartialResponse(String partialResponse) {
+                text.append(partialResponse);
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                future.complete(completeResponse);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                future.completeExceptionally(error);
+            }
+        });
+        ChatResponse response = future.get(10, TimeUnit.SECONDS);
+        assertEquals(text.toString(), response.aiMessage().text());
+        return new Result(text.toString());
+    }
+
+    private record Result(String text) {
+    }
+
+    /**
+     * 模拟 OpenAI 兼容的流式接口
+     *
+     * @param delayMs 发送首个分片前的等待时间
+     * @param status  响应状态码，非 200 时返回错误
+     */
+    private MockServer startServer(String name, long delayMs, int status) throws IOException {
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        httpServer.setExecutor(Executors.newCachedThreadPool());
+        MockServer server = new MockServer(httpServer, new AtomicInteger());
+        httpServer.createContext("/v1/chat/completions", exchange -> {
+            server.requests.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            try {
+                respond(exchange, name, delayMs, status);
+            } catch (IOException | InterruptedException e) {
+                // 客户端取消后连接已关闭
+            } finally {
+                exchange.close();
+            }
+        });
+        httpServer.start();
+        servers.add(server);
+        return server;
+    }
+
+    private static void respond(HttpExchange exchange, String name, long delayMs, int status) throws IOException, InterruptedException {
+        if (status != 200) {
+            byte[] body = "{\"error\":{\"message\":\"mock error\"}}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+            return;
+        }
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        Thread.sleep(delayMs);
+        for (String piece : List.of(name, "的回答")) {
+            writeEvent(out, "{\"id\":\"1\",\"object\":\"chat.completion.chunk\",\"created\":1,\"model\":\"mock\","
+                    + "\"choices\":[{\"index\":0,\"delta\":{\"content\":\"" + piece + "\"},\"finish_reason\":null}]}");
+        }
+        writeEvent(out, "{\"id\":\"1\",\"object\":\"chat.completion.chunk\",\"created\":1,\"model\":\"mock\","
+                + "\"choices\":[{\"index\":0,\"delta\":{},\"finish_reason\":\"stop\"}]}");
+        writeEvent(out, "[DONE]");
+    }
+
+    private static void writeEvent(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private record MockServer(HttpServer httpServer, AtomicInteger requests) {
+    }
+}
@@ -0,0 +1,71 @@
+package com.woopsion.woopsionaicodemother.ai.tools;
+
+import com.woopsion.woopsionaicodemother.core.generation.GenerationCancellation;
+import com.woopsion.woopsionaicodemother.core.snapshot.FileHashIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileWriteToolTest {
+
+    private static final Long APP_ID = 9000000025L;
+
+    @TempDir
+    Path tempDir;
+
+    private final GenerationCancellation generationCancellation = new GenerationCancellation();
+
+    private final FileHashIndex fileHashIndex = new FileHashIndex(new SimpleMeterRegistry());
+
+    private final FileWriteTool fileWriteTool = new FileWriteTool(generationCancellation.current(APP_ID), fileHashIndex);
+
+    @Test
+    void identicalContentIsNotRewritten() throws IOException {
+        Path file = tempDir.resolve("src/App.vue");
+        String content = "<template><h1>你好</h1></template>";
+        assertTrue(fileWriteTool.writeFile(file.toString(), content, APP_ID).startsWith("文件写入成功"));
+        assertEquals(content, Files.readString(file, StandardCharsets.UTF_8));
+
+        FileTime modifiedTime = FileTime.fromMillis(1_000_000L);
+        Files.setLastModifiedTime(file, modifiedTime);
+        assertTrue(fileWriteTool.writeFile(file.toString(), content, APP_ID).startsWith("文件内容未变化"));
+        assertEquals(modifiedTime, Files.getLastModifiedTime(file));
+    }
+
+    @Test
+    void changedContentReplacesFile() throws IOException {
+        Path file = tempDir.resolve("index.html");
+        fileWriteTool.writeFile(file.toString(), "<h1>v1</h1>", APP_ID);
+        assertTrue(fileWriteTool.writeFile(file.toString(), "<h1>v2</h1>", APP_ID).startsWith("文件写入成功"));
+        assertEquals("<h1>v2</h1>", Files.readString(file, StandardCharsets.UTF_8));
+        try (var files = Files.list(tempDir)) {
+            // 临时文件不残留
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void cancelledGenerationDoesNotWriteAfterNewGenerationBegins() {
+        GenerationCancellation.Token first = generationCancellation.begin(APP_ID);
+        FileWriteTool firstTool = new FileWriteTool(generationCancellation.current(APP_ID), fileHashIndex);
+        first.cancel();
+        generationCancellation.end(APP_ID, first);
+
+        // 新一轮生成开始后，上一轮遗留的工具调用仍然不写文件
+        GenerationCancellation.Token second = generationCancellation.begin(APP_ID);
+        FileWriteTool secondTool = new FileWriteTool(generationCancellation.current(APP_ID), fileHashIndex);
+        Path file = tempDir.resolve("src/main.js");
+        assertTrue(firstTool.writeFile(file.toString(), "stale", APP_ID).startsWith("生成已取消"));
+        assertFalse(Files.exists(file));
+        assertTrue(secondTool.writeFile(file.toString(), "fresh", APP_ID).startsWith("文件写入成功"));
+        assertFalse(second.isCancelled());
+    }
+}
@@ -0,0 +1,36 @@
+package com.woopsion.woopsionaicodemother.core.generation;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkCoalescerTest {
+
+    @Test
+    void firstChunkImmediatelyThenMergedBySize() {
+        Flux<String> source = Flux.just("a", "b", "c", "d", "e", "f");
+        List<String> chunks = ChunkCoalescer.coalesce(source, Duration.ofMinutes(1), 2).collectList().block();
+        // 首块立即发送，之后每满 2 个字符发送，剩余内容在结束时发送
+        assertEquals(List.of("a", "bc", "de", "f"), chunks);
+        assertEquals("abcdef", String.join("", chunks));
+    }
+
+    @Test
+    void flushAfterDelay() throws InterruptedException {
+        Sinks.Many<String> source = Sinks.many().unicast().onBackpressureBuffer();
+        List<String> received = new ArrayList<>();
+        ChunkCoalescer.coalesce(source.asFlux(), Duration.ofMillis(20), 1024).subscribe(received::add);
+        source.tryEmitNext("a");
+        source.tryEmitNext("b");
+        source.tryEmitNext("c");
+        assertEquals(List.of("a"), received);
+        Thread.sleep(200);
+        assertEquals(List.of("a", "bc"), received);
+    }
+}
@@ -0,0 +1,93 @@
+package com.woopsion.woopsionaicodemother.core.generation;
+
+import com.woopsion.woopsionaicodemother.model.enums.CodeGenTypeEnum;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.openai.OpenAiTokenUsage;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GenerationMetricsTest {
+
+    @Test
+    void recordTokensAndUsage() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        GenerationMetrics metrics = new GenerationMetrics(registry);
+        GenerationMetrics.Recording recording = metrics.start(CodeGenTypeEnum.VUE_PROJECT, "reasoningStreamingChatModel");
+        recording.onPartialResponse();
+        recording.onPartialResponse();
+        // 工具执行后的首个 token 不计算间隔
+        recording.onToolExecuted();
+        recording.onPartialResponse();
+        recording.onPartialResponse();
+        recording.onComplete(ChatResponse.builder()
+                .aiMessage(AiMessage.from("done"))
+                .tokenUsage(new TokenUsage(10, 42))
+                .build());
+        // 重复的结束信号不再记录
+        recording.onCancel();
+
+        String[] tags = {"codeGenType", "vue_project", "model", "reasoningStreamingChatModel"};
+        assertEquals(1, registry.get("ai.generation.ttft").tags(tags).timer().count());
+        assertEquals(2, registry.get("ai.generation.token.gap").tags(tags).timer().count());
+        assertEquals(42, registry.get("ai.generation.output.tokens").tags(tags).summary().totalAmount());
+        assertEquals(1, registry.get("ai.generation.tokens.per.second").tags(tags).summary().count());
+        assertEquals(1, registry.get("ai.generation.duration").tags(tags).tag("outcome", GenerationMetrics.OUTCOME_SUCCESS).timer().count());
+        assertNull(registry.find("ai.generation.duration").tag("outcome", GenerationMetrics.OUTCOME_CANCELLED).timer());
+    }
+
+    @Test
+    void tagWinningEndpoint() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        GenerationMetrics metrics = new GenerationMetrics(registry);
+        GenerationMetrics.Recording recording = metrics.start(CodeGenTypeEnum.HTML, "openAiStreamingChatModel");
+        recording.onEndpoint("backup");
+        recording.onPartialResponse();
+        // 首个 token 之后端点不再变化
+        recording.onEndpoint("other");
+        recording.onPartialResponse();
+        recording.onComplete(ChatResponse.builder().aiMessage(AiMessage.from("done")).build());
+        assertEquals(1, registry.get("ai.generation.ttft").tag("endpoint", "backup").timer().count());
+        assertEquals(1, registry.get("ai.generation.token.gap").tag("endpoint", "backup").timer().count());
+        assertEquals(1, registry.get("ai.generation.duration").tag("endpoint", "backup").timer().count());
+        assertNull(registry.find("ai.generation.ttft").tag("endpoint", "other").timer());
+    }
+
+    @Test
+    void estimateTokensWithoutUsage() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        GenerationMetrics metrics = new GenerationMetrics(registry);
+        GenerationMetrics.Recording recording = metrics.start(CodeGenTypeEnum.HTML, "openAiStreamingChatModel");
+        recording.onPartialResponse();
+        recording.onPartialResponse();
+        recording.onPartialResponse();
+        recording.onComplete(ChatResponse.builder().aiMessage(AiMessage.from("done")).build());
+        assertEquals(3, registry.get("ai.generation.output.tokens").summary().totalAmount());
+    }
+
+    @Test
+    void recordPromptCacheHitRatio() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        GenerationMetrics metrics = new GenerationMetrics(registry);
+        for (int cached : new int[]{0, 900}) {
+            GenerationMetrics.Recording recording = metrics.start(CodeGenTypeEnum.MULTI_FILE, "openAiStreamingChatModel");
+            recording.onPartialResponse();
+            recording.onComplete(ChatResponse.builder()
+                    .aiMessage(AiMessage.from("done"))
+                    .tokenUsage(OpenAiTokenUsage.builder()
+                            .inputTokenCount(1000)
+                            .inputTokensDetails(OpenAiTokenUsage.InputTokensDetails.builder().cachedTokens(cached).build())
+                            .outputTokenCount(10)
+                            .build())
+                    .build());
+        }
+        assertEquals(900, registry.get("ai.prompt.cache.hit.tokens").counter().count());
+        assertEquals(1100, registry.get("ai.prompt.cache.miss.tokens").counter().count());
+        assertEquals(0.45, registry.get("ai.prompt.cache.hit.ratio").tag("codeGenType", "multi_files").gauge().value(), 1e-9);
+        assertEquals(0.45, metrics.getPromptCacheHitRatio(CodeGenTypeEnum.MULTI_FILE), 1e-9);
+        assertTrue(Double.isNaN(metrics.getPromptCacheHitRatio(CodeGenTypeEnum.HTML)));
+    }
+}
@@ -0,0 +1,243 @@
+package com.woopsion.woopsionaicodemother.core.generation;
+
+import com.woopsion.woopsionaicodemother.config.GenerationSchedulerConfig;
+import com.woopsion.woopsionaicodemother.exception.BusinessException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GenerationRegistryTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private GenerationRegistry newRegistry() {
+        return newRegistry(Runnable::run);
+    }
+
+    private GenerationRegistry newRegistry(Executor dispatchExecutor) {
+        return newRegistry(dispatchExecutor, new GenerationSchedulerConfig());
+    }
+
+    private GenerationRegistry newRegistry(Executor dispatchExecutor, GenerationSchedulerConfig schedulerConfig) {
+        meterRegistry = new SimpleMeterRegistry();
+        GenerationRegistry registry = new GenerationRegistry();
+        ReflectionTestUtils.setField(registry, "schedulerConfig", schedulerConfig);
+        ReflectionTestUtils.setField(registry, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(registry, "dispatchExecutor", dispatchExecutor);
+        registry.init();
+        return registry;
+    }
+
+    @Test
+    void attachReplaysAndSharesSingleGeneration() {
+        GenerationRegistry registry = newRegistry();
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        AtomicInteger startCount = new AtomicInteger();
+
+        Flux<GenerationEvent> first = registry.startOrAttach(1L, 10L, 0, "做一个博客", () -> {
+            startCount.incrementAndGet();
+            return upstream.asFlux();
+        });
+        upstream.tryEmitNext("a");
+        Flux<GenerationEvent> second = registry.startOrAttach(1L, 10L, 0, "做一个博客", () -> {
+            startCount.incrementAndGet();
+            return Flux.just("不应该被调用");
+        });
+        upstream.tryEmitNext("b");
+        upstream.tryEmitComplete();
+
+        assertEquals(1, startCount.get());
+        assertEquals(List.of("a", "b"), first.map(GenerationEvent::data).collectList().block());
+        assertEquals(List.of("a", "b"), second.map(GenerationEvent::data).collectList().block());
+        // 生成结束后会话被移除
+        assertNull(registry.getSession(1L));
+    }
+
+    @Test
+    void rejectDifferentMessageWhileGenerating() {
+        GenerationRegistry registry = newRegistry();
+        registry.startOrAttach(1L, 10L, 0, "做一个博客", Flux::never);
+        Flux<GenerationEvent> rejected = registry.startOrAttach(1L, 10L, 0, "做一个商城", () -> Flux.just("不应该被调用"));
+        assertThrows(BusinessException.class, rejected::blockFirst);
+        assertNotNull(registry.getSession(1L));
+        assertEquals(1, meterRegistry.get("ai.generation.rejected").tag("reason", "app_busy").counter().count());
+    }
+
+    @Test
+    void resumeReplaysEventsAfterLastEventId() {
+        GenerationRegistry registry = newRegistry();
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        List<GenerationEvent> received = new ArrayList<>();
+        registry.startOrAttach(1L, 10L, 0, "做一个博客", upstream::asFlux).subscribe(received::add);
+        upstream.tryEmitNext("a");
+        upstream.tryEmitNext("b");
+        upstream.tryEmitNext("c");
+        String lastEventId = received.get(0).id();
+
+        Flux<GenerationEvent> resumed = registry.resume(1L, 10L, lastEventId);
+        upstream.tryEmitComplete();
+
+        // 生成结束后短时间内仍可恢复
+        assertEquals(List.of("b", "c"), resumed.map(GenerationEvent::data).collectList().block());
+        assertEquals(List.of("c"), registry.resume(1L, 10L, received.get(1).id())
+                .map(GenerationEvent::data).collectList().block());
+        assertThrows(BusinessException.class, () -> registry.resume(1L, 11L, lastEventId).blockFirst());
+        assertThrows(BusinessException.class, () -> registry.resume(1L, 10L, "0-1").blockFirst());
+    }
+
+    @Test
+    void queueWhenRunningLimitReached() {
+        GenerationRegistry registry = newRegistry();
+        List<Sinks.Many<String>> upstreams = new ArrayList<>();
+        for (long appId = 1; appId <= 16; appId++) {
+            Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+            upstreams.add(upstream);
+            registry.startOrAttach(appId, appId, 0, "做一个博客", upstream::asFlux).subscribe();
+        }
+        AtomicInteger startCount = new AtomicInteger();
+        Flux<GenerationEvent> queued = registry.startOrAttach(17L, 17L, 0, "做一个博客", () -> {
+            startCount.incrementAndGet();
+            return Flux.just("a");
+        });
+        assertEquals(0, startCount.get());
+        assertEquals(1, registry.getQueuedCount());
+
+        // 任一生成结束后，排队的生成获得执行名额；排队期间先收到排队位置
+        upstreams.get(0).tryEmitComplete();
+        assertEquals(1, startCount.get());
+        assertEquals(0, registry.getQueuedCount());
+        List<GenerationEvent> events = queued.collectList().block();
+        assertEquals(List.of("a"), events.stream().filter(GenerationEvent::isContent).map(GenerationEvent::data).toList());
+        assertEquals(17, meterRegistry.get("ai.generation.queue.wait").timer().count());
+    }
+
+    @Test
+    void finishedSessionCompletesBeforeNextJobStarts() {
+        List<Runnable> pendingTasks = new ArrayList<>();
+        GenerationRegistry registry = newRegistry(pendingTasks::add);
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        List<GenerationEvent> firstEvents = new ArrayList<>();
+        AtomicBoolean firstCompleted = new AtomicBoolean();
+        registry.startOrAttach(1L, 10L, 0, "做一个博客", upstream::asFlux)
+                .subscribe(firstEvents::add, error -> { }, () -> firstCompleted.set(true));
+        registry.startOrAttach(2L, 10L, 0, "做一个博客", Flux::never).subscribe();
+        AtomicInteger thirdStarted = new AtomicInteger();
+        registry.startOrAttach(3L, 10L, 0, "做一个博客", () -> {
+            thirdStarted.incrementAndGet();
+            return Flux.never();
+        }).subscribe();
+        runAll(pendingTasks);
+        assertEquals(1, registry.getQueuedCount());
+
+        // 结束的会话立即通知客户端，下一个任务在执行器中启动
+        upstream.tryEmitComplete();
+        assertTrue(firstCompleted.get());
+        assertEquals(0, thirdStarted.get());
+        runAll(pendingTasks);
+        assertEquals(1, thirdStarted.get());
+    }
+
+    @Test
+    void perUserLimitAndPriorityOrdering() {
+        GenerationRegistry registry = newRegistry();
+        List<Sinks.Many<String>> upstreams = new ArrayList<>();
+        // 用户 10 同时最多 2 个生成
+        for (long appId = 1; appId <= 2; appId++) {
+            Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+            upstreams.add(upstream);
+            registry.startOrAttach(appId, 10L, 0, "做一个博客", upstream::asFlux).subscribe();
+        }
+        List<Long> startOrder = new ArrayList<>();
+        List<GenerationEvent> lowEvents = new ArrayList<>();
+        registry.startOrAttach(3L, 10L, 0, "做一个博客", () -> {
+            startOrder.add(3L);
+            return Flux.never();
+        }).subscribe(lowEvents::add);
+        registry.startOrAttach(4L, 10L, 99, "做一个博客", () -> {
+            startOrder.add(4L);
+            return Flux.never();
+        }).subscribe();
+        assertEquals(2, registry.getQueuedCount());
+        // 高优先级的应用排到前面
+        assertEquals(GenerationEvent.EVENT_QUEUE, lowEvents.get(lowEvents.size() - 1).event());
+        assertEquals("2", lowEvents.get(lowEvents.size() - 1).data());
+        // 其他用户不受影响
+        AtomicInteger otherStarted = new AtomicInteger();
+        registry.startOrAttach(5L, 20L, 0, "做一个博客", () -> {
+            otherStarted.incrementAndGet();
+            return Flux.never();
+        }).subscribe();
+        assertEquals(1, otherStarted.get());
+        // 单用户排队数超过上限时拒绝
+        registry.startOrAttach(6L, 10L, 0, "做一个博客", Flux::never).subscribe();
+        Flux<GenerationEvent> rejected = registry.startOrAttach(7L, 10L, 0, "做一个博客", Flux::never);
+        assertThrows(BusinessException.class, rejected::blockFirst);
+        assertEquals(1, meterRegistry.get("ai.generation.rejected").tag("reason", "user_queue_full").counter().count());
+
+        upstreams.get(0).tryEmitComplete();
+        assertEquals(List.of(4L), startOrder);
+        assertEquals("1", lowEvents.get(lowEvents.size() - 1).data());
+    }
+
+    @Test
+    void exclusiveOperationHoldsOffGenerations() {
+        GenerationRegistry registry = newRegistry();
+        Flux<GenerationEvent> rejected = registry.runExclusive(1L,
+                () -> registry.startOrAttach(1L, 10L, 0, "做一个博客", () -> Flux.just("不应该被调用")));
+        assertThrows(BusinessException.class, rejected::blockFirst);
+        assertNull(registry.getSession(1L));
+        assertEquals(1, meterRegistry.get("ai.generation.rejected").tag("reason", "workspace_busy").counter().count());
+
+        // 生成进行中不能独占
+        registry.startOrAttach(1L, 10L, 0, "做一个博客", Flux::never).subscribe();
+        assertThrows(BusinessException.class, () -> registry.runExclusive(1L, () -> "不应该执行"));
+        assertEquals("ok", registry.runExclusive(2L, () -> "ok"));
+    }
+
+    @Test
+    void cancelDisposesUpstream() {
+        GenerationRegistry registry = newRegistry();
+        AtomicInteger cancelCount = new AtomicInteger();
+        Flux<GenerationEvent> events = registry.startOrAttach(1L, 10L, 0, "做一个博客",
+                () -> Flux.<String>never().doOnCancel(cancelCount::incrementAndGet));
+
+        assertThrows(BusinessException.class, () -> registry.cancel(1L, 11L));
+        assertTrue(registry.cancel(1L, 10L));
+        assertEquals(1, cancelCount.get());
+        assertThrows(BusinessException.class, events::blockFirst);
+        assertNull(registry.getSession(1L));
+        assertFalse(registry.cancel(1L, 10L));
+    }
+
+    @Test
+    void abandonedGenerationCancelledAfterGrace() throws InterruptedException {
+        GenerationSchedulerConfig schedulerConfig = new GenerationSchedulerConfig();
+        schedulerConfig.setAbandonGraceSeconds(0);
+        GenerationRegistry registry = newRegistry(Runnable::run, schedulerConfig);
+        registry.startOrAttach(1L, 10L, 0, "做一个博客", Flux::never).subscribe().dispose();
+
+        // 宽限期按配置计算，所有客户端断开后取消生成
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (registry.getSession(1L) != null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertNull(registry.getSession(1L));
+    }
+
+    private static void runAll(List<Runnable> tasks) {
+        while (!tasks.isEmpty()) {
+            tasks.remove(0).run();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.woopsion.woopsionaicodemother.core.generation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutputContinuationTest {
+
+    private static final String OUTPUT = "页面如下：\n```html\n<html>\n<body>\n  <div class=\"header\">标题</div>\n  <div class=\"con";
+
+    @Test
+    void tailKeepsOnlyLastChars() {
+        OutputContinuation.Tail tail = new OutputContinuation.Tail(8);
+        for (int i = 0; i < 100; i++) {
+            tail.append("0123456789");
+        }
+        assertEquals("23456789", tail.get());
+        assertEquals(1000, tail.length());
+        // 不从代理对中间截开
+        tail.append("\uD83D\uDE001234567");
+        assertEquals("1234567", tail.get());
+    }
+
+    @Test
+    void stitchRepeatedTailAndReopenedFence() {
+        String tail = OutputContinuation.tail(OUTPUT, 2000);
+        OutputContinuation.Stitcher stitcher = new OutputContinuation.Stitcher(tail, true);
+        // 模型重新打开了围栏，并重复了截断前的最后一行
+        StringBuilder stitched = new StringBuilder();
+        stitched.append(stitcher.append("```html\n  <div class=\"header\">标"));
+        stitched.append(stitcher.append("题</div>\n  <div class=\"content\"></div>\n"));
+        stitched.append(stitcher.finish());
+        assertEquals("tent\"></div>\n", stitched.toString());
+        // 超过比对窗口后直接透传
+        assertEquals("</body>", stitcher.append("</body>"));
+    }
+
+    @Test
+    void keepContinuationWithoutOverlap() {
+        OutputContinuation.Stitcher stitcher = new OutputContinuation.Stitcher(OUTPUT, true);
+        String continuation = "tent\"></div>\n</body>\n</html>\n```\n";
+        assertEquals("", stitcher.append(continuation));
+        assertEquals(continuation, stitcher.finish());
+        // 闭合围栏不是重新打开的代码块
+        assertEquals("```\n说明", OutputContinuation.Stitcher.stripReopenedFence("```\n说明"));
+    }
+}
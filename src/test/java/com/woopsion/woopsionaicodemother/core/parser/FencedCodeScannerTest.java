@@ -0,0 +1,61 @@
+package com.woopsion.woopsionaicodemother.core.parser;
+
+import com.woopsion.woopsionaicodemother.ai.model.HtmlCodeResult;
+import com.woopsion.woopsionaicodemother.ai.model.MultiFileCodeResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FencedCodeScannerTest {
+
+    @Test
+    void indexAllBlocks() {
+        String content = """
+                说明
+                ```html index.html
+                <h1>hi</h1>
+                ```
+                ```CSS:style.css
+                h1 { color: red; }
+                ```
+                ```javascript filename="src/main.js"
+                const a = `b`;
+                ```
+                ```
+                纯文本
+                ```
+                ```js
+                console.log(1);
+                """;
+        List<FencedCodeScanner.CodeBlock> blocks = FencedCodeScanner.scan(content);
+        assertEquals(List.of("html", "css", "js", "", "js"), blocks.stream().map(FencedCodeScanner.CodeBlock::language).toList());
+        assertEquals("index.html", blocks.get(0).fileName());
+        assertEquals("style.css", blocks.get(1).fileName());
+        assertEquals("src/main.js", blocks.get(2).fileName());
+        assertNull(blocks.get(3).fileName());
+        assertEquals("<h1>hi</h1>\n", blocks.get(0).code().toString());
+        assertEquals("const a = `b`;", blocks.get(2).trimmedCode());
+        assertFalse(blocks.get(4).closed());
+        assertEquals("console.log(1);", blocks.get(4).trimmedCode());
+        assertSame(blocks.get(2), FencedCodeScanner.findFirst(blocks, "js", false));
+    }
+
+    @Test
+    void unterminatedFence() {
+        String content = "```html\n" + "<div>a</div>\n".repeat(100_000);
+        HtmlCodeResult htmlResult = new HtmlCodeParser().parseCode(content);
+        assertTrue(htmlResult.getHtmlCode().startsWith("<div>a</div>"));
+        // 未闭合的 CSS、JS 代码块不保存
+        MultiFileCodeResult multiFileResult = new MultiFileCodeParser().parseCode("```html\n<p></p>\n```\n```css\nh1 {");
+        assertEquals("<p></p>", multiFileResult.getHtmlCode());
+        assertNull(multiFileResult.getCssCode());
+    }
+
+    @Test
+    void noBlocks() {
+        assertTrue(FencedCodeScanner.scan("没有代码块 ``` 未换行").isEmpty());
+        assertEquals("<p>纯 HTML</p>", new HtmlCodeParser().parseCode(" <p>纯 HTML</p> ").getHtmlCode());
+    }
+}
@@ -0,0 +1,69 @@
+package com.woopsion.woopsionaicodemother.core.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingCodeParserTest {
+
+    private static final String MULTI_FILE_CONTENT = """
+            创建一个完整的网页：
+            ```html
+            <!DOCTYPE html>
+            <html>
+            <body>
+                <h1>欢迎使用</h1>
+                <script src="script.js"></script>
+            </body>
+            </html>
+            ```
+            ```css
+            h1 {
+                color: blue;
+            }
+            ```
+            ```javascript
+            const name = `world`;
+            console.log(`hello ${name}`);
+            ```
+            文件创建完成！
+            """;
+
+    @Test
+    void parseBlocksSplitAcrossChunks() {
+        Map<String, String> blocks = new LinkedHashMap<>();
+        StreamingCodeParser parser = new StreamingCodeParser(blocks::put);
+        // 每 3 个字符一个片段，让围栏被拆分到不同片段中
+        for (int i = 0; i < MULTI_FILE_CONTENT.length(); i += 3) {
+            parser.append(MULTI_FILE_CONTENT.substring(i, Math.min(i + 3, MULTI_FILE_CONTENT.length())));
+        }
+        assertEquals(3, blocks.size());
+        assertTrue(blocks.get("html").contains("<h1>欢迎使用</h1>"));
+        assertTrue(blocks.get("css").contains("color: blue;"));
+        assertTrue(blocks.get("js").contains("console.log(`hello ${name}`);"));
+        assertFalse(parser.isInsideBlock());
+        assertNull(parser.getRawText());
+    }
+
+    @Test
+    void keepUnterminatedBlock() {
+        Map<String, String> blocks = new LinkedHashMap<>();
+        StreamingCodeParser parser = new StreamingCodeParser(blocks::put);
+        parser.append("```html\n<html><body>被截断的输出");
+        assertTrue(blocks.isEmpty());
+        assertTrue(parser.isInsideBlock());
+        assertEquals("html", parser.getOpenBlockLanguage());
+        assertEquals("<html><body>被截断的输出", parser.getOpenBlockCode());
+    }
+
+    @Test
+    void keepRawTextWithoutFence() {
+        StreamingCodeParser parser = new StreamingCodeParser((language, code) -> fail("不应解析到代码块"));
+        parser.append("<html><body>");
+        parser.append("没有代码块</body></html>");
+        assertEquals("<html><body>没有代码块</body></html>", parser.getRawText());
+    }
+}
@@ -0,0 +1,127 @@
+package com.woopsion.woopsionaicodemother.core.snapshot;
+
+import com.woopsion.woopsionaicodemother.config.WorkspaceSnapshotConfig;
+import com.woopsion.woopsionaicodemother.model.enums.CodeGenTypeEnum;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkspaceSnapshotStoreTest {
+
+    private static final long APP_ID = 9000000024L;
+
+    @TempDir
+    Path tempDir;
+
+    private Path workspaceDir;
+
+    private WorkspaceSnapshotStore store;
+
+    private final FileHashIndex fileHashIndex = new FileHashIndex(new SimpleMeterRegistry());
+
+    @BeforeEach
+    void setUp() throws IOException {
+        workspaceDir = tempDir.resolve("output").resolve("multi_files_" + APP_ID);
+        Files.createDirectories(workspaceDir);
+        WorkspaceSnapshotConfig config = new WorkspaceSnapshotConfig();
+        config.setMaxSnapshots(3);
+        store = new WorkspaceSnapshotStore(tempDir.resolve("output"), tempDir.resolve("store"), config, fileHashIndex);
+    }
+
+    @Test
+    void unchangedWorkspaceReusesLatestSnapshot() throws IOException {
+        Files.writeString(workspaceDir.resolve("index.html"), "<h1>v1</h1>");
+        Files.createDirectories(workspaceDir.resolve("node_modules"));
+        Files.writeString(workspaceDir.resolve("node_modules/dep.js"), "ignored");
+        WorkspaceManifest first = store.snapshot(APP_ID, CodeGenTypeEnum.MULTI_FILE, "第一轮");
+        WorkspaceManifest second = store.snapshot(APP_ID, CodeGenTypeEnum.MULTI_FILE, "第二轮");
+        assertEquals(first.id(), second.id());
+        assertEquals(List.of("index.html"), List.copyOf(first.files().keySet()));
+        assertEquals(1, store.list(APP_ID, CodeGenTypeEnum.MULTI_FILE).size());
+    }
+
+    @Test
+    void diffAndRestore() throws IOException {
+        Files.writeString(workspaceDir.resolve("index.html"), "<h1>v1</h1>");
+        Files.writeString(workspaceDir.resolve("style.css"), "h1 {}");
+        WorkspaceManifest v1 = store.snapshot(APP_ID, CodeGenTypeEnum.MULTI_FILE, "v1");
+
+        Files.writeString(workspaceDir.resolve("index.html"), "<h1>v2</h1>");
+        Files.delete(workspaceDir.resolve("style.css"));
+        Files.writeString(workspaceDir.resolve("script.js"), "console.log(2);");
+
+        List<WorkspaceManifest.FileChange> changes = store.diff(APP_ID, CodeGenTypeEnum.MULTI_FILE, v1.id(), null);
+        assertEquals(List.of("index.html:modified", "script.js:added", "style.css:deleted"),
+                changes.stream().map(change -> change.path() + ":" + change.changeType()).toList());
+
+        WorkspaceManifest before = store.restore(APP_ID, CodeGenTypeEnum.MULTI_FILE, v1.id());
+        assertEquals("<h1>v1</h1>", Files.readString(workspaceDir.resolve("index.html")));
+        assertEquals("h1 {}", Files.readString(workspaceDir.resolve("style.css")));
+        assertFalse(Files.exists(workspaceDir.resolve("script.js")));
+
+        // 回滚前的状态保存在快照中，回滚可以撤销
+        store.restore(APP_ID, CodeGenTypeEnum.MULTI_FILE, before.id());
+        assertEquals("<h1>v2</h1>", Files.readString(workspaceDir.resolve("index.html")));
+        assertTrue(Files.exists(workspaceDir.resolve("script.js")));
+    }
+
+    @Test
+    void oldSnapshotsAreTrimmedAndUnreferencedBlobsCollected() throws IOException {
+        WorkspaceSnapshotConfig config = new WorkspaceSnapshotConfig();
+        config.setMaxSnapshots(2);
+        config.setGcGraceMinutes(-1);
+        store = new WorkspaceSnapshotStore(tempDir.resolve("output"), tempDir.resolve("store"), config, fileHashIndex);
+        for (int i = 1; i <= 4; i++) {
+            Files.writeString(workspaceDir.resolve("index.html"), "<h1>v" + i + "</h1>");
+            store.snapshot(APP_ID, CodeGenTypeEnum.MULTI_FILE, "v" + i);
+        }
+        assertEquals(List.of("v4", "v3"),
+                store.list(APP_ID, CodeGenTypeEnum.MULTI_FILE).stream().map(WorkspaceManifest::note).toList());
+
+        store.collectGarbage();
+        try (Stream<Path> blobs = Files.walk(tempDir.resolve("store").resolve("blobs"))) {
+            assertEquals(2, blobs.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    void blobIsStoredUnderHashOfCopiedContent() throws IOException {
+        Path file = workspaceDir.resolve("index.html");
+        Files.writeString(file, "<h1>v1</h1>");
+        WorkspaceManifest.FileEntry scanned = new WorkspaceManifest.FileEntry(fileHashIndex.hash(workspaceDir, file), Files.size(file));
+        // 扫描后、复制前文件被新一轮生成改写
+        Files.writeString(file, "<h1>v2 changed</h1>");
+        BlobStore blobStore = new BlobStore(tempDir.resolve("store"));
+        WorkspaceManifest.FileEntry stored = blobStore.put(file, scanned);
+        assertEquals(FileHashIndex.hash("<h1>v2 changed</h1>".getBytes(StandardCharsets.UTF_8)), stored.hash());
+        assertEquals(Files.size(file), stored.size());
+        assertFalse(blobStore.contains(scanned.hash()));
+        assertTrue(blobStore.contains(stored.hash()));
+    }
+
+    @Test
+    void invalidatedWorkspaceIsRehashed() throws IOException {
+        Path file = workspaceDir.resolve("index.html");
+        Files.writeString(file, "<h1>v1</h1>");
+        String v1 = fileHashIndex.hash(workspaceDir, file);
+        // 大小和修改时间都不变的改写，只能通过失效发现
+        FileTime modifiedTime = Files.getLastModifiedTime(file);
+        Files.writeString(file, "<h1>v2</h1>");
+        Files.setLastModifiedTime(file, modifiedTime);
+        assertEquals(v1, fileHashIndex.hash(workspaceDir, file));
+
+        fileHashIndex.invalidateWorkspace(workspaceDir);
+        assertEquals(FileHashIndex.hash("<h1>v2</h1>".getBytes(StandardCharsets.UTF_8)), fileHashIndex.hash(workspaceDir, file));
+    }
+}
@@ -0,0 +1,61 @@
+package com.woopsion.woopsionaicodemother.core.strategy;
+
+import com.woopsion.woopsionaicodemother.ai.model.HtmlCodeResult;
+import com.woopsion.woopsionaicodemother.ai.model.MultiFileCodeResult;
+import com.woopsion.woopsionaicodemother.exception.BusinessException;
+import com.woopsion.woopsionaicodemother.model.enums.CodeGenTypeEnum;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CodeGenStrategyRegistryTest {
+
+    @Test
+    void parseFilesWithFileNameHints() {
+        String content = """
+                ```html
+                <a href="about.html">关于</a>
+                ```
+                ```html about.html
+                <h1>关于我们</h1>
+                ```
+                ```css:../../etc/passwd
+                h1 { color: red; }
+                ```
+                ```js
+                console.log(1);
+                ```
+                ```js
+                console.log('重复的代码块');
+                ```
+                ```python main.py
+                print(1)
+                ```
+                """;
+        Map<String, String> files = CodeGenStrategyRegistry.get(CodeGenTypeEnum.MULTI_FILE).parseFiles(content);
+        // 跳出工作目录的提示按语言推断，同一文件只保留第一个代码块，不属于当前模式的代码块忽略
+        assertEquals(List.of("index.html", "about.html", "style.css", "script.js"), List.copyOf(files.keySet()));
+        assertEquals("<h1>关于我们</h1>", files.get("about.html"));
+        assertEquals("console.log(1);", files.get("script.js"));
+        // 单文件模式不接受文件名提示
+        Map<String, String> htmlFiles = CodeGenStrategyRegistry.get(CodeGenTypeEnum.HTML).parseFiles(content);
+        assertEquals(Map.of("index.html", "<a href=\"about.html\">关于</a>"), htmlFiles);
+    }
+
+    @Test
+    void htmlFallbackToWholeContent() {
+        assertEquals(Map.of("index.html", "<p>没有围栏</p>"),
+                CodeGenStrategyRegistry.get(CodeGenTypeEnum.HTML).parseFiles("\n<p>没有围栏</p>\n"));
+    }
+
+    @Test
+    void rejectMismatchedResultAndUnknownType() {
+        CodeGenStrategy<?> strategy = CodeGenStrategyRegistry.get(CodeGenTypeEnum.HTML);
+        assertInstanceOf(HtmlCodeResult.class, strategy.parse("```html\n<p></p>\n```"));
+        assertThrows(BusinessException.class, () -> strategy.save(new MultiFileCodeResult(), 1L));
+        assertThrows(BusinessException.class, () -> CodeGenStrategyRegistry.get(CodeGenTypeEnum.VUE_PROJECT));
+    }
+}